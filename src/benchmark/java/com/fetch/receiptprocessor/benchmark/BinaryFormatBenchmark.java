@@ -0,0 +1,58 @@
+package com.fetch.receiptprocessor.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fetch.receiptprocessor.config.JacksonConfig;
+import com.fetch.receiptprocessor.metrics.ReceiptMetrics;
+import com.fetch.receiptprocessor.model.Receipt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Binding a Receipt from JSON, Smile and CBOR with the mappers JacksonConfig builds for each, for a typical
+ * receipt and a very large one. ReceiptJsonTest checks how the encoded sizes compare.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryFormatBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    private String format;
+
+    @Param({"5", "10000"})
+    private int itemCount;
+
+    private ObjectMapper mapper;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        JacksonConfig jacksonConfig = new JacksonConfig();
+        mapper = switch (format) {
+            case "smile" -> jacksonConfig.smileObjectMapper(ReceiptMetrics.noop());
+            case "cbor" -> jacksonConfig.cborObjectMapper(ReceiptMetrics.noop());
+            default -> jacksonConfig.objectMapper(ReceiptMetrics.noop());
+        };
+        payload = mapper.writeValueAsBytes(ReceiptFixtures.receipt(itemCount));
+    }
+
+    @Benchmark
+    public Receipt deserializeReceipt() throws IOException {
+        return mapper.readValue(payload, Receipt.class);
+    }
+}
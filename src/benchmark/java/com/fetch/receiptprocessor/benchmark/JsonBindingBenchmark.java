@@ -0,0 +1,57 @@
+package com.fetch.receiptprocessor.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fetch.receiptprocessor.config.JacksonConfig;
+import com.fetch.receiptprocessor.metrics.ReceiptMetrics;
+import com.fetch.receiptprocessor.model.Receipt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBindingBenchmark {
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    private int itemCount;
+
+    private ObjectMapper objectMapper;
+    private ObjectMapper reflectiveObjectMapper;
+    private byte[] json;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new JacksonConfig().objectMapper(ReceiptMetrics.noop());
+        // Bean binding through the model annotations, as requests were bound before ReceiptDeserializer
+        reflectiveObjectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        json = ReceiptFixtures.json(itemCount).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Application ObjectMapper: streaming ReceiptDeserializer
+    @Benchmark
+    public Receipt deserializeReceipt() throws IOException {
+        return objectMapper.readValue(json, Receipt.class);
+    }
+
+    @Benchmark
+    public Receipt deserializeReceiptReflective() throws IOException {
+        return reflectiveObjectMapper.readValue(json, Receipt.class);
+    }
+}
@@ -0,0 +1,72 @@
+package com.fetch.receiptprocessor.benchmark;
+
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.scoring.CompiledRuleSet;
+import com.fetch.receiptprocessor.scoring.ParallelItemScoring;
+import com.fetch.receiptprocessor.scoring.RuleListener;
+import com.fetch.receiptprocessor.scoring.RuleSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Sequential against fork/join scoring of one receipt, to find the item count above which splitting pays off.
+ * The parallel case forces a split at every size (threshold 1), so the crossover is the smallest itemCount where
+ * it beats sequential; receipt.scoring.parallel.threshold should be set around there for the target hardware.
+ * Vary the leaf size with -p grain=... and the pool size with -p parallelism=...
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelScoringBenchmark {
+
+    @Param({"256", "1024", "4096", "16384", "65536"})
+    private int itemCount;
+
+    @Param({"1024"})
+    private int grain;
+
+    @Param({"0"})
+    private int parallelism;
+
+    private CompiledRuleSet rules;
+    private ParallelItemScoring parallel;
+    private Receipt receipt;
+
+    @Setup
+    public void setUp() {
+        rules = RuleSet.defaults().compile();
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        parallel = new ParallelItemScoring(threads, 1, grain);
+        receipt = ReceiptFixtures.receipt(itemCount);
+    }
+
+    @TearDown
+    public void tearDown() {
+        parallel.close();
+    }
+
+    @Benchmark
+    public int sequential() {
+        return rules.score(receipt, RuleListener.NONE, null);
+    }
+
+    @Benchmark
+    public int forkJoin() {
+        return rules.score(receipt, RuleListener.NONE, parallel);
+    }
+}
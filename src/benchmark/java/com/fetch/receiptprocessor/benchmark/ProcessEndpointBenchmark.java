@@ -0,0 +1,72 @@
+package com.fetch.receiptprocessor.benchmark;
+
+import com.fetch.receiptprocessor.config.JacksonConfig;
+import com.fetch.receiptprocessor.controller.ReceiptController;
+import com.fetch.receiptprocessor.exception.GlobalExceptionHandler;
+import com.fetch.receiptprocessor.metrics.ReceiptMetrics;
+import com.fetch.receiptprocessor.service.ReceiptPointServiceImpl;
+import com.fetch.receiptprocessor.store.ConcurrentReceiptStore;
+import com.fetch.receiptprocessor.validation.ReceiptValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/*
+ * End-to-end POST /receipts/process through MockMvc: message conversion, validation, scoring and storage.
+ * The store keeps points only and is presized, so an invocation adds an index entry rather than the posted body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessEndpointBenchmark {
+
+    private static final int STORE_CAPACITY = 1 << 20;
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    private int itemCount;
+
+    private MockMvc mockMvc;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        ReceiptPointServiceImpl service = new ReceiptPointServiceImpl(new ConcurrentReceiptStore(STORE_CAPACITY, false));
+        mockMvc = MockMvcBuilders.standaloneSetup(new ReceiptController(service, null, new ReceiptValidator()))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(new JacksonConfig().objectMapper(ReceiptMetrics.noop())))
+                .build();
+        json = ReceiptFixtures.json(itemCount);
+    }
+
+    @Benchmark
+    public MvcResult processReceipt() throws Exception {
+        MvcResult result = mockMvc.perform(post("/receipts/process")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(json))
+                .andReturn();
+        if (result.getResponse().getStatus() != 200) {
+            throw new IllegalStateException("Unexpected status " + result.getResponse().getStatus());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,61 @@
+package com.fetch.receiptprocessor.benchmark;
+
+import com.fetch.receiptprocessor.model.Item;
+import com.fetch.receiptprocessor.model.Receipt;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Deterministic receipts of a given size shared by the benchmarks.
+ */
+final class ReceiptFixtures {
+
+    private static final String[] DESCRIPTIONS = {
+            "Mountain Dew 12PK", "Emils Cheese Pizza", "Knorr Creamy Chicken", "Doritos Nacho Cheese",
+            "   Klarbrunn 12-PK 12 FL OZ  ", "Gatorade"
+    };
+
+    private static final String[] PRICES = {"6.49", "12.25", "1.26", "3.35", "12.00", "2.25"};
+
+    private ReceiptFixtures() {
+    }
+
+    static Receipt receipt(int itemCount) {
+        List<Item> items = new ArrayList<>(itemCount);
+        long totalCents = 0;
+        for (int i = 0; i < itemCount; i++) {
+            String price = PRICES[i % PRICES.length];
+            items.add(new Item(DESCRIPTIONS[i % DESCRIPTIONS.length], price));
+            totalCents += Long.parseLong(price.replace(".", ""));
+        }
+        return Receipt.builder()
+                .retailer("M&M Corner Market")
+                .purchaseDate(LocalDate.parse("2022-03-21"))
+                .purchaseTime(LocalTime.parse("14:33"))
+                .total(String.format("%d.%02d", totalCents / 100, totalCents % 100))
+                .items(items)
+                .build();
+    }
+
+    static String json(int itemCount) {
+        Receipt receipt = receipt(itemCount);
+        StringBuilder json = new StringBuilder(64 + itemCount * 64)
+                .append("{\"retailer\":\"").append(receipt.getRetailer())
+                .append("\",\"purchaseDate\":\"").append(receipt.getPurchaseDate())
+                .append("\",\"purchaseTime\":\"").append(receipt.getPurchaseTime())
+                .append("\",\"total\":\"").append(receipt.getTotal())
+                .append("\",\"items\":[");
+        for (int i = 0; i < itemCount; i++) {
+            Item item = receipt.getItems().get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"shortDescription\":\"").append(item.getShortDescription())
+                    .append("\",\"price\":\"").append(item.getPrice()).append("\"}");
+        }
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,90 @@
+package com.fetch.receiptprocessor.benchmark;
+
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.store.ConcurrentReceiptStore;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import com.fetch.receiptprocessor.store.snapshot.ReceiptSnapshot;
+import com.fetch.receiptprocessor.store.snapshot.SnapshotReceiptStore;
+import com.fetch.receiptprocessor.store.wal.DurableReceiptStore;
+import com.fetch.receiptprocessor.store.wal.WriteAheadLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Time to first answered lookup after a restart: mapping a snapshot versus replaying the same receipts from the
+ * write-ahead log. Each invocation is one cold start of the store (the files stay in the page cache).
+ * Only points are stored, as with receipt.store.retain-receipts=false.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class RestartBenchmark {
+
+    @Param({"100000", "1000000", "10000000"})
+    private int receiptCount;
+
+    private Path directory;
+    private Path snapshotDirectory;
+    private Path walDirectory;
+    private ReceiptId probe;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("restart-benchmark");
+        snapshotDirectory = directory.resolve("snapshots");
+        walDirectory = directory.resolve("wal");
+
+        ConcurrentReceiptStore store = new ConcurrentReceiptStore(receiptCount, false);
+        try (WriteAheadLog writeAheadLog = new WriteAheadLog(walDirectory, 64L << 20, false, 4096)) {
+            CompletableFuture<Void> last = null;
+            for (int i = 0; i < receiptCount; i++) {
+                ReceiptId id = ReceiptId.random();
+                store.put(id, null, i % 100);
+                last = writeAheadLog.append(id, null, i % 100, ReceiptStore.UNVERSIONED);
+                probe = id;
+            }
+            last.join();
+        }
+        ReceiptSnapshot.write(snapshotDirectory, Long.MAX_VALUE, store, false);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public int snapshotFirstLookup() throws IOException {
+        ReceiptSnapshot snapshot = ReceiptSnapshot.openLatest(snapshotDirectory).orElseThrow();
+        return new SnapshotReceiptStore(new ConcurrentReceiptStore(), snapshot).getPoints(probe);
+    }
+
+    @Benchmark
+    public int walReplayFirstLookup() throws IOException {
+        try (DurableReceiptStore store = new DurableReceiptStore(new ConcurrentReceiptStore(receiptCount, false),
+                new WriteAheadLog(walDirectory, 64L << 20, false, 4096), false)) {
+            store.recover(Runtime.getRuntime().availableProcessors());
+            return store.getPoints(probe);
+        }
+    }
+}
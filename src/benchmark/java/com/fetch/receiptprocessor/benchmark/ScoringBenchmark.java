@@ -0,0 +1,52 @@
+package com.fetch.receiptprocessor.benchmark;
+
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.service.ReceiptPointServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringBenchmark {
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    private int itemCount;
+
+    private ReceiptPointServiceImpl service;
+    private Receipt receipt;
+    private String receiptId;
+
+    @Setup
+    public void setUp() {
+        service = new ReceiptPointServiceImpl();
+        receipt = ReceiptFixtures.receipt(itemCount);
+        receiptId = service.processReceipt(receipt);
+    }
+
+    // Runs every scoring rule over the receipt
+    @Benchmark
+    public int calculatePointsForReceipt() {
+        return service.calculatePoints(receipt);
+    }
+
+    // GET /receipts/{id}/points path: a lookup of the points stored at ingest
+    @Benchmark
+    public int calculatePointsForId() {
+        return service.calculatePoints(receiptId);
+    }
+}
@@ -0,0 +1,55 @@
+package com.fetch.receiptprocessor.benchmark;
+
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.store.ConcurrentReceiptStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Concurrent puts into ConcurrentReceiptStore. Run with -t 1, -t 2, -t 4 ... and compare the total throughput to
+ * see how writes scale with writer threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoreWriteBenchmark {
+
+    private static final AtomicLong WRITERS = new AtomicLong();
+
+    private ConcurrentReceiptStore store;
+    private Receipt receipt;
+
+    // A fresh store per iteration, so every iteration grows the table from the same size
+    @Setup(Level.Iteration)
+    public void setUp() {
+        store = new ConcurrentReceiptStore();
+        receipt = ReceiptFixtures.receipt(1);
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+        final long thread = WRITERS.incrementAndGet();
+        long next;
+    }
+
+    @Benchmark
+    public void put(Writer writer) {
+        store.put(new ReceiptId(writer.thread, writer.next++), receipt, 12);
+    }
+}
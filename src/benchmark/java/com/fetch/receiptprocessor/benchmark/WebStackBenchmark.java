@@ -0,0 +1,86 @@
+package com.fetch.receiptprocessor.benchmark;
+
+import com.fetch.receiptprocessor.ReceiptProcessorApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The receipt API over real HTTP, served by Spring MVC on Tomcat or by the WebFlux router on Netty.
+ * Many JMH threads act as concurrent clients; raise or lower the concurrency with -t.
+ * Receipt bodies are not retained, so the store grows by points only and heap growth does not skew throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(128)
+public class WebStackBenchmark {
+
+    @Param({"servlet", "reactive"})
+    private String stack;
+
+    @Param({"1", "100"})
+    private int itemCount;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private HttpRequest processRequest;
+    private HttpRequest pointsRequest;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        context = new SpringApplicationBuilder(ReceiptProcessorApplication.class)
+                .properties("server.port=0",
+                        "spring.main.web-application-type=" + stack,
+                        "spring.main.banner-mode=off",
+                        "receipt.store.retain-receipts=false",
+                        "logging.level.root=WARN")
+                .run();
+        String baseUri = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        processRequest = HttpRequest.newBuilder(URI.create(baseUri + "/receipts/process"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(ReceiptFixtures.json(itemCount)))
+                .build();
+        String body = client.send(processRequest, HttpResponse.BodyHandlers.ofString()).body();
+        String receiptId = body.substring(body.indexOf(":\"") + 2, body.lastIndexOf('"'));
+        pointsRequest = HttpRequest.newBuilder(URI.create(baseUri + "/receipts/" + receiptId + "/points")).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int processReceipt() throws IOException, InterruptedException {
+        return client.send(processRequest, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public int getPoints() throws IOException, InterruptedException {
+        return client.send(pointsRequest, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
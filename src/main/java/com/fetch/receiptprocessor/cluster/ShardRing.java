@@ -0,0 +1,60 @@
+package com.fetch.receiptprocessor.cluster;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/*
+ * Consistent hash ring over shard ids.
+ *
+ * Each shard is placed at virtualNodes pseudo-random points on a 64-bit ring, and a key belongs to the shard at the
+ * first point at or after its hash, wrapping around. Adding a shard takes over roughly 1/n of the keys, all from
+ * existing shards, and moves nothing between the others. Points depend only on the shard id, so every instance
+ * configured with the same shards builds the same ring.
+ */
+public final class ShardRing {
+
+    private final long[] points;
+    private final int[] owners;
+
+    public ShardRing(Collection<Integer> shards, int virtualNodes) {
+        if (shards.isEmpty() || virtualNodes < 1) {
+            throw new IllegalArgumentException("A shard ring needs at least one shard and one virtual node per shard");
+        }
+        // Point and owner packed together so one sort orders both; ties are practically impossible
+        long[][] entries = new long[shards.size() * virtualNodes][];
+        int i = 0;
+        for (int shard : shards) {
+            for (int replica = 0; replica < virtualNodes; replica++) {
+                entries[i++] = new long[]{mix(((long) shard << 32) | replica), shard};
+            }
+        }
+        Arrays.sort(entries, (a, b) -> Long.compareUnsigned(a[0], b[0]));
+        this.points = new long[entries.length];
+        this.owners = new int[entries.length];
+        for (i = 0; i < entries.length; i++) {
+            points[i] = entries[i][0];
+            owners[i] = (int) entries[i][1];
+        }
+    }
+
+    public int ownerOf(long hash) {
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(points[middle], hash) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return owners[low == points.length ? 0 : low];
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,218 @@
+package com.fetch.receiptprocessor.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fetch.receiptprocessor.exception.IngestQueueFullException;
+import com.fetch.receiptprocessor.exception.ShardUnavailableException;
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.service.ReceiptDeduplicator;
+import com.fetch.receiptprocessor.service.ReceiptFingerprint;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Map;
+
+/*
+ * Cluster mode: places receipts on shards and forwards work for other shards to the instance that owns them.
+ *
+ * A new receipt is placed by consistent hashing of its idempotency key, or of its contents when it has none, so a
+ * resubmitted receipt reaches the shard that can deduplicate it. The owner stores it under an id that encodes its
+ * shard (ReceiptId.random(int)), and lookups go straight to the shard named in the id. The ring only decides where
+ * new receipts go, so shards can be added without breaking ids already issued; a shard id must keep an address
+ * for as long as its receipts are wanted. Ids without a shard, issued before cluster mode, are looked up locally.
+ *
+ * Forwarding uses the JDK HttpClient, which keeps a pool of keep-alive connections to each shard. Forwarded
+ * requests carry FORWARDED_HEADER, and their receiver stores or looks up the receipt itself without routing again,
+ * so instances whose shard lists briefly disagree during a reshard cannot bounce a request between them. They
+ * also carry the cluster's shared secret in FORWARDING_SECRET_HEADER; a request without it is routed as usual
+ * whatever FORWARDED_HEADER says, so a client cannot make a shard store receipts it does not own.
+ */
+public class ShardRouter {
+
+    public static final String FORWARDED_HEADER = "X-Receipt-Forwarded-By";
+    public static final String FORWARDING_SECRET_HEADER = "X-Receipt-Forwarding-Secret";
+
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final int localShard;
+    private final Map<Integer, URI> shards;
+    private final ShardRing ring;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+    private final Duration requestTimeout;
+    private final String forwardingSecret;
+    private final byte[] forwardingSecretBytes;
+    private final Counter forwardedIngests;
+    private final Counter forwardedLookups;
+
+    public ShardRouter(int localShard, Map<Integer, URI> shards, int virtualNodes, ObjectMapper objectMapper,
+                       Duration connectTimeout, Duration requestTimeout, String forwardingSecret,
+                       MeterRegistry registry) {
+        if (!shards.containsKey(localShard)) {
+            throw new IllegalArgumentException("Shard " + localShard + " is not in the shard list " + shards.keySet());
+        }
+        for (int shard : shards.keySet()) {
+            if (shard < 0 || shard > ReceiptId.MAX_SHARD) {
+                throw new IllegalArgumentException("Shard ids must be between 0 and " + ReceiptId.MAX_SHARD);
+            }
+        }
+        if (forwardingSecret == null || forwardingSecret.isBlank()) {
+            throw new IllegalArgumentException("A forwarding secret shared by all shards is required");
+        }
+        this.localShard = localShard;
+        this.shards = Map.copyOf(shards);
+        this.ring = new ShardRing(shards.keySet(), virtualNodes);
+        this.objectMapper = objectMapper;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .build();
+        this.requestTimeout = requestTimeout;
+        this.forwardingSecret = forwardingSecret;
+        this.forwardingSecretBytes = forwardingSecret.getBytes(StandardCharsets.UTF_8);
+        this.forwardedIngests = Counter.builder("receipt.cluster.forwarded")
+                .description("Requests forwarded to the shard that owns the receipt")
+                .tag("operation", "ingest")
+                .register(registry);
+        this.forwardedLookups = Counter.builder("receipt.cluster.forwarded")
+                .description("Requests forwarded to the shard that owns the receipt")
+                .tag("operation", "lookup")
+                .register(registry);
+    }
+
+    public int getLocalShard() {
+        return localShard;
+    }
+
+    public ReceiptId newLocalId() {
+        return ReceiptId.random(localShard);
+    }
+
+    public int ownerOf(Receipt receipt, String idempotencyKey) {
+        ReceiptId fingerprint = idempotencyKey == null
+                ? ReceiptFingerprint.of(receipt)
+                : ReceiptFingerprint.ofKey(idempotencyKey);
+        return ring.ownerOf(fingerprint.getMostSignificantBits());
+    }
+
+    // Compared in constant time so the secret cannot be guessed a byte at a time from response latency
+    public boolean isForwarded(@Nullable String forwardedBy, @Nullable String secret) {
+        return forwardedBy != null && secret != null
+                && MessageDigest.isEqual(forwardingSecretBytes, secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean isLocal(int shard) {
+        return shard == localShard;
+    }
+
+    // Unsharded ids predate cluster mode and were stored wherever they were ingested
+    public boolean isLocal(ReceiptId receiptId) {
+        int shard = receiptId.getShard();
+        return shard == ReceiptId.UNSHARDED || shard == localShard;
+    }
+
+    // Returns the id the owning shard stored the receipt under
+    public String forwardReceipt(int shard, Receipt receipt, String idempotencyKey) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(receipt);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Receipt cannot be forwarded", e);
+        }
+        HttpRequest.Builder request = request(shard, "/receipts/process")
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (idempotencyKey != null) {
+            request.header(ReceiptDeduplicator.IDEMPOTENCY_KEY_HEADER, idempotencyKey);
+        }
+        forwardedIngests.increment();
+        HttpResponse<byte[]> response = send(shard, request.build());
+        switch (response.statusCode()) {
+            case 200:
+                return readField(shard, response, "id").asText();
+            case 400:
+                throw new IllegalArgumentException("Shard " + shard + " rejected the receipt");
+            case 429:
+                throw new IngestQueueFullException(retryAfter(response));
+            default:
+                throw new ShardUnavailableException(shard, "status " + response.statusCode(), null);
+        }
+    }
+
+    // Returns ReceiptStore.NOT_FOUND when the shard does not have the receipt or is not in the shard list
+    public int forwardPoints(ReceiptId receiptId) {
+        int shard = receiptId.getShard();
+        if (!shards.containsKey(shard)) {
+            return ReceiptStore.NOT_FOUND;
+        }
+        forwardedLookups.increment();
+        HttpResponse<byte[]> response = send(shard, request(shard, "/receipts/" + receiptId + "/points").GET().build());
+        if (response.statusCode() == 404) {
+            return ReceiptStore.NOT_FOUND;
+        }
+        if (response.statusCode() != 200) {
+            throw new ShardUnavailableException(shard, "status " + response.statusCode(), null);
+        }
+        return readField(shard, response, "points").asInt();
+    }
+
+    // Retry-After may also be an HTTP date; anything but a number of seconds gets the default
+    private static Duration retryAfter(HttpResponse<?> response) {
+        String value = response.headers().firstValue(HttpHeaders.RETRY_AFTER).orElse(null);
+        if (value != null) {
+            try {
+                long seconds = Long.parseLong(value.trim());
+                if (seconds >= 0) {
+                    return Duration.ofSeconds(seconds);
+                }
+            } catch (NumberFormatException e) {
+                // Fall through to the default
+            }
+        }
+        return DEFAULT_RETRY_AFTER;
+    }
+
+    private HttpRequest.Builder request(int shard, String path) {
+        return HttpRequest.newBuilder(shards.get(shard).resolve(path))
+                .timeout(requestTimeout)
+                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                .header(FORWARDED_HEADER, String.valueOf(localShard))
+                .header(FORWARDING_SECRET_HEADER, forwardingSecret);
+    }
+
+    private HttpResponse<byte[]> send(int shard, HttpRequest request) {
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            throw new ShardUnavailableException(shard, e.toString(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ShardUnavailableException(shard, "interrupted", e);
+        }
+    }
+
+    private JsonNode readField(int shard, HttpResponse<byte[]> response, String field) {
+        try {
+            JsonNode value = objectMapper.readTree(response.body()).get(field);
+            if (value == null) {
+                throw new ShardUnavailableException(shard, "response has no " + field, null);
+            }
+            return value;
+        } catch (IOException e) {
+            throw new ShardUnavailableException(shard, "unreadable response", e);
+        }
+    }
+}
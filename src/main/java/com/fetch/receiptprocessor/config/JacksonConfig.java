@@ -1,15 +1,26 @@
-
 package com.fetch.receiptprocessor.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fetch.receiptprocessor.metrics.ReceiptMetrics;
+import com.fetch.receiptprocessor.model.Receipt;
 import com.fetch.receiptprocessor.util.LocalDateDeserializer;
 import com.fetch.receiptprocessor.util.LocalDateSerializer;
 import com.fetch.receiptprocessor.util.LocalTimeDeserializer;
 import com.fetch.receiptprocessor.util.LocalTimeSerializer;
+import com.fetch.receiptprocessor.util.ReceiptDeserializer;
+import org.springframework.boot.web.codec.CodecCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -18,8 +29,47 @@ import java.time.LocalTime;
 public class JacksonConfig {
 
     @Bean
-    public ObjectMapper objectMapper() {
-        ObjectMapper mapper = new ObjectMapper();
+    public ObjectMapper objectMapper(ReceiptMetrics receiptMetrics) {
+        return configure(new ObjectMapper(), receiptMetrics);
+    }
+
+    // Smile and CBOR bodies are bound by the same modules and ReceiptDeserializer as JSON, so validation sees the same Receipt
+    public ObjectMapper smileObjectMapper(ReceiptMetrics receiptMetrics) {
+        return configure(new ObjectMapper(new SmileFactory()), receiptMetrics);
+    }
+
+    public ObjectMapper cborObjectMapper(ReceiptMetrics receiptMetrics) {
+        return configure(new ObjectMapper(new CBORFactory()), receiptMetrics);
+    }
+
+    // Picked up by Spring MVC in place of the converters it would build with an unconfigured mapper
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(ReceiptMetrics receiptMetrics) {
+        return new MappingJackson2SmileHttpMessageConverter(smileObjectMapper(receiptMetrics));
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(ReceiptMetrics receiptMetrics) {
+        return new MappingJackson2CborHttpMessageConverter(cborObjectMapper(receiptMetrics));
+    }
+
+    // The WebFlux equivalent; Smile replaces a default codec, CBOR has none
+    @Bean
+    public CodecCustomizer binaryCodecCustomizer(ReceiptMetrics receiptMetrics) {
+        ObjectMapper smile = smileObjectMapper(receiptMetrics);
+        ObjectMapper cbor = cborObjectMapper(receiptMetrics);
+        return configurer -> {
+            configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smile));
+            configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smile));
+            configurer.customCodecs().register(new Jackson2CborDecoder(cbor));
+            configurer.customCodecs().register(new Jackson2CborEncoder(cbor));
+        };
+    }
+
+    private static ObjectMapper configure(ObjectMapper mapper, ReceiptMetrics receiptMetrics) {
+        // Register JavaTimeModule first; modules registered later take precedence, so the custom module below wins
+        mapper.registerModule(new JavaTimeModule());
+
         SimpleModule module = new SimpleModule();
 
         // Register custom serializers and deserializers for LocalDate and LocalTime
@@ -28,10 +78,10 @@ public class JacksonConfig {
         module.addSerializer(LocalTime.class, new LocalTimeSerializer());
         module.addDeserializer(LocalTime.class, new LocalTimeDeserializer());
 
-        mapper.registerModule(module);
+        // Token-level binding for request bodies instead of reflective bean deserialization
+        module.addDeserializer(Receipt.class, new ReceiptDeserializer(receiptMetrics));
 
-        // Register JavaTimeModule to handle LocalDate and LocalTime
-        mapper.registerModule(new JavaTimeModule());
+        mapper.registerModule(module);
         return mapper;
     }
 }
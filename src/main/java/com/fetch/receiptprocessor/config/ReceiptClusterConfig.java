@@ -0,0 +1,23 @@
+package com.fetch.receiptprocessor.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fetch.receiptprocessor.cluster.ShardRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ReceiptClusterProperties.class)
+public class ReceiptClusterConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "receipt.cluster.enabled", havingValue = "true")
+    public ShardRouter shardRouter(ReceiptClusterProperties properties, ObjectMapper objectMapper,
+                                   MeterRegistry meterRegistry) {
+        return new ShardRouter(properties.getShardId(), properties.getShards(), properties.getVirtualNodes(),
+                objectMapper, properties.getConnectTimeout(), properties.getRequestTimeout(),
+                properties.getForwardingSecret(), meterRegistry);
+    }
+}
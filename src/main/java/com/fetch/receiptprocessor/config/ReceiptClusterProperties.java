@@ -0,0 +1,34 @@
+package com.fetch.receiptprocessor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "receipt.cluster")
+public class ReceiptClusterProperties {
+
+    // Spread receipts over the shards below; each instance serves one of them
+    private boolean enabled = false;
+
+    // The shard this instance serves; must be a key of shards
+    private int shardId;
+
+    // Shard id (0-65535) to base URL, the same on every instance; ids are permanent, addresses may change
+    private Map<Integer, URI> shards = new LinkedHashMap<>();
+
+    // Points per shard on the consistent hash ring; more spreads receipts more evenly
+    private int virtualNodes = 128;
+
+    // Sent with every forwarded request and required on one, the same on every instance
+    private String forwardingSecret;
+
+    private Duration connectTimeout = Duration.ofSeconds(1);
+
+    // Limit for a forwarded ingest or lookup, answered with 503 when exceeded
+    private Duration requestTimeout = Duration.ofSeconds(5);
+}
@@ -0,0 +1,26 @@
+package com.fetch.receiptprocessor.config;
+
+import com.fetch.receiptprocessor.controller.RequestDecompressionFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@EnableConfigurationProperties(ReceiptCompressionProperties.class)
+public class ReceiptCompressionConfig {
+
+    // Only the receipt endpoints take bodies worth compressing
+    @Bean
+    @ConditionalOnProperty(name = "receipt.compression.request.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<RequestDecompressionFilter> requestDecompressionFilter(
+            ReceiptCompressionProperties properties) {
+        FilterRegistrationBean<RequestDecompressionFilter> registration = new FilterRegistrationBean<>(
+                new RequestDecompressionFilter(properties.getRequest().getMaxSize().toBytes()));
+        registration.addUrlPatterns("/receipts/*");
+        return registration;
+    }
+}
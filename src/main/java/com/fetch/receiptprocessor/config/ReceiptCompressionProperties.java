@@ -0,0 +1,22 @@
+package com.fetch.receiptprocessor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+// Response compression is Spring Boot's own server.compression; these settings cover request bodies
+@Data
+@ConfigurationProperties(prefix = "receipt.compression")
+public class ReceiptCompressionProperties {
+
+    private final Request request = new Request();
+
+    @Data
+    public static class Request {
+        // Accept request bodies with Content-Encoding gzip or zstd (servlet stack only)
+        private boolean enabled = true;
+
+        // Largest body accepted once decompressed; larger ones are answered 413
+        private DataSize maxSize = DataSize.ofMegabytes(64);
+    }
+}
@@ -0,0 +1,66 @@
+package com.fetch.receiptprocessor.config;
+
+import com.fetch.receiptprocessor.service.ReceiptDeduplicator;
+import com.fetch.receiptprocessor.service.ReceiptIngestPipeline;
+import com.fetch.receiptprocessor.service.ReceiptPointServiceImpl;
+import com.fetch.receiptprocessor.store.BoundedReceiptStore;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import com.fetch.receiptprocessor.store.snapshot.SnapshotReceiptStore;
+import com.fetch.receiptprocessor.store.wal.DurableReceiptStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.CompletableFuture;
+
+@Configuration
+@EnableConfigurationProperties({ReceiptIngestProperties.class, ReceiptStoreProperties.class})
+public class ReceiptIngestConfig {
+
+    // Closed before the store it feeds, so receipts still queued at shutdown are stored
+    @Bean
+    @ConditionalOnProperty(name = "receipt.ingest.async.enabled", havingValue = "true")
+    public ReceiptIngestPipeline receiptIngestPipeline(ReceiptPointServiceImpl receiptPointService,
+                                                       ReceiptStore receiptStore,
+                                                       ReceiptIngestProperties properties,
+                                                       MeterRegistry meterRegistry,
+                                                       ObjectProvider<ReceiptDeduplicator> receiptDeduplicator) {
+        ReceiptIngestProperties.Async async = properties.getAsync();
+        return new ReceiptIngestPipeline(receiptPointService, receiptStore, async.getQueueCapacity(),
+                async.getWorkers(), async.getMaxBatch(), async.getRetryAfter(), meterRegistry,
+                receiptDeduplicator.getIfAvailable());
+    }
+
+    /*
+     * Content hashes are rebuilt from stored bodies once the write-ahead log has been replayed.
+     * A bounded store reports its evictions, so the hashes and keys stay within the store's own bound.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "receipt.ingest.dedup.enabled", havingValue = "true")
+    public ReceiptDeduplicator receiptDeduplicator(ReceiptStore receiptStore, ReceiptStoreProperties storeProperties,
+                                                   MeterRegistry meterRegistry) {
+        if (!storeProperties.isRetainReceipts()) {
+            throw new IllegalStateException(
+                    "receipt.ingest.dedup.enabled requires receipt.store.retain-receipts to rebuild and evict content hashes");
+        }
+        ReceiptStore store = ReceiptStoreConfig.unwrapReplication(receiptStore);
+        CompletableFuture<Void> recovered = CompletableFuture.completedFuture(null);
+        if (store instanceof DurableReceiptStore) {
+            recovered = ((DurableReceiptStore) store).getRecovered();
+            store = ((DurableReceiptStore) store).getDelegate();
+        }
+        if (store instanceof SnapshotReceiptStore) {
+            store = ((SnapshotReceiptStore) store).getLive();
+        }
+        ReceiptDeduplicator deduplicator = new ReceiptDeduplicator(receiptStore, storeProperties.getInitialCapacity(),
+                store instanceof BoundedReceiptStore, meterRegistry);
+        if (store instanceof BoundedReceiptStore) {
+            ((BoundedReceiptStore) store).addEvictionListener(deduplicator::evicted);
+        }
+        deduplicator.rebuildAfter(recovered);
+        return deduplicator;
+    }
+}
@@ -0,0 +1,38 @@
+package com.fetch.receiptprocessor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "receipt.ingest")
+public class ReceiptIngestProperties {
+
+    private final Async async = new Async();
+
+    private final Dedup dedup = new Dedup();
+
+    @Data
+    public static class Async {
+        // Return the id as soon as the receipt is queued and score and store it on worker threads
+        private boolean enabled = false;
+
+        // Receipts that can wait for a worker; beyond this, POST /receipts/process answers 429
+        private int queueCapacity = 65_536;
+
+        private int workers = Runtime.getRuntime().availableProcessors();
+
+        // Most receipts a worker scores and stores in one pass
+        private int maxBatch = 256;
+
+        // Sent as Retry-After when the queue is full
+        private Duration retryAfter = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class Dedup {
+        // Answer a receipt whose contents or Idempotency-Key were seen before with the id it was first given
+        private boolean enabled = false;
+    }
+}
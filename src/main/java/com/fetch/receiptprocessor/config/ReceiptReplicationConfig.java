@@ -0,0 +1,83 @@
+package com.fetch.receiptprocessor.config;
+
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import com.fetch.receiptprocessor.store.replication.ReplicaReceiptStore;
+import com.fetch.receiptprocessor.store.replication.ReplicatingReceiptStore;
+import com.fetch.receiptprocessor.store.replication.ReplicationFollower;
+import com.fetch.receiptprocessor.store.replication.ReplicationLeader;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class ReceiptReplicationConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "receipt.replication.role", havingValue = "follower")
+    public ReplicationFollower replicationFollower(ReceiptStore receiptStore, ReceiptReplicationProperties properties,
+                                                   ReceiptIngestProperties ingestProperties) {
+        // Async ingest answers before storing, so a follower would hand out ids for receipts it then rejects
+        if (ingestProperties.getAsync().isEnabled()) {
+            throw new IllegalStateException("receipt.replication.role=follower cannot be combined with "
+                    + "receipt.ingest.async.enabled");
+        }
+        ReplicationFollower follower = new ReplicationFollower(((ReplicaReceiptStore) receiptStore).getDelegate(),
+                new InetSocketAddress(properties.getHost(), properties.getPort()), properties.getSocketTimeout(),
+                properties.getReconnectInterval(), properties.getHeartbeatInterval().multipliedBy(3));
+        follower.start();
+        return follower;
+    }
+
+    @Bean
+    @ConditionalOnExpression("!'${receipt.replication.role:none}'.equalsIgnoreCase('none')")
+    public ReplicationEndpoint replicationEndpoint(ReceiptStore receiptStore,
+                                                   ObjectProvider<ReplicationFollower> replicationFollower,
+                                                   ReceiptReplicationProperties properties) {
+        return new ReplicationEndpoint(receiptStore, replicationFollower.getIfAvailable(),
+                properties.isPromotionEnabled());
+    }
+
+    /*
+     * Leader: connected followers, replication lag as the age and count of receipts the furthest-behind follower
+     * has not acknowledged, and synchronous puts that stopped waiting for followers.
+     * Follower: whether it is connected to the leader and how many batches it has applied.
+     */
+    @Bean
+    public MeterBinder receiptReplicationMetrics(ReceiptStore receiptStore,
+                                                 ObjectProvider<ReplicationFollower> replicationFollower) {
+        return registry -> {
+            if (receiptStore instanceof ReplicatingReceiptStore) {
+                ReplicationLeader leader = ((ReplicatingReceiptStore) receiptStore).getLeader();
+                Gauge.builder("receipt.replication.followers", leader, ReplicationLeader::getFollowerCount)
+                        .description("Followers connected to this leader")
+                        .register(registry);
+                TimeGauge.builder("receipt.replication.lag", leader, TimeUnit.NANOSECONDS, l -> l.getLag().toNanos())
+                        .description("Age of the oldest receipt a follower has not acknowledged")
+                        .register(registry);
+                Gauge.builder("receipt.replication.lag.records", leader, ReplicationLeader::getLagRecords)
+                        .description("Receipts the furthest-behind follower has not acknowledged")
+                        .register(registry);
+                FunctionCounter.builder("receipt.replication.ack.timeouts", leader, ReplicationLeader::getAckTimeouts)
+                        .description("Synchronous puts answered before every follower acknowledged them")
+                        .register(registry);
+            }
+            replicationFollower.ifAvailable(follower -> {
+                Gauge.builder("receipt.replication.connected", follower, f -> f.isConnected() ? 1 : 0)
+                        .description("Whether this follower is connected to its leader")
+                        .register(registry);
+                FunctionCounter.builder("receipt.replication.batches", follower, ReplicationFollower::getAppliedBatches)
+                        .description("Batches applied from the leader, including empty heartbeats")
+                        .register(registry);
+            });
+        };
+    }
+}
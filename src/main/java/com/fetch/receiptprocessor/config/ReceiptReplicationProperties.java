@@ -0,0 +1,58 @@
+package com.fetch.receiptprocessor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "receipt.replication")
+public class ReceiptReplicationProperties {
+
+    public enum Role {
+        // Standalone instance, nothing replicated
+        NONE,
+        // Accepts receipts and streams them to followers
+        LEADER,
+        // Read-only copy of a leader's receipts, serving points lookups
+        FOLLOWER
+    }
+
+    public enum Ack {
+        // Answer a POST once the leader has the receipt; followers catch up in the background
+        ASYNC,
+        // Answer a POST once every connected follower has the receipt too, or ackTimeout has passed
+        SYNC
+    }
+
+    private Role role = Role.NONE;
+
+    // Address the leader listens on and followers connect to
+    private String host = "localhost";
+
+    private int port = 7400;
+
+    private Ack ack = Ack.ASYNC;
+
+    // Longest a synchronous POST waits for followers before answering anyway
+    private Duration ackTimeout = Duration.ofSeconds(1);
+
+    // Most receipts sent to a follower in one batch
+    private int maxBatch = 1024;
+
+    // Recent receipts the leader keeps for followers; one that falls further behind is disconnected
+    private int queueCapacity = 65536;
+
+    // Leader: longest wait for a follower to acknowledge a batch. Follower: connect timeout
+    private Duration socketTimeout = Duration.ofSeconds(10);
+
+    // Leader: idle time after which it sends followers an empty batch. Follower: a leader silent for three
+    // intervals is taken as lost; use the same value on both
+    private Duration heartbeatInterval = Duration.ofSeconds(1);
+
+    // Follower: pause before reconnecting to the leader
+    private Duration reconnectInterval = Duration.ofSeconds(1);
+
+    // Follower: allow POST /actuator/replication to promote it once it has lost its leader
+    private boolean promotionEnabled = false;
+}
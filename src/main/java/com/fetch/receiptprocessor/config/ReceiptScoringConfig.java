@@ -0,0 +1,49 @@
+package com.fetch.receiptprocessor.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fetch.receiptprocessor.scoring.ParallelItemScoring;
+import com.fetch.receiptprocessor.scoring.RuleEngine;
+import com.fetch.receiptprocessor.scoring.RuleSetReloader;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+@Configuration
+@EnableConfigurationProperties(ReceiptScoringProperties.class)
+public class ReceiptScoringConfig {
+
+    @Bean
+    public RuleEngine ruleEngine() {
+        return new RuleEngine();
+    }
+
+    // The file is loaded before the context finishes starting, so a broken rule set stops startup
+    @Bean
+    @ConditionalOnProperty(name = "receipt.scoring.rules-file")
+    public RuleSetReloader ruleSetReloader(RuleEngine ruleEngine, ReceiptScoringProperties properties,
+                                           ObjectMapper objectMapper) throws IOException {
+        RuleSetReloader reloader = new RuleSetReloader(ruleEngine, properties.getRulesFile(), objectMapper);
+        reloader.reloadIfModified();
+        reloader.start(properties.getReloadInterval());
+        return reloader;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "receipt.scoring.parallel.enabled", havingValue = "true")
+    public ParallelItemScoring parallelItemScoring(ReceiptScoringProperties properties) {
+        ReceiptScoringProperties.Parallel parallel = properties.getParallel();
+        return new ParallelItemScoring(parallel.getParallelism(), parallel.getThreshold(), parallel.getGrain());
+    }
+
+    @Bean
+    public MeterBinder ruleEngineMetrics(RuleEngine ruleEngine) {
+        return registry -> Gauge.builder("receipt.score.rules.version", ruleEngine, e -> e.current().getVersion())
+                .description("Version of the rule set new receipts are scored with")
+                .register(registry);
+    }
+}
@@ -0,0 +1,34 @@
+package com.fetch.receiptprocessor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "receipt.scoring")
+public class ReceiptScoringProperties {
+
+    // JSON rule set replacing the built-in rules; unset scores with the built-in rules (version 1)
+    private Path rulesFile;
+
+    // How often rulesFile is checked for changes
+    private Duration reloadInterval = Duration.ofSeconds(30);
+
+    private final Parallel parallel = new Parallel();
+
+    @Data
+    public static class Parallel {
+        // Split the item rules of very large receipts across a dedicated fork/join pool
+        private boolean enabled = false;
+
+        // Receipts with fewer items are scored on the request thread; see ParallelScoringBenchmark
+        private int threshold = 4096;
+
+        // Items each fork/join task scores sequentially
+        private int grain = 1024;
+
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,184 @@
+package com.fetch.receiptprocessor.config;
+
+import com.fetch.receiptprocessor.store.BoundedReceiptStore;
+import com.fetch.receiptprocessor.store.ConcurrentReceiptStore;
+import com.fetch.receiptprocessor.store.OffHeapReceiptStore;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import com.fetch.receiptprocessor.store.replication.ReplicaReceiptStore;
+import com.fetch.receiptprocessor.store.replication.ReplicatingReceiptStore;
+import com.fetch.receiptprocessor.store.replication.ReplicationLeader;
+import com.fetch.receiptprocessor.store.snapshot.ReceiptSnapshot;
+import com.fetch.receiptprocessor.store.snapshot.SnapshotManager;
+import com.fetch.receiptprocessor.store.snapshot.SnapshotReceiptStore;
+import com.fetch.receiptprocessor.store.wal.DurableReceiptStore;
+import com.fetch.receiptprocessor.store.wal.WriteAheadLog;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@EnableConfigurationProperties({ReceiptStoreProperties.class, ReceiptReplicationProperties.class})
+public class ReceiptStoreConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ReceiptStoreConfig.class);
+
+    @Bean
+    public ReceiptStore receiptStore(ReceiptStoreProperties properties, ReceiptReplicationProperties replication)
+            throws IOException {
+        ReceiptStore store = baseStore(properties);
+
+        ReceiptStoreProperties.Wal wal = properties.getWal();
+        ReceiptSnapshot snapshot = null;
+        if (properties.getSnapshot().isEnabled()) {
+            if (!wal.isEnabled()) {
+                throw new IllegalStateException("receipt.store.snapshot.enabled requires receipt.store.wal.enabled");
+            }
+            snapshot = ReceiptSnapshot.openLatest(properties.getSnapshot().getDirectory()).orElse(null);
+            if (snapshot != null) {
+                log.info("Serving {} receipts from snapshot {}", snapshot.size(), snapshot.getFile());
+                store = new SnapshotReceiptStore(store, snapshot);
+            }
+        }
+
+        if (wal.isEnabled()) {
+            long replayFrom = snapshot == null ? 0 : snapshot.getWalSequence();
+            WriteAheadLog writeAheadLog = new WriteAheadLog(wal.getDirectory(), wal.getSegmentSize().toBytes(),
+                    wal.isFsync(), wal.getMaxBatch(), replayFrom);
+            DurableReceiptStore durableStore = new DurableReceiptStore(store, writeAheadLog, properties.isRetainReceipts());
+            // With a snapshot mapped, only the log written since it is missing, so serve while that catches up
+            if (snapshot != null) {
+                durableStore.recoverInBackground(replayFrom, wal.getReplayThreads());
+            } else {
+                durableStore.recover(wal.getReplayThreads());
+            }
+            store = durableStore;
+        }
+
+        // Outermost, so the leader only streams receipts the write-ahead log already holds, and followers are only
+        // accepted once the log has been replayed into the store
+        switch (replication.getRole()) {
+            case LEADER:
+                CompletableFuture<Void> recovered = store instanceof DurableReceiptStore
+                        ? ((DurableReceiptStore) store).getRecovered()
+                        : CompletableFuture.completedFuture(null);
+                ReplicationLeader leader = new ReplicationLeader(store, recovered, properties.isRetainReceipts(),
+                        new InetSocketAddress(replication.getHost(), replication.getPort()), replication.getMaxBatch(),
+                        replication.getQueueCapacity(), replication.getSocketTimeout(),
+                        replication.getHeartbeatInterval());
+                return new ReplicatingReceiptStore(store, leader,
+                        replication.getAck() == ReceiptReplicationProperties.Ack.SYNC, replication.getAckTimeout());
+            case FOLLOWER:
+                return new ReplicaReceiptStore(store);
+            case NONE:
+            default:
+                return store;
+        }
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "receipt.store.snapshot.enabled", havingValue = "true")
+    public SnapshotManager snapshotManager(ReceiptStore receiptStore, ReceiptStoreProperties properties) {
+        ReceiptStoreProperties.Snapshot snapshot = properties.getSnapshot();
+        SnapshotManager manager = new SnapshotManager((DurableReceiptStore) unwrapReplication(receiptStore),
+                snapshot.getDirectory(), properties.isRetainReceipts(), snapshot.isOnShutdown());
+        manager.start(snapshot.getInterval());
+        return manager;
+    }
+
+    // DOWN once the write-ahead log rejects appends for good; until a restart every ingest then fails
+    @Bean
+    @ConditionalOnProperty(name = "receipt.store.wal.enabled", havingValue = "true")
+    public HealthIndicator writeAheadLogHealth(ReceiptStore receiptStore) {
+        WriteAheadLog writeAheadLog = ((DurableReceiptStore) unwrapReplication(receiptStore)).getWriteAheadLog();
+        return () -> {
+            Exception failure = writeAheadLog.getFailure();
+            Health.Builder health = failure == null ? Health.up() : Health.down(failure);
+            return health.withDetail("failedWrites", writeAheadLog.getFailedWrites()).build();
+        };
+    }
+
+    static ReceiptStore unwrapReplication(ReceiptStore store) {
+        if (store instanceof ReplicatingReceiptStore) {
+            return ((ReplicatingReceiptStore) store).getDelegate();
+        }
+        if (store instanceof ReplicaReceiptStore) {
+            return ((ReplicaReceiptStore) store).getDelegate();
+        }
+        return store;
+    }
+
+    private static ReceiptStore baseStore(ReceiptStoreProperties properties) {
+        switch (properties.getType()) {
+            case OFF_HEAP:
+                return new OffHeapReceiptStore(Math.toIntExact(properties.getOffHeap().getSlabSize().toBytes()),
+                        properties.getInitialCapacity(), properties.isRetainReceipts());
+            case BOUNDED:
+                ReceiptStoreProperties.Bounded bounded = properties.getBounded();
+                long maximumBytes = bounded.getMaximumMemory() == null ? 0 : bounded.getMaximumMemory().toBytes();
+                return new BoundedReceiptStore(bounded.getMaximumSize(), maximumBytes,
+                        bounded.getExpireAfterWrite(), properties.isRetainReceipts());
+            case MEMORY:
+            default:
+                return new ConcurrentReceiptStore(properties.getInitialCapacity(), properties.isRetainReceipts());
+        }
+    }
+
+    /*
+     * Every store: receipt.store.size, the number of receipts currently held.
+     * Bounded store: cache.gets (hit/miss), cache.evictions and cache.size under cache=receipts.
+     * Write-ahead log: how long startup replay took, how many receipts it restored, and failed writes.
+     * Snapshots: how long the last one took.
+     */
+    @Bean
+    public MeterBinder receiptStoreMetrics(ReceiptStore receiptStore, ObjectProvider<SnapshotManager> snapshotManager) {
+        return registry -> {
+            Gauge.builder("receipt.store.size", receiptStore, ReceiptStore::size)
+                    .description("Receipts currently held by the store")
+                    .register(registry);
+            snapshotManager.ifAvailable(manager ->
+                    TimeGauge.builder("receipt.store.snapshot.duration", manager,
+                                    TimeUnit.MILLISECONDS, m -> m.getLastDuration().toMillis())
+                            .description("Time taken by the most recent receipt snapshot")
+                            .register(registry));
+            ReceiptStore store = unwrapReplication(receiptStore);
+            if (store instanceof DurableReceiptStore) {
+                DurableReceiptStore durableStore = (DurableReceiptStore) store;
+                TimeGauge.builder("receipt.store.wal.replay.duration", durableStore,
+                                TimeUnit.MILLISECONDS, s -> s.getReplayDuration().toMillis())
+                        .description("Time spent replaying the write-ahead log at startup")
+                        .register(registry);
+                Gauge.builder("receipt.store.wal.replay.records", durableStore, DurableReceiptStore::getReplayedRecords)
+                        .description("Receipts restored from the write-ahead log at startup")
+                        .register(registry);
+                Gauge.builder("receipt.store.wal.syncs", durableStore, s -> s.getWriteAheadLog().getSyncCount())
+                        .description("fsyncs issued by the write-ahead log; each covers a whole group of receipts")
+                        .register(registry);
+                Gauge.builder("receipt.store.wal.failures", durableStore, s -> s.getWriteAheadLog().getFailedWrites())
+                        .description("Write-ahead log writes that failed, including those retried in a new segment")
+                        .register(registry);
+                store = durableStore.getDelegate();
+            }
+            if (store instanceof SnapshotReceiptStore) {
+                store = ((SnapshotReceiptStore) store).getLive();
+            }
+            if (store instanceof BoundedReceiptStore) {
+                CaffeineCacheMetrics.monitor(registry, ((BoundedReceiptStore) store).getCache(), "receipts");
+            }
+        };
+    }
+}
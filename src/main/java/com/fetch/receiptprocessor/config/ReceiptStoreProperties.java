@@ -0,0 +1,90 @@
+package com.fetch.receiptprocessor.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "receipt.store")
+public class ReceiptStoreProperties {
+
+    public enum Type {
+        // Segmented open-addressing ReceiptIdIndex on the Java heap, ids held as unboxed longs
+        MEMORY,
+        // Receipts encoded into direct memory slabs, decoded on read
+        OFF_HEAP,
+        // Caffeine cache bounded by entry count or memory, with optional TTL
+        BOUNDED
+    }
+
+    private Type type = Type.MEMORY;
+
+    // Expected number of receipts, used to pre-size the store
+    private int initialCapacity = 1024;
+
+    // Keep full receipt bodies next to their points; disable to hold only the id -> points table
+    private boolean retainReceipts = true;
+
+    private final OffHeap offHeap = new OffHeap();
+
+    private final Bounded bounded = new Bounded();
+
+    private final Wal wal = new Wal();
+
+    private final Snapshot snapshot = new Snapshot();
+
+    @Data
+    public static class OffHeap {
+        // Size of each direct buffer receipts are packed into; bounded overall by -XX:MaxDirectMemorySize
+        private DataSize slabSize = DataSize.ofMegabytes(64);
+    }
+
+    @Data
+    public static class Bounded {
+        // Maximum number of receipts kept; ignored when maximumMemory is set
+        private long maximumSize = 1_000_000;
+
+        // Estimated heap budget for stored receipts; takes precedence over maximumSize
+        private DataSize maximumMemory;
+
+        // Drop receipts this long after ingest; unset keeps them until evicted for space
+        private Duration expireAfterWrite;
+    }
+
+    @Data
+    public static class Wal {
+        // Log every receipt to disk before acknowledging it and replay the log on startup
+        private boolean enabled = false;
+
+        private Path directory = Path.of("data", "wal");
+
+        // Segments are rotated once they reach this size
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        // fsync each group commit; disabling trades crash durability for latency
+        private boolean fsync = true;
+
+        // Most records written and fsynced together in one group commit
+        private int maxBatch = 1024;
+
+        // Threads used to replay segments on startup
+        private int replayThreads = Runtime.getRuntime().availableProcessors();
+    }
+
+    @Data
+    public static class Snapshot {
+        // Periodically copy the store to a memory-mapped file that a restart serves from; requires the write-ahead log
+        private boolean enabled = false;
+
+        private Path directory = Path.of("data", "snapshots");
+
+        // Time between snapshots; the write-ahead log only has to be replayed back to the last one
+        private Duration interval = Duration.ofMinutes(5);
+
+        // Take a final snapshot during a graceful shutdown so the next start has nothing to replay
+        private boolean onShutdown = true;
+    }
+}
@@ -0,0 +1,85 @@
+package com.fetch.receiptprocessor.config;
+
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import com.fetch.receiptprocessor.store.replication.ReplicaReceiptStore;
+import com.fetch.receiptprocessor.store.replication.ReplicatingReceiptStore;
+import com.fetch.receiptprocessor.store.replication.ReplicationFollower;
+import com.fetch.receiptprocessor.store.replication.ReplicationLeader;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.lang.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * /actuator/replication: the replication role and lag of this instance. A POST to a follower promotes it to accept
+ * receipts after its leader is lost; it stops following, and clients have to be pointed at it.
+ *
+ * Promotion is refused (403) unless receipt.replication.promotion-enabled is set, and (409) while the follower is
+ * still connected to a leader, since two instances accepting receipts would diverge. The endpoint is not exposed
+ * over HTTP by default; expose it on a management port that only operators can reach.
+ */
+@Endpoint(id = "replication")
+public class ReplicationEndpoint {
+
+    private final ReceiptStore receiptStore;
+    // Present only on a follower
+    private final ReplicationFollower replicationFollower;
+    private final boolean promotionEnabled;
+
+    public ReplicationEndpoint(ReceiptStore receiptStore, @Nullable ReplicationFollower replicationFollower,
+                               boolean promotionEnabled) {
+        this.receiptStore = receiptStore;
+        this.replicationFollower = replicationFollower;
+        this.promotionEnabled = promotionEnabled;
+    }
+
+    @ReadOperation
+    public Map<String, Object> replication() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (receiptStore instanceof ReplicatingReceiptStore) {
+            ReplicatingReceiptStore store = (ReplicatingReceiptStore) receiptStore;
+            ReplicationLeader leader = store.getLeader();
+            status.put("role", "leader");
+            status.put("ack", store.isSynchronous() ? "sync" : "async");
+            status.put("followers", leader.getFollowerCount());
+            status.put("inSync", leader.getInSyncFollowerCount());
+            status.put("sequence", leader.getSequence());
+            status.put("lagMillis", leader.getLag().toMillis());
+            status.put("lagRecords", leader.getLagRecords());
+        } else if (receiptStore instanceof ReplicaReceiptStore) {
+            boolean promoted = ((ReplicaReceiptStore) receiptStore).isPromoted();
+            status.put("role", promoted ? "promoted" : "follower");
+            status.put("connected", replicationFollower != null && replicationFollower.isConnected());
+        }
+        status.put("receipts", receiptStore.size());
+        return status;
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<Map<String, Object>> promote() {
+        if (receiptStore instanceof ReplicaReceiptStore) {
+            if (!promotionEnabled) {
+                return refused(HttpStatus.FORBIDDEN, "promotion is disabled; set receipt.replication.promotion-enabled");
+            }
+            if (replicationFollower != null && replicationFollower.isConnected()) {
+                return refused(HttpStatus.CONFLICT, "still connected to the leader");
+            }
+            if (replicationFollower != null) {
+                replicationFollower.close();
+            }
+            ((ReplicaReceiptStore) receiptStore).promote();
+        }
+        return new WebEndpointResponse<>(replication());
+    }
+
+    private WebEndpointResponse<Map<String, Object>> refused(HttpStatus status, String reason) {
+        Map<String, Object> body = replication();
+        body.put("error", reason);
+        return new WebEndpointResponse<>(body, status.value());
+    }
+}
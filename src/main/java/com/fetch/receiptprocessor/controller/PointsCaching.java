@@ -0,0 +1,46 @@
+package com.fetch.receiptprocessor.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+
+/*
+ * HTTP caching of points lookups, shared by ReceiptController and ReceiptHandler.
+ *
+ * A receipt's points are fixed when it is ingested, so a points response never changes once it has been served:
+ * it carries a strong ETag and may be kept by any cache for a year without revalidation. A request whose
+ * If-None-Match already names that ETag is answered 304 with no body. Misses are marked no-store, since with
+ * async ingest an id can be unknown for a moment and then found.
+ */
+final class PointsCaching {
+
+    static final CacheControl FOUND = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+    static final CacheControl NOT_FOUND = CacheControl.noStore();
+
+    private PointsCaching() {
+    }
+
+    // ETags only have to be unique per URL; the points and the encoding they are sent in are the whole representation
+    static String eTag(int points, MediaType format) {
+        return "\"" + points + ResponseFormats.eTagSuffix(format) + "\"";
+    }
+
+    // If-None-Match uses the weak comparison, so W/"28" matches "28"; several headers arrive joined by commas
+    static boolean notModified(@Nullable String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,44 @@
+package com.fetch.receiptprocessor.controller;
+
+import com.fetch.receiptprocessor.service.ReceiptBatchService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("/receipts")
+public class ReceiptBatchController {
+
+    private final ReceiptBatchService receiptBatchService;
+
+    @Autowired
+    public ReceiptBatchController(ReceiptBatchService receiptBatchService) {
+        this.receiptBatchService = receiptBatchService;
+    }
+
+    // Reads the body straight off the servlet stream so large batches are never buffered by a message converter
+    @PostMapping(value = "/process/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public void processBatch(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        boolean ndjson = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType);
+        response.setContentType(ndjson ? MediaType.APPLICATION_NDJSON_VALUE : MediaType.APPLICATION_JSON_VALUE);
+        receiptBatchService.processBatch(request.getInputStream(), response.getOutputStream(), ndjson);
+    }
+
+    // Resolves many ids in one call; unknown ids map to null instead of producing a 404
+    @PostMapping(value = "/points", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void getPoints(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        receiptBatchService.lookupPoints(request.getInputStream(), response.getOutputStream());
+    }
+}
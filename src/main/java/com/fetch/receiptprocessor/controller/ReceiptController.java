@@ -1,40 +1,129 @@
 package com.fetch.receiptprocessor.controller;
 
-import com.fetch.receiptprocessor.dto.PointResponse;
-import com.fetch.receiptprocessor.dto.ReceiptResponse;
+import com.fetch.receiptprocessor.cluster.ShardRouter;
 import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.service.ReceiptDeduplicator;
+import com.fetch.receiptprocessor.service.ReceiptIngestPipeline;
 import com.fetch.receiptprocessor.service.ReceiptPointServiceImpl;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import com.fetch.receiptprocessor.validation.ReceiptValidator;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/receipts")
 public class ReceiptController {
 
+    private static final byte[] NOT_FOUND_BODY = "No receipt found for that id".getBytes(StandardCharsets.UTF_8);
+    private static final String CACHE_FOUND = PointsCaching.FOUND.getHeaderValue();
+    private static final String CACHE_NOT_FOUND = PointsCaching.NOT_FOUND.getHeaderValue();
+
     private final ReceiptPointServiceImpl receiptPointService;
+    // Present only when receipt.ingest.async.enabled is set
+    private final ReceiptIngestPipeline receiptIngestPipeline;
+    private final ReceiptValidator receiptValidator;
 
     @Autowired
-    public ReceiptController(ReceiptPointServiceImpl receiptPointService) {
+    public ReceiptController(ReceiptPointServiceImpl receiptPointService,
+                             @Nullable ReceiptIngestPipeline receiptIngestPipeline,
+                             ReceiptValidator receiptValidator) {
         this.receiptPointService = receiptPointService;
+        this.receiptIngestPipeline = receiptIngestPipeline;
+        this.receiptValidator = receiptValidator;
+    }
+
+    // @Valid runs ReceiptValidator in place of Hibernate Validator; failures still surface as MethodArgumentNotValidException
+    @InitBinder("receipt")
+    public void initReceiptBinder(WebDataBinder binder) {
+        binder.setValidator(receiptValidator);
     }
 
+    /*
+     * Both endpoints write their one-field bodies straight to the servlet response, skipping message-converter
+     * negotiation: pre-encoded JSON, or Smile or CBOR when Accept asks for it (see ResponseFormats).
+     * ResponseWritingBenchmark measures the difference. Errors thrown before anything is written still reach
+     * GlobalExceptionHandler. Request bodies in any of the three formats are read by JacksonConfig's converters.
+     */
     @PostMapping("/process")
-    public ResponseEntity<?> processReceipt(@Valid @RequestBody Receipt receipt) {
-        String receiptId = receiptPointService.processReceipt(receipt);
-        return ResponseEntity.ok().body(new ReceiptResponse(receiptId));
+    public void processReceipt(@Valid @RequestBody Receipt receipt,
+                               @RequestHeader(value = ReceiptDeduplicator.IDEMPOTENCY_KEY_HEADER,
+                                       required = false) String idempotencyKey,
+                               @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                               @RequestHeader(value = ShardRouter.FORWARDED_HEADER, required = false) String forwardedBy,
+                               @RequestHeader(value = ShardRouter.FORWARDING_SECRET_HEADER,
+                                       required = false) String forwardingSecret,
+                               HttpServletResponse response) throws IOException {
+        boolean forwarded = receiptPointService.isForwarded(forwardedBy, forwardingSecret);
+        String receiptId = ingest(receipt, idempotencyKey, forwarded);
+        MediaType format = ResponseFormats.negotiate(accept);
+        write(response, format.toString(), ResponseFormats.receiptId(format, receiptId));
     }
 
+    /*
+     * The points are looked up, never re-scored; a cached copy the client names in If-None-Match is not re-sent.
+     * A lookup another shard forwarded here is answered from this instance's store and never forwarded again;
+     * without the cluster's forwarding secret a lookup is routed as usual, whatever it claims.
+     */
     @GetMapping("/{id}/points")
-    public ResponseEntity<?> getPoints(@PathVariable("id") String receiptId) {
-        try {
-            int points = receiptPointService.calculatePoints(receiptId);
-            return ResponseEntity.ok().body(new PointResponse(points));
-        } catch (IllegalArgumentException e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No receipt found for that id");
+    public void getPoints(@PathVariable("id") String receiptId,
+                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                          @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                          @RequestHeader(value = ShardRouter.FORWARDED_HEADER, required = false) String forwardedBy,
+                          @RequestHeader(value = ShardRouter.FORWARDING_SECRET_HEADER,
+                                  required = false) String forwardingSecret,
+                          HttpServletResponse response) throws IOException {
+        int points = receiptPointService.isForwarded(forwardedBy, forwardingSecret)
+                ? receiptPointService.findLocalPoints(receiptId)
+                : receiptPointService.findPoints(receiptId);
+        if (points == ReceiptStore.NOT_FOUND) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_NOT_FOUND);
+            write(response, MediaType.TEXT_PLAIN_VALUE + ";charset=UTF-8", NOT_FOUND_BODY);
+            return;
+        }
+        MediaType format = ResponseFormats.negotiate(accept);
+        String eTag = PointsCaching.eTag(points, format);
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_FOUND);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (PointsCaching.notModified(ifNoneMatch, eTag)) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
         }
+        write(response, format.toString(), ResponseFormats.points(format, points));
     }
-}
 
+    private String ingest(Receipt receipt, String idempotencyKey, boolean forwarded) {
+        if (forwarded) {
+            // Another shard already placed the receipt here, so it is stored without routing it again
+            return receiptIngestPipeline != null
+                    ? receiptIngestPipeline.submit(receipt, idempotencyKey)
+                    : receiptPointService.processLocally(receipt, idempotencyKey);
+        }
+        if (receiptIngestPipeline != null
+                && (!receiptPointService.isClustered() || receiptPointService.ownsReceipt(receipt, idempotencyKey))) {
+            return receiptIngestPipeline.submit(receipt, idempotencyKey);
+        }
+        // Stored here, or in cluster mode forwarded synchronously to the shard that owns the receipt
+        return receiptPointService.processReceipt(receipt, idempotencyKey);
+    }
+
+    // A known Content-Length lets the container send the body in one piece rather than chunked
+    private static void write(HttpServletResponse response, String contentType, byte[] body) throws IOException {
+        response.setContentType(contentType);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
@@ -0,0 +1,173 @@
+package com.fetch.receiptprocessor.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fetch.receiptprocessor.cluster.ShardRouter;
+import com.fetch.receiptprocessor.exception.IngestQueueFullException;
+import com.fetch.receiptprocessor.exception.ReadOnlyReplicaException;
+import com.fetch.receiptprocessor.exception.ShardUnavailableException;
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.service.ReceiptDeduplicator;
+import com.fetch.receiptprocessor.service.ReceiptIngestPipeline;
+import com.fetch.receiptprocessor.service.ReceiptPointServiceImpl;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import com.fetch.receiptprocessor.store.replication.ReplicatingReceiptStore;
+import com.fetch.receiptprocessor.store.wal.DurableReceiptStore;
+import com.fetch.receiptprocessor.validation.ReceiptValidator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/*
+ * Reactive counterpart of ReceiptController, routed by ReceiptRouter.
+ * The body is decoded by Jackson's non-blocking parser as it arrives, so a slow upload holds no thread.
+ * Failures map to the same statuses and messages as GlobalExceptionHandler does for the MVC stack.
+ * Response bodies are encoded by ResponseFormats and written by the byte array encoder rather than Jackson.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReceiptHandler {
+
+    private final ReceiptPointServiceImpl receiptPointService;
+    private final ReceiptValidator receiptValidator;
+    private final Scheduler storeScheduler;
+    private final Scheduler lookupScheduler;
+    // Present only when receipt.ingest.async.enabled is set
+    private final ReceiptIngestPipeline receiptIngestPipeline;
+
+    @Autowired
+    public ReceiptHandler(ReceiptPointServiceImpl receiptPointService, ReceiptValidator receiptValidator,
+                          ReceiptStore receiptStore,
+                          @Nullable ReceiptIngestPipeline receiptIngestPipeline) {
+        this.receiptPointService = receiptPointService;
+        this.receiptValidator = receiptValidator;
+        this.receiptIngestPipeline = receiptIngestPipeline;
+        // In-memory stores answer without blocking, so ingest stays on the event loop; a durable put waits for
+        // fsync, a synchronously replicated one for followers, and in cluster mode a receipt on another shard is a
+        // blocking HTTP call
+        this.storeScheduler = isBlocking(receiptStore) || receiptPointService.isClustered()
+                ? Schedulers.boundedElastic()
+                : Schedulers.immediate();
+        this.lookupScheduler = receiptPointService.isClustered() ? Schedulers.boundedElastic() : Schedulers.immediate();
+    }
+
+    public Mono<ServerResponse> processReceipt(ServerRequest request) {
+        String idempotencyKey = request.headers().firstHeader(ReceiptDeduplicator.IDEMPOTENCY_KEY_HEADER);
+        boolean forwarded = isForwarded(request);
+        MediaType format = ResponseFormats.negotiate(accept(request));
+        return request.bodyToMono(Receipt.class)
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("Request body is missing")))
+                .flatMap(receipt -> receiptValidator.isValid(receipt)
+                        ? store(receipt, idempotencyKey, forwarded)
+                        : Mono.error(new IllegalArgumentException("Receipt failed validation")))
+                .flatMap(receiptId -> ServerResponse.ok()
+                        .contentType(format)
+                        .bodyValue(ResponseFormats.receiptId(format, receiptId)))
+                .onErrorResume(ReceiptHandler::isInvalidReceipt, e -> ServerResponse.status(HttpStatus.BAD_REQUEST)
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .bodyValue("The receipt is invalid"))
+                .onErrorResume(IngestQueueFullException.class, e -> ServerResponse.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter().toSeconds()))
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .bodyValue("Too many receipts are waiting to be processed"))
+                .onErrorResume(ShardUnavailableException.class, ReceiptHandler::shardUnavailable)
+                .onErrorResume(ReadOnlyReplicaException.class, e -> ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .bodyValue("This instance is a read-only replica"));
+    }
+
+    // Same choices as ReceiptController: forwarded receipts are stored here, others may be forwarded to their owner
+    private Mono<String> store(Receipt receipt, @Nullable String idempotencyKey, boolean forwarded) {
+        if (forwarded) {
+            return Mono.fromCallable(() -> receiptIngestPipeline != null
+                            ? receiptIngestPipeline.submit(receipt, idempotencyKey)
+                            : receiptPointService.processLocally(receipt, idempotencyKey))
+                    .subscribeOn(storeScheduler);
+        }
+        if (receiptIngestPipeline != null
+                && (!receiptPointService.isClustered() || receiptPointService.ownsReceipt(receipt, idempotencyKey))) {
+            return Mono.fromCallable(() -> receiptIngestPipeline.submit(receipt, idempotencyKey));
+        }
+        return Mono.fromCallable(() -> receiptPointService.processReceipt(receipt, idempotencyKey))
+                .subscribeOn(storeScheduler);
+    }
+
+    // Same as ReceiptController: a lookup another shard forwarded here is answered locally, never forwarded again
+    public Mono<ServerResponse> getPoints(ServerRequest request) {
+        String receiptId = request.pathVariable("id");
+        if (isForwarded(request)) {
+            return pointsResponse(request, receiptPointService.findLocalPoints(receiptId));
+        }
+        return Mono.fromCallable(() -> receiptPointService.findPoints(receiptId))
+                .subscribeOn(lookupScheduler)
+                .flatMap(points -> pointsResponse(request, points))
+                .onErrorResume(ShardUnavailableException.class, ReceiptHandler::shardUnavailable);
+    }
+
+    // Only a request carrying the cluster's forwarding secret is treated as forwarded by another shard
+    private boolean isForwarded(ServerRequest request) {
+        return receiptPointService.isForwarded(request.headers().firstHeader(ShardRouter.FORWARDED_HEADER),
+                request.headers().firstHeader(ShardRouter.FORWARDING_SECRET_HEADER));
+    }
+
+    private Mono<ServerResponse> pointsResponse(ServerRequest request, int points) {
+        if (points == ReceiptStore.NOT_FOUND) {
+            return ServerResponse.status(HttpStatus.NOT_FOUND)
+                    .cacheControl(PointsCaching.NOT_FOUND)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .bodyValue("No receipt found for that id");
+        }
+        MediaType format = ResponseFormats.negotiate(accept(request));
+        String eTag = PointsCaching.eTag(points, format);
+        String ifNoneMatch = String.join(",", request.headers().header(HttpHeaders.IF_NONE_MATCH));
+        if (PointsCaching.notModified(ifNoneMatch, eTag)) {
+            return ServerResponse.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(eTag)
+                    .cacheControl(PointsCaching.FOUND)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                    .build();
+        }
+        return ServerResponse.ok()
+                .eTag(eTag)
+                .cacheControl(PointsCaching.FOUND)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .contentType(format)
+                .bodyValue(ResponseFormats.points(format, points));
+    }
+
+    private static Mono<ServerResponse> shardUnavailable(ShardUnavailableException e) {
+        return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .contentType(MediaType.TEXT_PLAIN)
+                .bodyValue("The shard that owns this receipt is unavailable");
+    }
+
+    private static boolean isBlocking(ReceiptStore receiptStore) {
+        if (receiptStore instanceof ReplicatingReceiptStore) {
+            ReplicatingReceiptStore replicatingStore = (ReplicatingReceiptStore) receiptStore;
+            return replicatingStore.isSynchronous() || replicatingStore.getDelegate() instanceof DurableReceiptStore;
+        }
+        return receiptStore instanceof DurableReceiptStore;
+    }
+
+    private static String accept(ServerRequest request) {
+        return String.join(",", request.headers().header(HttpHeaders.ACCEPT));
+    }
+
+    // Unreadable JSON reaches the handler wrapped by the codec layer rather than as the Jackson exception itself
+    private static boolean isInvalidReceipt(Throwable e) {
+        return e instanceof IllegalArgumentException
+                || e instanceof ServerWebInputException
+                || e instanceof DecodingException
+                || e instanceof JsonProcessingException;
+    }
+}
@@ -0,0 +1,33 @@
+package com.fetch.receiptprocessor.controller;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+/*
+ * Receipt API routes for reactive mode (spring.main.web-application-type=reactive).
+ * Same paths and responses as ReceiptController; the batch endpoints are only served by the MVC stack.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReceiptRouter {
+
+    @Bean
+    public RouterFunction<ServerResponse> receiptRoutes(ReceiptHandler receiptHandler) {
+        return RouterFunctions.route()
+                .path("/receipts", builder -> builder
+                        .POST("/process", receiptHandler::processReceipt)
+                        .GET("/{id}/points", receiptHandler::getPoints))
+                .build();
+    }
+
+    // Tomcat is on the classpath for the MVC stack and would otherwise be picked as the reactive server too
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
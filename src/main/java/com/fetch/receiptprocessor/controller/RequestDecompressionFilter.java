@@ -0,0 +1,200 @@
+package com.fetch.receiptprocessor.controller;
+
+import com.fetch.receiptprocessor.exception.DecompressedBodyTooLargeException;
+import com.github.luben.zstd.ZstdInputStream;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/*
+ * Accepts request bodies sent with Content-Encoding gzip or zstd.
+ *
+ * The body is decompressed as it is read, so Jackson parses from the inflating stream and a large upload is never
+ * held in memory either compressed or inflated. Downstream the request looks as if it had been sent uncompressed:
+ * Content-Encoding is dropped and the length is unknown. Bodies that inflate past maxSize fail with
+ * DecompressedBodyTooLargeException, which keeps a small compressed request from expanding without limit.
+ * Other codings are answered with 415 and the supported list in Accept-Encoding.
+ */
+public class RequestDecompressionFilter extends OncePerRequestFilter {
+
+    static final String SUPPORTED_ENCODINGS = "gzip, zstd";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final long maxSize;
+
+    public RequestDecompressionFilter(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String encoding = request.getHeader(HttpHeaders.CONTENT_ENCODING);
+        if (encoding == null || encoding.isBlank() || encoding.trim().equalsIgnoreCase("identity")) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String coding = encoding.trim().toLowerCase(Locale.ROOT);
+        if (!coding.equals("gzip") && !coding.equals("x-gzip") && !coding.equals("zstd")) {
+            response.setStatus(HttpStatus.UNSUPPORTED_MEDIA_TYPE.value());
+            response.setHeader(HttpHeaders.ACCEPT_ENCODING, SUPPORTED_ENCODINGS);
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("Unsupported Content-Encoding");
+            return;
+        }
+        chain.doFilter(new DecompressedRequest(request, coding.equals("zstd"), maxSize), response);
+    }
+
+    private static final class DecompressedRequest extends HttpServletRequestWrapper {
+
+        private final boolean zstd;
+        private final long maxSize;
+        private ServletInputStream inputStream;
+        private BufferedReader reader;
+
+        DecompressedRequest(HttpServletRequest request, boolean zstd, long maxSize) {
+            super(request);
+            this.zstd = zstd;
+            this.maxSize = maxSize;
+        }
+
+        // The decoder reads the compressed header when created, so nothing is read before the body is asked for
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                InputStream body = super.getInputStream();
+                InputStream decoder = zstd ? new ZstdInputStream(body) : new GZIPInputStream(body, BUFFER_SIZE);
+                inputStream = new LimitedInputStream(decoder, maxSize);
+            }
+            return inputStream;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            if (reader == null) {
+                String characterEncoding = getCharacterEncoding();
+                Charset charset = characterEncoding == null
+                        ? StandardCharsets.UTF_8
+                        : Charset.forName(characterEncoding);
+                reader = new BufferedReader(new InputStreamReader(getInputStream(), charset));
+            }
+            return reader;
+        }
+
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return -1;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return isHidden(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return isHidden(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            List<String> names = Collections.list(super.getHeaderNames());
+            names.removeIf(DecompressedRequest::isHidden);
+            return Collections.enumeration(names);
+        }
+
+        private static boolean isHidden(String name) {
+            return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)
+                    || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name);
+        }
+    }
+
+    // Blocking reads only; non-blocking servlet reads are not used by the receipt endpoints
+    private static final class LimitedInputStream extends ServletInputStream {
+
+        private final InputStream decoder;
+        private final long maxSize;
+        private long read;
+        private boolean finished;
+
+        LimitedInputStream(InputStream decoder, long maxSize) {
+            this.decoder = decoder;
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = decoder.read();
+            if (b == -1) {
+                return finish();
+            }
+            count(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = decoder.read(buffer, offset, length);
+            return n == -1 ? finish() : count(n);
+        }
+
+        private int finish() {
+            finished = true;
+            return -1;
+        }
+
+        private int count(int n) throws DecompressedBodyTooLargeException {
+            read += n;
+            if (read > maxSize) {
+                throw new DecompressedBodyTooLargeException(maxSize);
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            decoder.close();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new UnsupportedOperationException("Decompressed request bodies are read blocking");
+        }
+    }
+}
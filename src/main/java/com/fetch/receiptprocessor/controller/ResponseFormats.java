@@ -0,0 +1,82 @@
+package com.fetch.receiptprocessor.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fetch.receiptprocessor.dto.PointResponse;
+import com.fetch.receiptprocessor.dto.PreEncodedResponses;
+import com.fetch.receiptprocessor.dto.ReceiptResponse;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.lang.Nullable;
+
+import java.io.UncheckedIOException;
+
+/*
+ * Response encodings of the receipt endpoints, shared by ReceiptController and ReceiptHandler.
+ *
+ * A client that names Smile or CBOR in Accept, with a quality at least as high as anything JSON-compatible, gets
+ * the one-field body in that encoding; everyone else gets the pre-encoded JSON. The bodies are flat DTOs without
+ * dates, so plain binary mappers write them exactly as the ones JacksonConfig configures for request bodies would.
+ */
+final class ResponseFormats {
+
+    static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+    static final MediaType CBOR = MediaType.APPLICATION_CBOR;
+
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+    private static final ObjectMapper CBOR_MAPPER = new ObjectMapper(new CBORFactory());
+
+    private ResponseFormats() {
+    }
+
+    // Ties go to the type listed first; an Accept header that does not parse is treated as absent
+    static MediaType negotiate(@Nullable String accept) {
+        if (accept == null || accept.isEmpty()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MediaType best = null;
+        double bestQuality = 0;
+        try {
+            for (MediaType type : MediaType.parseMediaTypes(accept)) {
+                MediaType format = type.equalsTypeAndSubtype(SMILE) ? SMILE
+                        : type.equalsTypeAndSubtype(CBOR) ? CBOR
+                        : type.isCompatibleWith(MediaType.APPLICATION_JSON) ? MediaType.APPLICATION_JSON
+                        : null;
+                if (format != null && type.getQualityValue() > bestQuality) {
+                    best = format;
+                    bestQuality = type.getQualityValue();
+                }
+            }
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        return best == null ? MediaType.APPLICATION_JSON : best;
+    }
+
+    static byte[] receiptId(MediaType format, String receiptId) {
+        return format == MediaType.APPLICATION_JSON
+                ? PreEncodedResponses.receiptId(receiptId)
+                : encode(format, new ReceiptResponse(receiptId));
+    }
+
+    static byte[] points(MediaType format, int points) {
+        return format == MediaType.APPLICATION_JSON
+                ? PreEncodedResponses.points(points)
+                : encode(format, new PointResponse(points));
+    }
+
+    // Appended to the ETag so each encoding of the same points is a distinct representation
+    static String eTagSuffix(MediaType format) {
+        return format == SMILE ? "-smile" : format == CBOR ? "-cbor" : "";
+    }
+
+    private static byte[] encode(MediaType format, Object body) {
+        try {
+            return (format == SMILE ? SMILE_MAPPER : CBOR_MAPPER).writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.fetch.receiptprocessor.dto;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.nio.charset.StandardCharsets;
+
+/*
+ * JSON bodies of PointResponse and ReceiptResponse built from pre-encoded byte templates, without message-converter
+ * negotiation or an ObjectMapper. Each body is a fixed prefix, one value and a fixed suffix written into a single
+ * array of exactly the right size, whose length is also the Content-Length, so the container never has to chunk.
+ * The bytes are the same as Jackson writes for the objects themselves.
+ */
+public final class PreEncodedResponses {
+
+    private static final byte[] POINTS_PREFIX = "{\"points\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ID_PREFIX = "{\"id\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ID_SUFFIX = "\"}".getBytes(StandardCharsets.US_ASCII);
+
+    private PreEncodedResponses() {
+    }
+
+    // {"points":N}
+    public static byte[] points(int points) {
+        long value = points;
+        boolean negative = value < 0;
+        if (negative) {
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        int length = POINTS_PREFIX.length + (negative ? 1 : 0) + digits + 1;
+        byte[] body = new byte[length];
+        System.arraycopy(POINTS_PREFIX, 0, body, 0, POINTS_PREFIX.length);
+        if (negative) {
+            body[POINTS_PREFIX.length] = '-';
+        }
+        body[length - 1] = '}';
+        for (int i = length - 2; i >= length - 1 - digits; i--) {
+            body[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return body;
+    }
+
+    // {"id":"..."}; ReceiptId.toString() is hex and hyphens, so the template is filled without escaping
+    public static byte[] receiptId(String id) {
+        int length = id.length();
+        for (int i = 0; i < length; i++) {
+            char c = id.charAt(i);
+            if (c < 0x20 || c > 0x7e || c == '"' || c == '\\') {
+                return escaped(id);
+            }
+        }
+        byte[] body = new byte[ID_PREFIX.length + length + ID_SUFFIX.length];
+        System.arraycopy(ID_PREFIX, 0, body, 0, ID_PREFIX.length);
+        for (int i = 0; i < length; i++) {
+            body[ID_PREFIX.length + i] = (byte) id.charAt(i);
+        }
+        System.arraycopy(ID_SUFFIX, 0, body, ID_PREFIX.length + length, ID_SUFFIX.length);
+        return body;
+    }
+
+    private static byte[] escaped(String id) {
+        byte[] value = JsonStringEncoder.getInstance().quoteAsUTF8(id);
+        byte[] body = new byte[ID_PREFIX.length + value.length + ID_SUFFIX.length];
+        System.arraycopy(ID_PREFIX, 0, body, 0, ID_PREFIX.length);
+        System.arraycopy(value, 0, body, ID_PREFIX.length, value.length);
+        System.arraycopy(ID_SUFFIX, 0, body, ID_PREFIX.length + value.length, ID_SUFFIX.length);
+        return body;
+    }
+}
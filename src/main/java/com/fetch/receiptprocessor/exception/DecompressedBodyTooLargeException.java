@@ -0,0 +1,11 @@
+package com.fetch.receiptprocessor.exception;
+
+import java.io.IOException;
+
+// Thrown while reading a compressed request body that inflates past the configured limit; answered with 413
+public class DecompressedBodyTooLargeException extends IOException {
+
+    public DecompressedBodyTooLargeException(long maxSize) {
+        super("Request body is larger than " + maxSize + " bytes once decompressed");
+    }
+}
@@ -3,6 +3,8 @@ package com.fetch.receiptprocessor.exception;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -10,7 +12,9 @@ import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+// Reactive mode maps the same failures in ReceiptHandler
 @ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class GlobalExceptionHandler {
     @ExceptionHandler(IllegalArgumentException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
@@ -30,6 +34,29 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("The receipt is invalid");
     }
 
+    @ExceptionHandler(IngestQueueFullException.class)
+    public ResponseEntity<String> handleIngestQueueFullException(IngestQueueFullException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfter().toSeconds()))
+                .body("Too many receipts are waiting to be processed");
+    }
+
+    // Also matched when the message converter wraps it while binding a @RequestBody
+    @ExceptionHandler(DecompressedBodyTooLargeException.class)
+    public ResponseEntity<String> handleDecompressedBodyTooLargeException(DecompressedBodyTooLargeException e) {
+        return ResponseEntity.status(HttpStatus.CONTENT_TOO_LARGE).body("The request body is too large");
+    }
+
+    @ExceptionHandler(ShardUnavailableException.class)
+    public ResponseEntity<String> handleShardUnavailableException(ShardUnavailableException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("The shard that owns this receipt is unavailable");
+    }
+
+    @ExceptionHandler(ReadOnlyReplicaException.class)
+    public ResponseEntity<String> handleReadOnlyReplicaException(ReadOnlyReplicaException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("This instance is a read-only replica");
+    }
+
     @ExceptionHandler(JsonMappingException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ResponseEntity<String> handleJsonMappingException(JsonMappingException e) {
@@ -0,0 +1,18 @@
+package com.fetch.receiptprocessor.exception;
+
+import java.time.Duration;
+
+// Thrown when the async ingest queue has no room; answered with 429 and a Retry-After hint
+public class IngestQueueFullException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public IngestQueueFullException(Duration retryAfter) {
+        super("Ingest queue is full");
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
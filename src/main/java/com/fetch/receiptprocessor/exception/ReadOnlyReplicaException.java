@@ -0,0 +1,9 @@
+package com.fetch.receiptprocessor.exception;
+
+// Thrown when a receipt is submitted to a replication follower, which only serves lookups; answered with 503
+public class ReadOnlyReplicaException extends RuntimeException {
+
+    public ReadOnlyReplicaException() {
+        super("This instance is a read-only replica");
+    }
+}
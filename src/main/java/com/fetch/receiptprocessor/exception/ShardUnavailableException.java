@@ -0,0 +1,9 @@
+package com.fetch.receiptprocessor.exception;
+
+// Thrown in cluster mode when the shard that owns a receipt cannot be reached; answered with 503
+public class ShardUnavailableException extends RuntimeException {
+
+    public ShardUnavailableException(int shard, String reason, Throwable cause) {
+        super("Shard " + shard + " is unavailable: " + reason, cause);
+    }
+}
@@ -0,0 +1,108 @@
+package com.fetch.receiptprocessor.metrics;
+
+import com.fetch.receiptprocessor.scoring.DefaultRule;
+import com.fetch.receiptprocessor.scoring.RuleListener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Meters for the receipt hot path, published under /actuator/metrics and /actuator/prometheus.
+ *
+ * receipt.ingest.phase{phase=deserialize|validate|score|store} - histogram of each step of an ingest
+ * receipt.lookup{result=found|not_found}                       - points lookups, so the miss rate is a ratio of counts
+ * receipt.score.rule{rule=...}                                 - how often each scoring rule awarded points
+ *
+ * Callers pass in a System.nanoTime() start rather than a Timer.Sample, so timing allocates nothing.
+ */
+@Component
+public class ReceiptMetrics implements RuleListener {
+
+    private final Timer deserialize;
+    private final Timer validate;
+    private final Timer score;
+    private final Timer store;
+    private final Timer lookupFound;
+    private final Timer lookupNotFound;
+    private final MeterRegistry registry;
+    // Rule names come from the installed rule set, so counters are created the first time a rule fires
+    private final ConcurrentMap<String, Counter> ruleCounters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReceiptMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.deserialize = phaseTimer(registry, "deserialize");
+        this.validate = phaseTimer(registry, "validate");
+        this.score = phaseTimer(registry, "score");
+        this.store = phaseTimer(registry, "store");
+        this.lookupFound = lookupTimer(registry, "found");
+        this.lookupNotFound = lookupTimer(registry, "not_found");
+
+        // The built-in rules are published from the start, even before they first fire
+        for (DefaultRule rule : DefaultRule.values()) {
+            ruleCounter(rule.ruleName());
+        }
+    }
+
+    // Meters register against an empty composite and record nothing; for services built outside Spring
+    public static ReceiptMetrics noop() {
+        return new ReceiptMetrics(new CompositeMeterRegistry());
+    }
+
+    // Shared with ReceiptIngestPipeline, which times its batched store on the same meter
+    public static Timer phaseTimer(MeterRegistry registry, String phase) {
+        return Timer.builder("receipt.ingest.phase")
+                .description("Time spent in one phase of receipt ingest")
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static Timer lookupTimer(MeterRegistry registry, String result) {
+        return Timer.builder("receipt.lookup")
+                .description("Points lookups by receipt id")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public void recordDeserialize(long startNanos) {
+        deserialize.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordValidate(long startNanos) {
+        validate.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordScore(long startNanos) {
+        score.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordStore(long startNanos) {
+        store.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLookup(long startNanos, boolean found) {
+        (found ? lookupFound : lookupNotFound).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void fired(String rule, int times) {
+        Counter counter = ruleCounters.get(rule);
+        (counter != null ? counter : ruleCounter(rule)).increment(times);
+    }
+
+    private Counter ruleCounter(String rule) {
+        return ruleCounters.computeIfAbsent(rule, name -> Counter.builder("receipt.score.rule")
+                .description("Times a scoring rule awarded points")
+                .tag("rule", name)
+                .register(registry));
+    }
+}
@@ -49,7 +49,8 @@ public class Receipt {
     @Pattern(regexp = "^\\d+\\.\\d{2}$", message = "Receipt total amount must be in the format X.XX")
     private String total;
 
+    @NotNull(message = "At least one item is required")
     @Size(min = 1, message = "At least one item is required")
     @Valid
-    private List<Item> items;
+    private List<@NotNull(message = "Item cannot be null") Item> items;
 }
@@ -0,0 +1,136 @@
+package com.fetch.receiptprocessor.model;
+
+import java.util.UUID;
+
+/*
+ * A receipt id held as the two 64-bit halves of a UUID instead of its 36-char text form.
+ * Parsing is strict: only the canonical 8-4-4-4-12 hex layout is accepted, so malformed ids never reach a store.
+ *
+ * Ids issued in cluster mode are version 8 (custom) UUIDs whose first 16 bits name the shard that stores the
+ * receipt; the other 106 bits are random. Random (version 4) ids carry no shard.
+ */
+public final class ReceiptId {
+
+    public static final int UNSHARDED = -1;
+    public static final int MAX_SHARD = 0xFFFF;
+
+    private static final long VERSION_MASK = 0xF000L;
+    private static final long SHARDED_VERSION = 0x8000L;
+
+    private static final int TEXT_LENGTH = 36;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final long mostSignificantBits;
+    private final long leastSignificantBits;
+
+    public ReceiptId(long mostSignificantBits, long leastSignificantBits) {
+        this.mostSignificantBits = mostSignificantBits;
+        this.leastSignificantBits = leastSignificantBits;
+    }
+
+    public static ReceiptId random() {
+        UUID uuid = UUID.randomUUID();
+        return new ReceiptId(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    public static ReceiptId random(int shard) {
+        if (shard < 0 || shard > MAX_SHARD) {
+            throw new IllegalArgumentException("Shard must be between 0 and " + MAX_SHARD);
+        }
+        UUID uuid = UUID.randomUUID();
+        long msb = (uuid.getMostSignificantBits() & 0x0000FFFFFFFF0FFFL) | ((long) shard << 48) | SHARDED_VERSION;
+        return new ReceiptId(msb, uuid.getLeastSignificantBits());
+    }
+
+    // Returns null when the text is not a canonical UUID
+    public static ReceiptId parse(CharSequence text) {
+        if (text == null || text.length() != TEXT_LENGTH
+                || text.charAt(8) != '-' || text.charAt(13) != '-' || text.charAt(18) != '-' || text.charAt(23) != '-') {
+            return null;
+        }
+        long msb = 0;
+        long lsb = 0;
+        for (int i = 0; i < TEXT_LENGTH; i++) {
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                continue;
+            }
+            int digit = hexValue(text.charAt(i));
+            if (digit < 0) {
+                return null;
+            }
+            if (i < 19) {
+                msb = (msb << 4) | digit;
+            } else {
+                lsb = (lsb << 4) | digit;
+            }
+        }
+        return new ReceiptId(msb, lsb);
+    }
+
+    public long getMostSignificantBits() {
+        return mostSignificantBits;
+    }
+
+    public long getLeastSignificantBits() {
+        return leastSignificantBits;
+    }
+
+    // The shard encoded by random(int), or UNSHARDED
+    public int getShard() {
+        return (mostSignificantBits & VERSION_MASK) == SHARDED_VERSION ? (int) (mostSignificantBits >>> 48) : UNSHARDED;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ReceiptId)) {
+            return false;
+        }
+        ReceiptId other = (ReceiptId) o;
+        return mostSignificantBits == other.mostSignificantBits && leastSignificantBits == other.leastSignificantBits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(mostSignificantBits ^ leastSignificantBits);
+    }
+
+    // Same text as UUID.toString()
+    @Override
+    public String toString() {
+        char[] chars = new char[TEXT_LENGTH];
+        formatHex(chars, 0, mostSignificantBits >>> 32, 8);
+        chars[8] = '-';
+        formatHex(chars, 9, mostSignificantBits >>> 16, 4);
+        chars[13] = '-';
+        formatHex(chars, 14, mostSignificantBits, 4);
+        chars[18] = '-';
+        formatHex(chars, 19, leastSignificantBits >>> 48, 4);
+        chars[23] = '-';
+        formatHex(chars, 24, leastSignificantBits, 12);
+        return new String(chars);
+    }
+
+    // Character.digit would also accept non-ASCII digits, which are not valid in an id
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static void formatHex(char[] chars, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.fetch.receiptprocessor.scoring;
+
+import com.fetch.receiptprocessor.model.Item;
+import com.fetch.receiptprocessor.model.Receipt;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/*
+ * A RuleSet fused into one evaluator.
+ *
+ * Rules are grouped by the receipt field they read and their parameters flattened into arrays, so a receipt is
+ * scored in a single pass: the retailer is scanned once, the total parsed once, the items walked once with every
+ * item rule applied to each item, and the date and time read once. Money and description lengths are read with
+ * the allocation-free helpers in ScoringFields, so the default rule set scores exactly like the original rules.
+ *
+ * Immutable, so one instance is shared by every scoring thread. Given a ParallelItemScoring, the item rules of
+ * very large receipts are applied to ranges of items in parallel and the partial sums added together.
+ */
+public final class CompiledRuleSet {
+
+    private final int version;
+
+    private final String[] retailerNames;
+    private final int[] retailerPoints;
+
+    private final String[] totalNames;
+    private final long[] totalMultipleCents;
+    // The same multiples in dollars, for totals that are not in the canonical "X.XX" form
+    private final double[] totalMultipleAmounts;
+    private final int[] totalPoints;
+
+    private final String[] groupNames;
+    private final int[] groupSizes;
+    private final int[] groupPoints;
+
+    private final String[] descriptionNames;
+    private final int[] descriptionLengthMultiples;
+    private final double[] descriptionPriceMultipliers;
+
+    private final String[] dayNames;
+    private final boolean[] dayOdd;
+    private final int[] dayPoints;
+
+    private final String[] timeNames;
+    private final LocalTime[] timeAfter;
+    private final LocalTime[] timeBefore;
+    private final int[] timePoints;
+
+    // Per-thread description hit counts, so a listener costs no allocation per receipt
+    private final ThreadLocal<int[]> hitScratch;
+
+    CompiledRuleSet(RuleSet ruleSet) {
+        if (ruleSet.getVersion() < 1) {
+            throw new IllegalArgumentException("Rule set version must be positive");
+        }
+        this.version = ruleSet.getVersion();
+
+        List<ScoringRule.RetailerCharacters> retailer = new ArrayList<>();
+        List<ScoringRule.TotalMultiple> total = new ArrayList<>();
+        List<ScoringRule.ItemGroups> groups = new ArrayList<>();
+        List<ScoringRule.ItemDescription> descriptions = new ArrayList<>();
+        List<ScoringRule.PurchaseDay> days = new ArrayList<>();
+        List<ScoringRule.PurchaseTime> times = new ArrayList<>();
+        for (ScoringRule rule : ruleSet.getRules()) {
+            if (rule == null || rule.getName() == null || rule.getName().isEmpty()) {
+                throw new IllegalArgumentException("Every scoring rule needs a name");
+            }
+            if (rule instanceof ScoringRule.RetailerCharacters) {
+                retailer.add((ScoringRule.RetailerCharacters) rule);
+            } else if (rule instanceof ScoringRule.TotalMultiple) {
+                ScoringRule.TotalMultiple multiple = (ScoringRule.TotalMultiple) rule;
+                require(multiple, multiple.getMultipleCents() > 0, "multipleCents must be positive");
+                total.add(multiple);
+            } else if (rule instanceof ScoringRule.ItemGroups) {
+                ScoringRule.ItemGroups group = (ScoringRule.ItemGroups) rule;
+                require(group, group.getGroupSize() > 0, "groupSize must be positive");
+                groups.add(group);
+            } else if (rule instanceof ScoringRule.ItemDescription) {
+                ScoringRule.ItemDescription description = (ScoringRule.ItemDescription) rule;
+                require(description, description.getLengthMultiple() > 0, "lengthMultiple must be positive");
+                descriptions.add(description);
+            } else if (rule instanceof ScoringRule.PurchaseDay) {
+                days.add((ScoringRule.PurchaseDay) rule);
+            } else if (rule instanceof ScoringRule.PurchaseTime) {
+                ScoringRule.PurchaseTime time = (ScoringRule.PurchaseTime) rule;
+                require(time, time.getAfter() != null && time.getBefore() != null, "after and before are required");
+                times.add(time);
+            } else {
+                throw new IllegalArgumentException("Unsupported scoring rule " + rule.getClass().getSimpleName());
+            }
+        }
+
+        retailerNames = names(retailer);
+        retailerPoints = retailer.stream().mapToInt(ScoringRule.RetailerCharacters::getPoints).toArray();
+
+        totalNames = names(total);
+        totalMultipleCents = total.stream().mapToLong(ScoringRule.TotalMultiple::getMultipleCents).toArray();
+        totalMultipleAmounts = total.stream().mapToDouble(rule -> rule.getMultipleCents() / 100.0).toArray();
+        totalPoints = total.stream().mapToInt(ScoringRule.TotalMultiple::getPoints).toArray();
+
+        groupNames = names(groups);
+        groupSizes = groups.stream().mapToInt(ScoringRule.ItemGroups::getGroupSize).toArray();
+        groupPoints = groups.stream().mapToInt(ScoringRule.ItemGroups::getPoints).toArray();
+
+        descriptionNames = names(descriptions);
+        descriptionLengthMultiples = descriptions.stream()
+                .mapToInt(ScoringRule.ItemDescription::getLengthMultiple).toArray();
+        descriptionPriceMultipliers = descriptions.stream()
+                .mapToDouble(ScoringRule.ItemDescription::getPriceMultiplier).toArray();
+
+        dayNames = names(days);
+        dayOdd = new boolean[days.size()];
+        for (int i = 0; i < dayOdd.length; i++) {
+            dayOdd[i] = days.get(i).isOdd();
+        }
+        dayPoints = days.stream().mapToInt(ScoringRule.PurchaseDay::getPoints).toArray();
+
+        timeNames = names(times);
+        timeAfter = times.stream().map(ScoringRule.PurchaseTime::getAfter).toArray(LocalTime[]::new);
+        timeBefore = times.stream().map(ScoringRule.PurchaseTime::getBefore).toArray(LocalTime[]::new);
+        timePoints = times.stream().mapToInt(ScoringRule.PurchaseTime::getPoints).toArray();
+
+        int descriptionRules = descriptionLengthMultiples.length;
+        hitScratch = ThreadLocal.withInitial(() -> new int[descriptionRules]);
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public int score(Receipt receipt) {
+        return score(receipt, RuleListener.NONE);
+    }
+
+    public int score(Receipt receipt, RuleListener listener) {
+        return score(receipt, listener, null);
+    }
+
+    // parallel may be null, in which case every receipt is scored on the calling thread
+    public int score(Receipt receipt, RuleListener listener, ParallelItemScoring parallel) {
+        int points = 0;
+
+        if (retailerPoints.length > 0) {
+            int alphanumeric = ScoringFields.countAlphanumeric(receipt.getRetailer());
+            for (int i = 0; i < retailerPoints.length; i++) {
+                int awarded = alphanumeric * retailerPoints[i];
+                points += awarded;
+                fireIf(listener, awarded > 0, retailerNames[i]);
+            }
+        }
+
+        if (totalPoints.length > 0) {
+            String total = receipt.getTotal();
+            long totalCents = ScoringFields.parseCents(total);
+            double totalAmount = totalCents == ScoringFields.NOT_CANONICAL ? Double.parseDouble(total) : 0;
+            for (int i = 0; i < totalPoints.length; i++) {
+                boolean multiple = totalCents != ScoringFields.NOT_CANONICAL
+                        ? totalCents % totalMultipleCents[i] == 0
+                        : totalAmount % totalMultipleAmounts[i] == 0;
+                if (multiple) {
+                    points += totalPoints[i];
+                }
+                fireIf(listener, multiple, totalNames[i]);
+            }
+        }
+
+        List<Item> items = receipt.getItems();
+        for (int i = 0; i < groupSizes.length; i++) {
+            int groups = items.size() / groupSizes[i];
+            points += groups * groupPoints[i];
+            fireIf(listener, groups > 0, groupNames[i]);
+        }
+
+        if (descriptionLengthMultiples.length > 0) {
+            // Hit counts are only needed when someone is listening
+            boolean countHits = listener != RuleListener.NONE;
+            if (parallel != null && parallel.shouldSplit(items)) {
+                // Ranges add their counts into one shared array; a single allocation for a receipt big enough to split
+                AtomicIntegerArray hits = countHits ? new AtomicIntegerArray(descriptionLengthMultiples.length) : null;
+                points += parallel.invoke(new ItemRangeTask(items, 0, items.size(), parallel.getGrain(), hits));
+                if (hits != null) {
+                    for (int i = 0; i < hits.length(); i++) {
+                        fireHits(listener, i, hits.get(i));
+                    }
+                }
+            } else {
+                int[] hits = countHits ? clearedScratch() : null;
+                if (items instanceof RandomAccess) {
+                    points = scoreItems(items, 0, items.size(), points, hits);
+                } else {
+                    for (Item item : items) {
+                        points = scoreItem(item, points, hits);
+                    }
+                }
+                if (hits != null) {
+                    for (int i = 0; i < hits.length; i++) {
+                        fireHits(listener, i, hits[i]);
+                    }
+                }
+            }
+        }
+
+        if (dayPoints.length > 0) {
+            boolean oddDay = receipt.getPurchaseDate().getDayOfMonth() % 2 != 0;
+            for (int i = 0; i < dayPoints.length; i++) {
+                boolean matches = oddDay == dayOdd[i];
+                if (matches) {
+                    points += dayPoints[i];
+                }
+                fireIf(listener, matches, dayNames[i]);
+            }
+        }
+
+        if (timePoints.length > 0) {
+            LocalTime purchaseTime = receipt.getPurchaseTime();
+            for (int i = 0; i < timePoints.length; i++) {
+                boolean within = purchaseTime.isAfter(timeAfter[i]) && purchaseTime.isBefore(timeBefore[i]);
+                if (within) {
+                    points += timePoints[i];
+                }
+                fireIf(listener, within, timeNames[i]);
+            }
+        }
+
+        return points;
+    }
+
+    private int scoreItems(List<Item> items, int from, int to, int points, int[] hits) {
+        for (int i = from; i < to; i++) {
+            points = scoreItem(items.get(i), points, hits);
+        }
+        return points;
+    }
+
+    // Applies every description rule to one item; the price is parsed at most once, and only if a rule matches
+    private int scoreItem(Item item, int points, int[] hits) {
+        int length = ScoringFields.trimmedLength(item.getShortDescription());
+        double amount = Double.NaN;
+        for (int i = 0; i < descriptionLengthMultiples.length; i++) {
+            if (length % descriptionLengthMultiples[i] != 0) {
+                continue;
+            }
+            if (Double.isNaN(amount)) {
+                amount = ScoringFields.parseAmount(item.getPrice());
+            }
+            // Added as a double so the sum narrows exactly like the original rules' did
+            double awarded = Math.ceil(amount * descriptionPriceMultipliers[i]);
+            points += awarded;
+            if (hits != null && awarded > 0) {
+                hits[i]++;
+            }
+        }
+        return points;
+    }
+
+    private int[] clearedScratch() {
+        int[] hits = hitScratch.get();
+        Arrays.fill(hits, 0);
+        return hits;
+    }
+
+    private void fireHits(RuleListener listener, int rule, int hits) {
+        if (hits > 0) {
+            listener.fired(descriptionNames[rule], hits);
+        }
+    }
+
+    // Halves its range until it is no longer than grain, then scores the items sequentially and returns their points
+    private final class ItemRangeTask extends RecursiveTask<Integer> {
+        private final List<Item> items;
+        private final int from;
+        private final int to;
+        private final int grain;
+        // Shared by every range of the receipt; null when nobody is listening
+        private final AtomicIntegerArray hits;
+
+        ItemRangeTask(List<Item> items, int from, int to, int grain, AtomicIntegerArray hits) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.hits = hits;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from <= grain) {
+                if (hits == null) {
+                    return scoreItems(items, from, to, 0, null);
+                }
+                // A leaf never joins, so no other range can run on this thread and reuse the scratch meanwhile
+                int[] rangeHits = clearedScratch();
+                int points = scoreItems(items, from, to, 0, rangeHits);
+                for (int i = 0; i < rangeHits.length; i++) {
+                    if (rangeHits[i] > 0) {
+                        hits.addAndGet(i, rangeHits[i]);
+                    }
+                }
+                return points;
+            }
+            int middle = (from + to) >>> 1;
+            ItemRangeTask left = new ItemRangeTask(items, from, middle, grain, hits);
+            left.fork();
+            int points = new ItemRangeTask(items, middle, to, grain, hits).compute();
+            return points + left.join();
+        }
+    }
+
+    private static void fireIf(RuleListener listener, boolean fired, String rule) {
+        if (fired) {
+            listener.fired(rule, 1);
+        }
+    }
+
+    private static void require(ScoringRule rule, boolean valid, String message) {
+        if (!valid) {
+            throw new IllegalArgumentException("Scoring rule " + rule.getName() + ": " + message);
+        }
+    }
+
+    private static String[] names(List<? extends ScoringRule> rules) {
+        return rules.stream().map(ScoringRule::getName).toArray(String[]::new);
+    }
+}
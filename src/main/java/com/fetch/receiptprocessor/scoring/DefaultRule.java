@@ -0,0 +1,16 @@
+package com.fetch.receiptprocessor.scoring;
+
+import java.util.Locale;
+
+/*
+ * The rules of RuleSet.defaults(); RuleListener is told their lower-case names.
+ */
+public enum DefaultRule {
+    RETAILER_NAME, ROUND_DOLLAR, QUARTER_MULTIPLE, ITEM_PAIRS, ITEM_DESCRIPTION, ODD_DAY, AFTERNOON;
+
+    private final String ruleName = name().toLowerCase(Locale.ROOT);
+
+    public String ruleName() {
+        return ruleName;
+    }
+}
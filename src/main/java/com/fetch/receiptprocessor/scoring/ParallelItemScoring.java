@@ -0,0 +1,57 @@
+package com.fetch.receiptprocessor.scoring;
+
+import com.fetch.receiptprocessor.model.Item;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/*
+ * Splits the per-item rules of very large receipts across a dedicated ForkJoinPool.
+ *
+ * Receipts with at least threshold items are divided into ranges of about grain items, scored in parallel and
+ * their partial sums added up; smaller receipts are scored on the calling thread, where forking would cost more
+ * than it saves. ParallelScoringBenchmark shows where that crossover lies. The pool is separate from the common
+ * pool so large receipts cannot starve other users of it, and vice versa.
+ */
+public class ParallelItemScoring implements Closeable {
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+    private final int grain;
+
+    public ParallelItemScoring(int parallelism, int threshold, int grain) {
+        if (threshold < 1 || grain < 1) {
+            throw new IllegalArgumentException("Parallel scoring threshold and grain must be positive");
+        }
+        this.pool = new ForkJoinPool(parallelism, ParallelItemScoring::newWorker, null, false);
+        this.threshold = threshold;
+        this.grain = grain;
+    }
+
+    boolean shouldSplit(List<Item> items) {
+        return items.size() >= threshold && items instanceof RandomAccess;
+    }
+
+    int getGrain() {
+        return grain;
+    }
+
+    <T> T invoke(ForkJoinTask<T> task) {
+        return pool.invoke(task);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("receipt-score-" + thread.getPoolIndex());
+        return thread;
+    }
+}
@@ -0,0 +1,41 @@
+package com.fetch.receiptprocessor.scoring;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Holds the rule set receipts are currently scored with.
+ *
+ * Scoring reads the current CompiledRuleSet once per receipt and uses that instance for both the points and the
+ * version it records, so a swap never mixes two rule sets in one score. New rule sets are compiled before they
+ * are published and only replace an older version, so a stale or repeated reload is a no-op.
+ */
+public class RuleEngine {
+
+    private final AtomicReference<CompiledRuleSet> current;
+
+    public RuleEngine() {
+        this(RuleSet.defaults());
+    }
+
+    public RuleEngine(RuleSet initial) {
+        this.current = new AtomicReference<>(initial.compile());
+    }
+
+    public CompiledRuleSet current() {
+        return current.get();
+    }
+
+    // Returns false, keeping the current rules, unless ruleSet has a higher version; invalid rules throw instead
+    public boolean install(RuleSet ruleSet) {
+        CompiledRuleSet compiled = ruleSet.compile();
+        while (true) {
+            CompiledRuleSet existing = current.get();
+            if (compiled.getVersion() <= existing.getVersion()) {
+                return false;
+            }
+            if (current.compareAndSet(existing, compiled)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.fetch.receiptprocessor.scoring;
+
+/*
+ * Told which scoring rules awarded points, by rule name.
+ * Rules applied per item are reported once per receipt with the number of items they paid.
+ */
+public interface RuleListener {
+
+    RuleListener NONE = (rule, times) -> { };
+
+    void fired(String rule, int times);
+}
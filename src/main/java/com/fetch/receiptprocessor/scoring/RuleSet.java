@@ -0,0 +1,46 @@
+package com.fetch.receiptprocessor.scoring;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * A versioned list of scoring rules, as read from a rule-set file:
+ *
+ *   {"version": 2, "rules": [{"type": "retailer-characters", "name": "retailer_name", "points": 1}, ...]}
+ *
+ * Versions identify what a stored receipt was scored with, so a changed rule set needs a higher version.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RuleSet {
+
+    public static final int DEFAULT_VERSION = 1;
+
+    private int version;
+
+    private List<ScoringRule> rules = new ArrayList<>();
+
+    // The rules ReceiptPointService documents, under the names DefaultRule gives them
+    public static RuleSet defaults() {
+        return new RuleSet(DEFAULT_VERSION, List.of(
+                new ScoringRule.RetailerCharacters(DefaultRule.RETAILER_NAME.ruleName(), 1),
+                new ScoringRule.TotalMultiple(DefaultRule.ROUND_DOLLAR.ruleName(), 100, 50),
+                new ScoringRule.TotalMultiple(DefaultRule.QUARTER_MULTIPLE.ruleName(), 25, 25),
+                new ScoringRule.ItemGroups(DefaultRule.ITEM_PAIRS.ruleName(), 2, 5),
+                new ScoringRule.ItemDescription(DefaultRule.ITEM_DESCRIPTION.ruleName(), 3, 0.2),
+                new ScoringRule.PurchaseDay(DefaultRule.ODD_DAY.ruleName(), true, 6),
+                new ScoringRule.PurchaseTime(DefaultRule.AFTERNOON.ruleName(),
+                        LocalTime.of(14, 0), LocalTime.of(16, 0), 10)));
+    }
+
+    // Throws IllegalArgumentException when a rule is incomplete or would divide by zero
+    public CompiledRuleSet compile() {
+        return new CompiledRuleSet(this);
+    }
+}
@@ -0,0 +1,78 @@
+package com.fetch.receiptprocessor.scoring;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Loads a RuleSet from a JSON file into a RuleEngine, and again whenever the file's modification time changes.
+ *
+ * A file that fails to parse or compile is logged and the rules already installed keep scoring, so a bad edit
+ * never takes scoring down. Only the first load, at startup, fails loudly.
+ */
+public class RuleSetReloader implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RuleSetReloader.class);
+
+    private final RuleEngine ruleEngine;
+    private final Path file;
+    private final ObjectMapper objectMapper;
+    private ScheduledExecutorService scheduler;
+    private FileTime lastModified;
+
+    public RuleSetReloader(RuleEngine ruleEngine, Path file, ObjectMapper objectMapper) {
+        this.ruleEngine = ruleEngine;
+        this.file = file;
+        this.objectMapper = objectMapper;
+    }
+
+    public synchronized void start(Duration interval) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "receipt-rule-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                reloadIfModified();
+            } catch (IOException | RuntimeException e) {
+                log.error("Keeping rule set version {}; failed to load {}", ruleEngine.current().getVersion(), file, e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // Returns true when a newer rule set was installed
+    public synchronized boolean reloadIfModified() throws IOException {
+        FileTime modified = Files.getLastModifiedTime(file);
+        if (modified.equals(lastModified)) {
+            return false;
+        }
+        RuleSet ruleSet = objectMapper.readValue(file.toFile(), RuleSet.class);
+        boolean installed = ruleEngine.install(ruleSet);
+        lastModified = modified;
+        if (installed) {
+            log.info("Scoring receipts with rule set version {} from {}", ruleSet.getVersion(), file);
+        } else {
+            log.warn("Ignored {}: rule set version {} is not newer than {}", file, ruleSet.getVersion(),
+                    ruleEngine.current().getVersion());
+        }
+        return installed;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.fetch.receiptprocessor.scoring;
+
+/*
+ * Field readers shared by the compiled rule sets.
+ * Money is read as integer cents straight from the "X.XX" strings and descriptions are measured without trim(),
+ * so scoring a validated receipt allocates nothing. Values that are not in the canonical money format fall back to
+ * Double.parseDouble so unvalidated input scores exactly as it always has.
+ */
+final class ScoringFields {
+
+    // Keeps cents well inside the range where cents / 100.0 is the same double Double.parseDouble returns
+    private static final int MAX_DOLLAR_DIGITS = 12;
+
+    static final long NOT_CANONICAL = -1;
+
+    private ScoringFields() {
+    }
+
+    // The double Double.parseDouble would return, read as cents when the value is canonical
+    static double parseAmount(String value) {
+        long cents = parseCents(value);
+        // cents / 100.0 is the same double Double.parseDouble would return, so rounding matches the original rules
+        return cents != NOT_CANONICAL ? cents / 100.0 : Double.parseDouble(value);
+    }
+
+    // Same count as retailer.replaceAll("[^a-zA-Z0-9]", "").length()
+    static int countAlphanumeric(String value) {
+        int count = 0;
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Same length as value.trim().length()
+    static int trimmedLength(String value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end - start;
+    }
+
+    // Parses "D+.DD" into cents, or returns NOT_CANONICAL for anything else
+    static long parseCents(String value) {
+        int length = value.length();
+        int dot = length - 3;
+        if (dot < 1 || dot > MAX_DOLLAR_DIGITS || value.charAt(dot) != '.') {
+            return NOT_CANONICAL;
+        }
+        long cents = 0;
+        for (int i = 0; i < length; i++) {
+            if (i == dot) {
+                continue;
+            }
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NOT_CANONICAL;
+            }
+            cents = cents * 10 + digit;
+        }
+        return cents;
+    }
+}
@@ -0,0 +1,127 @@
+package com.fetch.receiptprocessor.scoring;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalTime;
+
+/*
+ * Definition of one scoring rule, as it appears in a rule-set file:
+ *
+ *   {"type": "retailer-characters", "name": "retailer_name", "points": 1}
+ *
+ * Definitions only hold parameters. RuleSet.compile() folds every rule of a set into one CompiledRuleSet, which
+ * reads each receipt field once however many rules look at it. The name is what RuleListener and the
+ * receipt.score.rule metric report.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+@JsonSubTypes({
+        @JsonSubTypes.Type(value = ScoringRule.RetailerCharacters.class, name = "retailer-characters"),
+        @JsonSubTypes.Type(value = ScoringRule.TotalMultiple.class, name = "total-multiple"),
+        @JsonSubTypes.Type(value = ScoringRule.ItemGroups.class, name = "item-groups"),
+        @JsonSubTypes.Type(value = ScoringRule.ItemDescription.class, name = "item-description"),
+        @JsonSubTypes.Type(value = ScoringRule.PurchaseDay.class, name = "purchase-day"),
+        @JsonSubTypes.Type(value = ScoringRule.PurchaseTime.class, name = "purchase-time")
+})
+public abstract class ScoringRule {
+
+    private String name;
+
+    // points for every alphanumeric character in the retailer name
+    @Data
+    @NoArgsConstructor
+    @EqualsAndHashCode(callSuper = true)
+    public static class RetailerCharacters extends ScoringRule {
+        private int points;
+
+        public RetailerCharacters(String name, int points) {
+            super(name);
+            this.points = points;
+        }
+    }
+
+    // points when the total is a whole multiple of multipleCents, e.g. 100 for a round dollar amount
+    @Data
+    @NoArgsConstructor
+    @EqualsAndHashCode(callSuper = true)
+    public static class TotalMultiple extends ScoringRule {
+        private long multipleCents;
+        private int points;
+
+        public TotalMultiple(String name, long multipleCents, int points) {
+            super(name);
+            this.multipleCents = multipleCents;
+            this.points = points;
+        }
+    }
+
+    // points for every complete group of groupSize items on the receipt
+    @Data
+    @NoArgsConstructor
+    @EqualsAndHashCode(callSuper = true)
+    public static class ItemGroups extends ScoringRule {
+        private int groupSize;
+        private int points;
+
+        public ItemGroups(String name, int groupSize, int points) {
+            super(name);
+            this.groupSize = groupSize;
+            this.points = points;
+        }
+    }
+
+    // For each item whose trimmed description length is a multiple of lengthMultiple, its price times
+    // priceMultiplier, rounded up
+    @Data
+    @NoArgsConstructor
+    @EqualsAndHashCode(callSuper = true)
+    public static class ItemDescription extends ScoringRule {
+        private int lengthMultiple;
+        private double priceMultiplier;
+
+        public ItemDescription(String name, int lengthMultiple, double priceMultiplier) {
+            super(name);
+            this.lengthMultiple = lengthMultiple;
+            this.priceMultiplier = priceMultiplier;
+        }
+    }
+
+    // points when the day of the purchase date is odd, or even when odd is false
+    @Data
+    @NoArgsConstructor
+    @EqualsAndHashCode(callSuper = true)
+    public static class PurchaseDay extends ScoringRule {
+        private boolean odd = true;
+        private int points;
+
+        public PurchaseDay(String name, boolean odd, int points) {
+            super(name);
+            this.odd = odd;
+            this.points = points;
+        }
+    }
+
+    // points when the purchase time is strictly after "after" and strictly before "before"
+    @Data
+    @NoArgsConstructor
+    @EqualsAndHashCode(callSuper = true)
+    public static class PurchaseTime extends ScoringRule {
+        private LocalTime after;
+        private LocalTime before;
+        private int points;
+
+        public PurchaseTime(String name, LocalTime after, LocalTime before, int points) {
+            super(name);
+            this.after = after;
+            this.before = before;
+            this.points = points;
+        }
+    }
+}
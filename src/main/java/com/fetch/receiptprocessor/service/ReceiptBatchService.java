@@ -0,0 +1,201 @@
+package com.fetch.receiptprocessor.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fetch.receiptprocessor.exception.ReadOnlyReplicaException;
+import com.fetch.receiptprocessor.exception.ShardUnavailableException;
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import com.fetch.receiptprocessor.validation.ReceiptValidator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/*
+ * Streams a batch of receipts from a JSON array or newline-delimited JSON body.
+ * Each receipt is bound, validated and stored as soon as it has been read, and its result is written straight back,
+ * so neither the request nor the response is ever held in memory as a whole.
+ */
+@Service
+public class ReceiptBatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReceiptBatchService.class);
+
+    static final String INVALID_RECEIPT = "The receipt is invalid";
+    static final String MALFORMED_BODY = "The batch is not valid JSON";
+    static final String SHARD_UNAVAILABLE = "The shard that owns this receipt is unavailable";
+    static final String READ_ONLY_REPLICA = "This instance is a read-only replica";
+    static final String NOT_STORED = "The receipt could not be stored";
+
+    private final ReceiptPointServiceImpl receiptPointService;
+    private final ObjectMapper objectMapper;
+    private final ReceiptValidator receiptValidator;
+
+    @Autowired
+    public ReceiptBatchService(ReceiptPointServiceImpl receiptPointService, ObjectMapper objectMapper,
+                               ReceiptValidator receiptValidator) {
+        this.receiptPointService = receiptPointService;
+        this.objectMapper = objectMapper;
+        this.receiptValidator = receiptValidator;
+    }
+
+    /*
+     * Writes one result per input receipt, in input order: {"index":0,"id":"..."} or {"index":1,"error":"..."}.
+     * Results form a JSON array, or one result per line when ndjson is set.
+     * Returns the number of receipts stored.
+     */
+    public int processBatch(InputStream body, OutputStream out, boolean ndjson) throws IOException {
+        int stored = 0;
+        try (JsonParser parser = objectMapper.createParser(body);
+             JsonGenerator generator = objectMapper.createGenerator(out)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            if (!ndjson) {
+                generator.writeStartArray();
+            }
+
+            int index = 0;
+            try {
+                JsonToken token = parser.nextToken();
+                // A JSON array holds the receipts one level down; NDJSON receipts sit at the root
+                boolean array = token == JsonToken.START_ARRAY;
+                int elementDepth = array ? 1 : 0;
+                if (array) {
+                    token = parser.nextToken();
+                }
+                while (token != null && token != JsonToken.END_ARRAY) {
+                    if (processElement(parser, elementDepth, generator, index, ndjson)) {
+                        stored++;
+                    }
+                    index++;
+                    token = parser.nextToken();
+                }
+            } catch (JsonParseException e) {
+                // The stream can't be resynchronised after a syntax error, so report it and stop
+                writeResult(generator, index, "error", MALFORMED_BODY, ndjson);
+            }
+
+            if (!ndjson) {
+                generator.writeEndArray();
+            }
+        }
+        return stored;
+    }
+
+    /*
+     * Resolves a JSON array of receipt ids and writes a single JSON object mapping each id to its points,
+     * with null for ids that are unknown, e.g. {"id-1":28,"id-2":null}. Ids are echoed in request order.
+     * Returns the number of ids found.
+     */
+    public int lookupPoints(InputStream body, OutputStream out) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            // Checked before the generator exists, since closing it flushes and commits the response
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Expected a JSON array of receipt ids");
+            }
+            return writePoints(parser, out);
+        }
+    }
+
+    private int writePoints(JsonParser parser, OutputStream out) throws IOException {
+        int found = 0;
+        try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                if (!token.isScalarValue()) {
+                    parser.skipChildren();
+                    continue;
+                }
+                String receiptId = parser.getText();
+                int points = receiptPointService.findPoints(receiptId);
+                generator.writeFieldName(receiptId);
+                if (points == ReceiptStore.NOT_FOUND) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(points);
+                    found++;
+                }
+            }
+            generator.writeEndObject();
+        }
+        return found;
+    }
+
+    // Writes the element's result; returns whether it was stored
+    private boolean processElement(JsonParser parser, int elementDepth, JsonGenerator generator, int index,
+                                   boolean ndjson) throws IOException {
+        String receiptId;
+        try {
+            receiptId = bindAndStore(parser, elementDepth);
+        } catch (RuntimeException e) {
+            // Earlier results are already sent, so a failure to store one receipt is reported in its own result
+            writeResult(generator, index, "error", storeError(e), ndjson);
+            return false;
+        }
+        if (receiptId == null) {
+            writeResult(generator, index, "error", INVALID_RECEIPT, ndjson);
+            return false;
+        }
+        writeResult(generator, index, "id", receiptId, ndjson);
+        return true;
+    }
+
+    // Returns the new receipt id, or null when the element is not a valid receipt
+    private String bindAndStore(JsonParser parser, int elementDepth) throws IOException {
+        Receipt receipt;
+        try {
+            receipt = objectMapper.readValue(parser, Receipt.class);
+        } catch (JsonParseException e) {
+            throw e;
+        } catch (IOException e) {
+            // Binding stopped somewhere inside the element; skip the rest of it so the next one starts cleanly
+            while (parser.getParsingContext().getNestingDepth() > elementDepth) {
+                if (parser.nextToken() == null) {
+                    break;
+                }
+            }
+            return null;
+        }
+        if (!receiptValidator.isValid(receipt)) {
+            return null;
+        }
+        return receiptPointService.processReceipt(receipt);
+    }
+
+    private static String storeError(RuntimeException e) {
+        if (e instanceof IllegalArgumentException) {
+            return INVALID_RECEIPT;
+        }
+        if (e instanceof ShardUnavailableException) {
+            return SHARD_UNAVAILABLE;
+        }
+        if (e instanceof ReadOnlyReplicaException) {
+            return READ_ONLY_REPLICA;
+        }
+        log.error("Receipt in a batch could not be stored", e);
+        return NOT_STORED;
+    }
+
+    private static void writeResult(JsonGenerator generator, int index, String field, String value, boolean ndjson)
+            throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("index", index);
+        generator.writeStringField(field, value);
+        generator.writeEndObject();
+        if (ndjson) {
+            generator.writeRaw('\n');
+        }
+    }
+}
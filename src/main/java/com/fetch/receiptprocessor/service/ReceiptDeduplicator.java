@@ -0,0 +1,147 @@
+package com.fetch.receiptprocessor.service;
+
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.store.ReceiptIdIndex;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+ * Idempotent ingest: a receipt whose contents, or whose Idempotency-Key, were already ingested gets the id it was
+ * stored under the first time instead of being stored again.
+ *
+ * Contents and keys are fingerprinted by ReceiptFingerprint and mapped to receipt ids in ReceiptIdIndex tables.
+ * A new receipt is ingested first and its fingerprint claimed afterwards, so a store failure or a full ingest
+ * queue never leaves a fingerprint pointing at an id that was not accepted. The cost is that two identical
+ * receipts racing each other can both be stored; both callers still get back the id that won the claim.
+ *
+ * When the store evicts, it reports each eviction to evicted(), which drops the receipt's fingerprint and keys, so
+ * the indexes never hold more receipts than the store and the next copy of an evicted receipt is stored again.
+ * Hits are not checked against the store, so an id the async pipeline has not stored yet is still trusted.
+ *
+ * The content index is rebuilt from the store's receipt bodies by rebuildAfter, in the background once the store
+ * has recovered, so startup never waits on a walk over the whole store. Idempotency keys are kept only in memory.
+ */
+public class ReceiptDeduplicator {
+
+    private static final Logger log = LoggerFactory.getLogger(ReceiptDeduplicator.class);
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private final ReceiptStore receiptStore;
+    private final ReceiptIdIndex contents;
+    private final ReceiptIdIndex keys;
+    // The keys claimed for each receipt id, so they can be dropped when it is evicted; null when the store keeps all
+    private final ConcurrentMap<ReceiptId, ReceiptId[]> keysByReceipt;
+    private final Counter duplicates;
+
+    public ReceiptDeduplicator(ReceiptStore receiptStore, int expectedSize, boolean storeEvicts,
+                               MeterRegistry registry) {
+        this.receiptStore = receiptStore;
+        this.keysByReceipt = storeEvicts ? new ConcurrentHashMap<>() : null;
+        this.contents = new ReceiptIdIndex(expectedSize, true);
+        this.keys = new ReceiptIdIndex(16, true);
+
+        this.duplicates = Counter.builder("receipt.ingest.duplicates")
+                .description("Receipts answered with the id of an earlier identical receipt instead of being stored")
+                .register(registry);
+        Gauge.builder("receipt.ingest.fingerprints", contents, ReceiptIdIndex::size)
+                .description("Receipt content fingerprints held for deduplication")
+                .register(registry);
+    }
+
+    /*
+     * Once recovered completes, successfully or not, indexes every receipt already in the store on a background
+     * thread. Until then receipts stored before startup are not recognised as duplicates.
+     */
+    public CompletableFuture<Void> rebuildAfter(CompletableFuture<?> recovered) {
+        return recovered.handle((result, failure) -> null).thenRunAsync(this::rebuild, task -> {
+            Thread rebuild = new Thread(task, "receipt-dedup-rebuild");
+            rebuild.setDaemon(true);
+            rebuild.start();
+        });
+    }
+
+    // Indexes the contents of every stored receipt; ids already claimed by new receipts are kept
+    public void rebuild() {
+        long start = System.nanoTime();
+        receiptStore.forEach((receiptId, receipt, points, ruleSetVersion) -> {
+            if (receipt != null) {
+                contents.putIfAbsent(ReceiptFingerprint.of(receipt), 0, receiptId);
+            }
+        });
+        log.info("Indexed {} stored receipts for deduplication in {} ms", contents.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /*
+     * Returns the id an earlier receipt with the same contents or idempotency key was given, or else runs ingest
+     * and returns the id it produced. idempotencyKey may be null; when given it takes precedence over contents.
+     */
+    public ReceiptId ingestOnce(Receipt receipt, String idempotencyKey, Supplier<ReceiptId> ingest) {
+        ReceiptId key = idempotencyKey == null ? null : ReceiptFingerprint.ofKey(idempotencyKey);
+        ReceiptId existing = key == null ? null : (ReceiptId) keys.getAttachment(key);
+        if (existing != null) {
+            duplicates.increment();
+            return existing;
+        }
+
+        ReceiptId content = ReceiptFingerprint.of(receipt);
+        existing = (ReceiptId) contents.getAttachment(content);
+        if (existing == null) {
+            ReceiptId receiptId = ingest.get();
+            existing = (ReceiptId) contents.putIfAbsent(content, 0, receiptId);
+            if (existing == null) {
+                return key == null ? receiptId : claimKey(key, receiptId);
+            }
+        }
+        duplicates.increment();
+        return key == null ? existing : claimKey(key, existing);
+    }
+
+    // Registered with an evicting store; receipt is the evicted body, which dedup requires the store to retain
+    public void evicted(ReceiptId receiptId, Receipt receipt) {
+        if (receipt != null) {
+            contents.remove(ReceiptFingerprint.of(receipt), receiptId);
+        }
+        ReceiptId[] claimedKeys = keysByReceipt == null ? null : keysByReceipt.remove(receiptId);
+        if (claimedKeys != null) {
+            for (ReceiptId key : claimedKeys) {
+                keys.remove(key, receiptId);
+            }
+        }
+    }
+
+    public int size() {
+        return contents.size();
+    }
+
+    // A concurrent request with the same key may have claimed it first; its id is the one both get
+    private ReceiptId claimKey(ReceiptId key, ReceiptId receiptId) {
+        ReceiptId claimed = (ReceiptId) keys.putIfAbsent(key, 0, receiptId);
+        if (claimed != null) {
+            return claimed;
+        }
+        if (keysByReceipt != null) {
+            keysByReceipt.merge(receiptId, new ReceiptId[]{key}, ReceiptDeduplicator::concat);
+        }
+        return receiptId;
+    }
+
+    private static ReceiptId[] concat(ReceiptId[] claimed, ReceiptId[] added) {
+        ReceiptId[] merged = Arrays.copyOf(claimed, claimed.length + added.length);
+        System.arraycopy(added, 0, merged, claimed.length, added.length);
+        return merged;
+    }
+}
@@ -0,0 +1,93 @@
+package com.fetch.receiptprocessor.service;
+
+import com.fetch.receiptprocessor.model.Item;
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+
+import java.util.List;
+
+/*
+ * 128-bit non-cryptographic fingerprints of receipt contents and idempotency keys, returned as a ReceiptId so they
+ * can key a ReceiptIdIndex.
+ *
+ * A receipt is hashed in a canonical form: its fields in declaration order whatever order the JSON had them in,
+ * strings length-prefixed with null distinguished from empty, and the date and time as numbers rather than text.
+ * Two independently seeded 64-bit lanes are mixed per character and finished with the MurmurHash3 finalizer, so
+ * a collision between distinct receipts is unlikely even at billions of receipts. Cluster mode also places
+ * receipts on shards by these fingerprints.
+ */
+public final class ReceiptFingerprint {
+
+    private static final long SEED_HIGH = 0x9e3779b97f4a7c15L;
+    private static final long SEED_LOW = 0xc2b2ae3d27d4eb4fL;
+    // Keeps an idempotency key from ever fingerprinting like a receipt
+    private static final long KEY_DOMAIN = 0x6964656d706f7465L;
+
+    private long high = SEED_HIGH;
+    private long low = SEED_LOW;
+
+    private ReceiptFingerprint() {
+    }
+
+    public static ReceiptId of(Receipt receipt) {
+        ReceiptFingerprint fingerprint = new ReceiptFingerprint();
+        fingerprint.string(receipt.getRetailer());
+        fingerprint.number(receipt.getPurchaseDate() == null ? Long.MIN_VALUE : receipt.getPurchaseDate().toEpochDay());
+        fingerprint.number(receipt.getPurchaseTime() == null ? Long.MIN_VALUE : receipt.getPurchaseTime().toNanoOfDay());
+        fingerprint.string(receipt.getTotal());
+        List<Item> items = receipt.getItems();
+        if (items == null) {
+            fingerprint.number(-1);
+        } else {
+            fingerprint.number(items.size());
+            for (Item item : items) {
+                if (item == null) {
+                    fingerprint.number(-1);
+                } else {
+                    fingerprint.string(item.getShortDescription());
+                    fingerprint.string(item.getPrice());
+                }
+            }
+        }
+        return fingerprint.finish();
+    }
+
+    public static ReceiptId ofKey(String idempotencyKey) {
+        ReceiptFingerprint fingerprint = new ReceiptFingerprint();
+        fingerprint.number(KEY_DOMAIN);
+        fingerprint.string(idempotencyKey);
+        return fingerprint.finish();
+    }
+
+    private void string(String value) {
+        if (value == null) {
+            number(-1);
+            return;
+        }
+        number(value.length());
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            high = (high ^ c) * 0x100000001b3L;
+            low = Long.rotateLeft(low + c, 23) * 0xff51afd7ed558ccdL;
+        }
+    }
+
+    private void number(long value) {
+        high = (high ^ value) * 0x100000001b3L;
+        high ^= high >>> 29;
+        low = Long.rotateLeft(low + value, 23) * 0xff51afd7ed558ccdL;
+    }
+
+    private ReceiptId finish() {
+        return new ReceiptId(mix(high ^ low * 31), mix(low ^ high));
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,230 @@
+package com.fetch.receiptprocessor.service;
+
+import com.fetch.receiptprocessor.exception.IngestQueueFullException;
+import com.fetch.receiptprocessor.metrics.ReceiptMetrics;
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.scoring.CompiledRuleSet;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Asynchronous ingest: the request thread assigns an id and enqueues the receipt, and worker threads score and
+ * store whatever has queued up in micro-batches.
+ *
+ * The queue is a fixed-size ring buffer. When it is full the receipt is refused with IngestQueueFullException
+ * instead of being queued behind an ever-growing backlog, so clients are told to back off rather than waiting
+ * longer and longer. An id is returned before its receipt is stored, so a lookup made straight after ingest can
+ * still miss, and with a write-ahead log the receipt is not yet durable when the id is returned.
+ */
+public class ReceiptIngestPipeline implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReceiptIngestPipeline.class);
+
+    private final ReceiptPointService receiptPointService;
+    private final ReceiptStore receiptStore;
+    private final BlockingQueue<PendingReceipt> queue;
+    private final int maxBatch;
+    private final Duration retryAfter;
+    // Present only when receipt.ingest.dedup.enabled is set
+    private final ReceiptDeduplicator receiptDeduplicator;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = true;
+    // Submitters hold the read side across the running check and the offer, so close() sees every accepted receipt
+    private final ReentrantReadWriteLock accepting = new ReentrantReadWriteLock();
+
+    private final DistributionSummary batchSize;
+    private final Counter rejected;
+    private final Counter lost;
+    private final Timer storeTimer;
+
+    public ReceiptIngestPipeline(ReceiptPointService receiptPointService, ReceiptStore receiptStore, int capacity,
+                                 int workerCount, int maxBatch, Duration retryAfter, MeterRegistry registry) {
+        this(receiptPointService, receiptStore, capacity, workerCount, maxBatch, retryAfter, registry, null);
+    }
+
+    public ReceiptIngestPipeline(ReceiptPointService receiptPointService, ReceiptStore receiptStore, int capacity,
+                                 int workerCount, int maxBatch, Duration retryAfter, MeterRegistry registry,
+                                 ReceiptDeduplicator receiptDeduplicator) {
+        this.receiptPointService = receiptPointService;
+        this.receiptStore = receiptStore;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = maxBatch;
+        this.retryAfter = retryAfter;
+        this.receiptDeduplicator = receiptDeduplicator;
+
+        Gauge.builder("receipt.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Receipts accepted but not yet stored")
+                .register(registry);
+        this.batchSize = DistributionSummary.builder("receipt.ingest.batch.size")
+                .description("Receipts scored and stored together by one worker pass")
+                .register(registry);
+        this.rejected = Counter.builder("receipt.ingest.rejected")
+                .description("Receipts refused with 429 because the ingest queue was full")
+                .register(registry);
+        this.lost = Counter.builder("receipt.ingest.lost")
+                .description("Accepted receipts that could not be scored or stored")
+                .register(registry);
+        this.storeTimer = ReceiptMetrics.phaseTimer(registry, "store");
+
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::work, "receipt-ingest-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    // Returns the id the receipt will be stored under; never blocks
+    public String submit(Receipt receipt) {
+        return submit(receipt, null);
+    }
+
+    // With deduplication, a receipt seen before is not queued and gets the id it was first given
+    public String submit(Receipt receipt, String idempotencyKey) {
+        if (receiptDeduplicator == null) {
+            return enqueue(receipt).toString();
+        }
+        return receiptDeduplicator.ingestOnce(receipt, idempotencyKey, () -> enqueue(receipt)).toString();
+    }
+
+    private ReceiptId enqueue(Receipt receipt) {
+        ReceiptId receiptId = receiptPointService.newReceiptId();
+        boolean queued;
+        accepting.readLock().lock();
+        try {
+            queued = running && queue.offer(new PendingReceipt(receiptId, receipt));
+        } finally {
+            accepting.readLock().unlock();
+        }
+        if (!queued) {
+            rejected.increment();
+            throw new IngestQueueFullException(retryAfter);
+        }
+        return receiptId;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /*
+     * Stops accepting receipts and waits for the workers to store everything already queued. Once the write lock
+     * has been taken no submitter is between its running check and its offer, so the queue can only shrink.
+     */
+    @Override
+    public void close() {
+        accepting.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            accepting.writeLock().unlock();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        int abandoned = queue.size();
+        if (abandoned > 0) {
+            lost.increment(abandoned);
+            log.error("Workers did not finish within 30s; {} accepted receipts were not stored", abandoned);
+        }
+    }
+
+    private void work() {
+        List<PendingReceipt> batch = new ArrayList<>(maxBatch);
+        ReceiptId[] receiptIds = new ReceiptId[maxBatch];
+        Receipt[] receipts = new Receipt[maxBatch];
+        int[] points = new int[maxBatch];
+        int[] ruleSetVersions = new int[maxBatch];
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingReceipt first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                // The whole batch is scored with one read of the rules, so it records a single version
+                CompiledRuleSet rules = receiptPointService.currentRules();
+                int count = 0;
+                for (PendingReceipt pending : batch) {
+                    try {
+                        points[count] = receiptPointService.scoreForStorage(pending.receipt, rules);
+                    } catch (RuntimeException e) {
+                        // The id was already handed out, so all that can be done is to make the loss visible
+                        lost.increment();
+                        log.error("Failed to score accepted receipt {}", pending.receiptId, e);
+                        continue;
+                    }
+                    receiptIds[count] = pending.receiptId;
+                    receipts[count] = pending.receipt;
+                    ruleSetVersions[count] = rules.getVersion();
+                    count++;
+                }
+                long start = System.nanoTime();
+                store(receiptIds, receipts, points, ruleSetVersions, count);
+                storeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                batchSize.record(batch.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                // Don't keep the last batch's receipts reachable while idle
+                Arrays.fill(receipts, 0, batch.size(), null);
+                batch.clear();
+            }
+        }
+    }
+
+    // A batch the store refuses is retried one receipt at a time, so only the receipts that fail are lost
+    private void store(ReceiptId[] receiptIds, Receipt[] receipts, int[] points, int[] ruleSetVersions, int count) {
+        if (count == 0) {
+            return;
+        }
+        try {
+            receiptStore.putAll(receiptIds, receipts, points, ruleSetVersions, count);
+            return;
+        } catch (RuntimeException e) {
+            log.warn("Failed to store a batch of {} accepted receipts; storing them one at a time", count, e);
+        }
+        for (int i = 0; i < count; i++) {
+            try {
+                receiptStore.put(receiptIds[i], receipts[i], points[i], ruleSetVersions[i]);
+            } catch (RuntimeException e) {
+                lost.increment();
+                log.error("Failed to store accepted receipt {}", receiptIds[i], e);
+            }
+        }
+    }
+
+    private static final class PendingReceipt {
+        final ReceiptId receiptId;
+        final Receipt receipt;
+
+        PendingReceipt(ReceiptId receiptId, Receipt receipt) {
+            this.receiptId = receiptId;
+            this.receipt = receipt;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.fetch.receiptprocessor.service;
 
 import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.scoring.CompiledRuleSet;
 
 /* TODO: Rules for implementing ReceiptPointService
  * One point for every alphanumeric character in the retailer name.
@@ -13,5 +15,16 @@ import com.fetch.receiptprocessor.model.Receipt;
  */
 public interface ReceiptPointService {
     String processReceipt(Receipt receipt);
+    // idempotencyKey may be null; it is only honoured when receipt.ingest.dedup.enabled is set
+    String processReceipt(Receipt receipt, String idempotencyKey);
     int calculatePoints(String receiptId);
+    // Same lookup as calculatePoints(String), but returns ReceiptStore.NOT_FOUND instead of throwing
+    int findPoints(String receiptId);
+    int calculatePoints(Receipt receipt);
+    // The rules receipts are scored with for storage; read once and store getVersion() next to the points
+    CompiledRuleSet currentRules();
+    // Scores a receipt that is about to be stored with rules from currentRules()
+    int scoreForStorage(Receipt receipt, CompiledRuleSet rules);
+    // Id for a receipt stored on this instance; in cluster mode it encodes the local shard
+    ReceiptId newReceiptId();
 }
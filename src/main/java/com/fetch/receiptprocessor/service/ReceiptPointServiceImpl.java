@@ -1,74 +1,167 @@
 package com.fetch.receiptprocessor.service;
 
-import com.fetch.receiptprocessor.model.Item;
+import com.fetch.receiptprocessor.cluster.ShardRouter;
+import com.fetch.receiptprocessor.metrics.ReceiptMetrics;
 import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.scoring.CompiledRuleSet;
+import com.fetch.receiptprocessor.scoring.ParallelItemScoring;
+import com.fetch.receiptprocessor.scoring.RuleEngine;
+import com.fetch.receiptprocessor.store.ConcurrentReceiptStore;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalTime;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
-
 @Service
 public class ReceiptPointServiceImpl implements ReceiptPointService {
 
-    private final Map<String, Receipt> receiptStore = new HashMap<>();
+    private final ReceiptStore receiptStore;
+    private final RuleEngine ruleEngine;
+    private final ReceiptMetrics receiptMetrics;
+    // Present only when receipt.scoring.parallel.enabled is set
+    private final ParallelItemScoring parallelItemScoring;
+    // Present only when receipt.ingest.dedup.enabled is set
+    private final ReceiptDeduplicator receiptDeduplicator;
+    // Present only when receipt.cluster.enabled is set
+    private final ShardRouter shardRouter;
+
+    public ReceiptPointServiceImpl() {
+        this(new ConcurrentReceiptStore());
+    }
+
+    public ReceiptPointServiceImpl(ReceiptStore receiptStore) {
+        this(receiptStore, new RuleEngine(), ReceiptMetrics.noop());
+    }
+
+    public ReceiptPointServiceImpl(ReceiptStore receiptStore, RuleEngine ruleEngine, ReceiptMetrics receiptMetrics) {
+        this(receiptStore, ruleEngine, receiptMetrics, null, null, null);
+    }
+
+    @Autowired
+    public ReceiptPointServiceImpl(ReceiptStore receiptStore, RuleEngine ruleEngine, ReceiptMetrics receiptMetrics,
+                                   @Nullable ParallelItemScoring parallelItemScoring,
+                                   @Nullable ReceiptDeduplicator receiptDeduplicator,
+                                   @Nullable ShardRouter shardRouter) {
+        this.receiptStore = receiptStore;
+        this.ruleEngine = ruleEngine;
+        this.receiptMetrics = receiptMetrics;
+        this.parallelItemScoring = parallelItemScoring;
+        this.receiptDeduplicator = receiptDeduplicator;
+        this.shardRouter = shardRouter;
+    }
 
     @Override
     public String processReceipt(Receipt receipt) {
-        String receiptId = UUID.randomUUID().toString();
-        receiptStore.put(receiptId, receipt);
-        return receiptId;
+        return processReceipt(receipt, null);
     }
 
+    // In cluster mode a receipt owned by another shard is forwarded there and stored under that shard's id
     @Override
-    public int calculatePoints(String receiptId) {
-        Receipt receipt = receiptStore.get(receiptId);
-        if (receipt == null) {
-            throw new IllegalArgumentException("Receipt not found");
+    public String processReceipt(Receipt receipt, String idempotencyKey) {
+        if (shardRouter != null) {
+            int owner = shardRouter.ownerOf(receipt, idempotencyKey);
+            if (!shardRouter.isLocal(owner)) {
+                return shardRouter.forwardReceipt(owner, receipt, idempotencyKey);
+            }
         }
+        return processLocally(receipt, idempotencyKey);
+    }
 
-        int points = 0;
+    // Stores the receipt on this instance whichever shard it hashes to; receipts forwarded by another shard land here
+    public String processLocally(Receipt receipt, String idempotencyKey) {
+        if (receiptDeduplicator == null) {
+            return store(receipt).toString();
+        }
+        return receiptDeduplicator.ingestOnce(receipt, idempotencyKey, () -> store(receipt)).toString();
+    }
 
-        // One point for every alphanumeric character in the retailer name
-        points += receipt.getRetailer().replaceAll("[^a-zA-Z0-9]", "").length();
+    // Whether this instance stores the receipt itself, rather than forwarding it to the shard that owns it
+    public boolean ownsReceipt(Receipt receipt, String idempotencyKey) {
+        return shardRouter == null || shardRouter.isLocal(shardRouter.ownerOf(receipt, idempotencyKey));
+    }
 
-        double total = Double.parseDouble(receipt.getTotal());
+    @Override
+    public ReceiptId newReceiptId() {
+        return shardRouter == null ? ReceiptId.random() : shardRouter.newLocalId();
+    }
 
-        // 50 points if the total is a round dollar amount with no cents
-        if (total % 1 == 0) {
-            points += 50;
-        }
+    // Lookups for receipts on another shard are blocking HTTP calls, which the reactive stack keeps off its event loop
+    public boolean isClustered() {
+        return shardRouter != null;
+    }
 
-        // 25 points if the total is a multiple of 0.25
-        if (total % 0.25 == 0) {
-            points += 25;
-        }
+    // Outside cluster mode nothing is forwarded, so the headers are ignored
+    public boolean isForwarded(@Nullable String forwardedBy, @Nullable String forwardingSecret) {
+        return shardRouter != null && shardRouter.isForwarded(forwardedBy, forwardingSecret);
+    }
 
-        // 5 points for every two items on the receipt
-        points += (receipt.getItems().size() / 2) * 5;
+    private ReceiptId store(Receipt receipt) {
+        ReceiptId receiptId = newReceiptId();
+        // Receipts never change after ingest, so score once here instead of on every lookup. One read of the
+        // current rules, so the recorded version is the one that produced the points
+        CompiledRuleSet rules = ruleEngine.current();
+        int points = score(receipt, rules);
+        long start = System.nanoTime();
+        receiptStore.put(receiptId, receipt, points, rules.getVersion());
+        receiptMetrics.recordStore(start);
+        return receiptId;
+    }
 
-        // Points based on item description length being a multiple of 3
-        for (Item item : receipt.getItems()) {
-            int length = item.getShortDescription().trim().length();
-            if (length % 3 == 0) {
-                double price = Double.parseDouble(item.getPrice());
-                points += Math.ceil(price * 0.2);
-            }
-        }
+    @Override
+    public int findPoints(String receiptId) {
+        return findPoints(receiptId, true);
+    }
 
-        // 6 points if the day in the purchase date is odd
-        if (receipt.getPurchaseDate().getDayOfMonth() % 2 != 0) {
-            points += 6;
-        }
+    // Looks in this instance's store only, whichever shard the id names; lookups forwarded by another shard land here
+    public int findLocalPoints(String receiptId) {
+        return findPoints(receiptId, false);
+    }
 
-        // 10 points if the time of purchase is after 2:00pm and before 4:00pm
-        LocalTime purchaseTime = receipt.getPurchaseTime();
-        if (purchaseTime.isAfter(LocalTime.of(14, 0)) && purchaseTime.isBefore(LocalTime.of(16, 0))) {
-            points += 10;
+    private int findPoints(String receiptId, boolean route) {
+        long start = System.nanoTime();
+        // Ids that are not well-formed can't be in the store, so they are answered without touching it
+        ReceiptId id = ReceiptId.parse(receiptId);
+        int points;
+        if (id == null) {
+            points = ReceiptStore.NOT_FOUND;
+        } else if (route && shardRouter != null && !shardRouter.isLocal(id)) {
+            points = shardRouter.forwardPoints(id);
+        } else {
+            points = receiptStore.getPoints(id);
         }
+        receiptMetrics.recordLookup(start, points != ReceiptStore.NOT_FOUND);
+        return points;
+    }
 
+    @Override
+    public int calculatePoints(String receiptId) {
+        int points = findPoints(receiptId);
+        if (points == ReceiptStore.NOT_FOUND) {
+            throw new IllegalArgumentException("Receipt not found");
+        }
         return points;
     }
 
+    @Override
+    public int calculatePoints(Receipt receipt) {
+        return score(receipt, ruleEngine.current());
+    }
+
+    @Override
+    public CompiledRuleSet currentRules() {
+        return ruleEngine.current();
+    }
+
+    @Override
+    public int scoreForStorage(Receipt receipt, CompiledRuleSet rules) {
+        return score(receipt, rules);
+    }
+
+    private int score(Receipt receipt, CompiledRuleSet rules) {
+        long start = System.nanoTime();
+        int points = rules.score(receipt, receiptMetrics, parallelItemScoring);
+        receiptMetrics.recordScore(start);
+        return points;
+    }
 }
@@ -0,0 +1,152 @@
+package com.fetch.receiptprocessor.store;
+
+import com.fetch.receiptprocessor.model.Item;
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+
+/*
+ * Memory-bounded store backed by a Caffeine cache.
+ * Caffeine's W-TinyLFU policy keeps receipts that are read often or were ingested recently, reads are lock-free,
+ * and eviction work is amortised onto a background executor instead of a global lock.
+ *
+ * The bound is either an entry count or an estimated heap budget in bytes, optionally combined with a TTL
+ * measured from ingest. Indexes kept beside the store can follow its evictions through addEvictionListener.
+ */
+public class BoundedReceiptStore implements ReceiptStore {
+
+    // Rough per-entry cost of the cache node, the ReceiptId and the Entry wrapper
+    private static final int ENTRY_OVERHEAD_BYTES = 120;
+
+    private final Cache<ReceiptId, Entry> cache;
+    private final boolean retainReceipts;
+    private final List<BiConsumer<ReceiptId, Receipt>> evictionListeners = new CopyOnWriteArrayList<>();
+
+    public BoundedReceiptStore(long maximumSize, long maximumBytes, Duration expireAfterWrite, boolean retainReceipts) {
+        this(maximumSize, maximumBytes, expireAfterWrite, retainReceipts, Ticker.systemTicker(), ForkJoinPool.commonPool());
+    }
+
+    BoundedReceiptStore(long maximumSize, long maximumBytes, Duration expireAfterWrite, boolean retainReceipts,
+                        Ticker ticker, Executor executor) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .ticker(ticker)
+                .executor(executor)
+                .recordStats();
+        builder.evictionListener((ReceiptId id, Entry entry, RemovalCause cause) -> {
+            for (BiConsumer<ReceiptId, Receipt> listener : evictionListeners) {
+                listener.accept(id, entry.receipt);
+            }
+        });
+        if (maximumBytes > 0) {
+            builder.maximumWeight(maximumBytes)
+                    .weigher((ReceiptId id, Entry entry) -> entry.weight);
+        } else {
+            builder.maximumSize(maximumSize);
+        }
+        if (expireAfterWrite != null) {
+            builder.expireAfterWrite(expireAfterWrite);
+        }
+        this.cache = builder.build();
+        this.retainReceipts = retainReceipts;
+    }
+
+    @Override
+    public void put(ReceiptId receiptId, Receipt receipt, int points, int ruleSetVersion) {
+        Receipt body = retainReceipts ? receipt : null;
+        cache.put(receiptId, new Entry(points, ruleSetVersion, body, ENTRY_OVERHEAD_BYTES + estimateBytes(body)));
+    }
+
+    @Override
+    public int getPoints(ReceiptId receiptId) {
+        Entry entry = cache.getIfPresent(receiptId);
+        return entry == null ? NOT_FOUND : entry.points;
+    }
+
+    @Override
+    public Receipt getReceipt(ReceiptId receiptId) {
+        Entry entry = cache.getIfPresent(receiptId);
+        return entry == null ? null : entry.receipt;
+    }
+
+    @Override
+    public int getRuleSetVersion(ReceiptId receiptId) {
+        Entry entry = cache.getIfPresent(receiptId);
+        return entry == null ? UNVERSIONED : entry.ruleSetVersion;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, cache.estimatedSize());
+    }
+
+    @Override
+    public void forEach(EntryConsumer consumer) {
+        cache.asMap().forEach((receiptId, entry) -> consumer.accept(receiptId, entry.receipt, entry.points,
+                entry.ruleSetVersion));
+    }
+
+    /*
+     * Called with the id and retained body of every receipt evicted by size or TTL, on the thread doing the cache's
+     * maintenance; not for receipts replaced by a put.
+     */
+    public void addEvictionListener(BiConsumer<ReceiptId, Receipt> listener) {
+        evictionListeners.add(listener);
+    }
+
+    // Exposed so hit, miss and eviction statistics can be bound to a meter registry
+    public Cache<ReceiptId, ?> getCache() {
+        return cache;
+    }
+
+    // Approximate retained heap of a receipt: object headers plus Latin-1 string contents
+    static int estimateBytes(Receipt receipt) {
+        if (receipt == null) {
+            return 0;
+        }
+        int bytes = 48 + stringBytes(receipt.getRetailer()) + stringBytes(receipt.getTotal());
+        if (receipt.getPurchaseDate() != null) {
+            bytes += 24;
+        }
+        if (receipt.getPurchaseTime() != null) {
+            bytes += 24;
+        }
+        List<Item> items = receipt.getItems();
+        if (items != null) {
+            bytes += 40 + 4 * items.size();
+            for (Item item : items) {
+                if (item != null) {
+                    bytes += 24 + stringBytes(item.getShortDescription()) + stringBytes(item.getPrice());
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static int stringBytes(String value) {
+        return value == null ? 0 : 40 + value.length();
+    }
+
+    private static final class Entry {
+        final int points;
+        final int ruleSetVersion;
+        final Receipt receipt;
+        final int weight;
+
+        Entry(int points, int ruleSetVersion, Receipt receipt, int weight) {
+            this.points = points;
+            this.ruleSetVersion = ruleSetVersion;
+            this.receipt = receipt;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.fetch.receiptprocessor.store;
+
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+
+/*
+ * Default in-memory store, backed by a ReceiptIdIndex keyed on the two halves of the receipt UUID.
+ * Only the id -> points table is required to answer lookups; receipt bodies are kept when retainReceipts is set.
+ * Each index value packs the rule-set version into its high half and the points into its low half.
+ */
+public class ConcurrentReceiptStore implements ReceiptStore {
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+    private final ReceiptIdIndex index;
+
+    public ConcurrentReceiptStore() {
+        this(DEFAULT_INITIAL_CAPACITY, true);
+    }
+
+    public ConcurrentReceiptStore(int initialCapacity, boolean retainReceipts) {
+        this.index = new ReceiptIdIndex(initialCapacity, retainReceipts);
+    }
+
+    @Override
+    public void put(ReceiptId receiptId, Receipt receipt, int points, int ruleSetVersion) {
+        index.put(receiptId, pack(points, ruleSetVersion), receipt);
+    }
+
+    @Override
+    public int getPoints(ReceiptId receiptId) {
+        long value = index.get(receiptId);
+        return value == ReceiptIdIndex.MISSING ? NOT_FOUND : (int) value;
+    }
+
+    @Override
+    public int getRuleSetVersion(ReceiptId receiptId) {
+        long value = index.get(receiptId);
+        return value == ReceiptIdIndex.MISSING ? UNVERSIONED : (int) (value >>> 32);
+    }
+
+    @Override
+    public Receipt getReceipt(ReceiptId receiptId) {
+        return (Receipt) index.getAttachment(receiptId);
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public void forEach(EntryConsumer consumer) {
+        index.forEach((id, value, receipt) ->
+                consumer.accept(id, (Receipt) receipt, (int) value, (int) (value >>> 32)));
+    }
+
+    // Versions are never negative, so a packed value can't collide with ReceiptIdIndex.MISSING
+    private static long pack(int points, int ruleSetVersion) {
+        return ((long) ruleSetVersion << 32) | (points & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,141 @@
+package com.fetch.receiptprocessor.store;
+
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+ * Keeps receipts outside the Java heap, encoded with ReceiptCodec into large direct ByteBuffer slabs.
+ * The heap holds only the ReceiptIdIndex of slab addresses; a Receipt is decoded when someone asks for it.
+ *
+ * Each record is [points int][rule-set version int][body length int][body], where the length is -1 when bodies are
+ * not retained.
+ * Space is reserved under a short lock and the record is then written without it, so writers only contend
+ * on the bump of the slab position.
+ */
+public class OffHeapReceiptStore implements ReceiptStore {
+
+    private static final int RECORD_HEADER_BYTES = 12;
+    private static final int NO_BODY = -1;
+
+    private final int slabSize;
+    private final boolean retainReceipts;
+    private final ReceiptIdIndex index;
+
+    private final Object allocationLock = new Object();
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+    private int slabPosition;
+    private long allocatedBytes;
+
+    public OffHeapReceiptStore(int slabSize, int initialCapacity, boolean retainReceipts) {
+        if (slabSize < RECORD_HEADER_BYTES) {
+            throw new IllegalArgumentException("Slab size must be at least " + RECORD_HEADER_BYTES + " bytes");
+        }
+        this.slabSize = slabSize;
+        this.retainReceipts = retainReceipts;
+        this.index = new ReceiptIdIndex(initialCapacity, false);
+    }
+
+    @Override
+    public void put(ReceiptId receiptId, Receipt receipt, int points, int ruleSetVersion) {
+        boolean withBody = retainReceipts && receipt != null;
+        int bodySize = withBody ? ReceiptCodec.encodedSize(receipt) : 0;
+        long address = allocate(RECORD_HEADER_BYTES + bodySize);
+        ByteBuffer slab = slabs[slabIndex(address)];
+        int offset = slabOffset(address);
+
+        slab.putInt(offset, points);
+        slab.putInt(offset + 4, ruleSetVersion);
+        slab.putInt(offset + 8, withBody ? bodySize : NO_BODY);
+        if (withBody) {
+            ReceiptCodec.encode(receipt, slab, offset + RECORD_HEADER_BYTES);
+        }
+        // The index write publishes the record bytes to readers
+        index.put(receiptId, address, null);
+    }
+
+    @Override
+    public int getPoints(ReceiptId receiptId) {
+        long address = index.get(receiptId);
+        if (address == ReceiptIdIndex.MISSING) {
+            return NOT_FOUND;
+        }
+        return slabs[slabIndex(address)].getInt(slabOffset(address));
+    }
+
+    @Override
+    public Receipt getReceipt(ReceiptId receiptId) {
+        long address = index.get(receiptId);
+        if (address == ReceiptIdIndex.MISSING) {
+            return null;
+        }
+        return readBody(address);
+    }
+
+    @Override
+    public int getRuleSetVersion(ReceiptId receiptId) {
+        long address = index.get(receiptId);
+        if (address == ReceiptIdIndex.MISSING) {
+            return UNVERSIONED;
+        }
+        return slabs[slabIndex(address)].getInt(slabOffset(address) + 4);
+    }
+
+    @Override
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public void forEach(EntryConsumer consumer) {
+        index.forEach((id, address, attachment) -> {
+            ByteBuffer slab = slabs[slabIndex(address)];
+            int offset = slabOffset(address);
+            consumer.accept(id, readBody(address), slab.getInt(offset), slab.getInt(offset + 4));
+        });
+    }
+
+    // Direct memory reserved so far, including unused space at the end of each slab
+    public long allocatedBytes() {
+        synchronized (allocationLock) {
+            return allocatedBytes;
+        }
+    }
+
+    private Receipt readBody(long address) {
+        ByteBuffer slab = slabs[slabIndex(address)];
+        int offset = slabOffset(address);
+        if (slab.getInt(offset + 8) == NO_BODY) {
+            return null;
+        }
+        return ReceiptCodec.decode(slab, offset + RECORD_HEADER_BYTES);
+    }
+
+    private long allocate(int recordSize) {
+        synchronized (allocationLock) {
+            ByteBuffer[] current = slabs;
+            if (current.length == 0 || slabPosition + recordSize > current[current.length - 1].capacity()) {
+                // Oversized records get a slab of their own rather than failing
+                ByteBuffer slab = ByteBuffer.allocateDirect(Math.max(slabSize, recordSize));
+                current = Arrays.copyOf(current, current.length + 1);
+                current[current.length - 1] = slab;
+                slabs = current;
+                slabPosition = 0;
+                allocatedBytes += slab.capacity();
+            }
+            long address = ((long) (current.length - 1) << 32) | slabPosition;
+            slabPosition += recordSize;
+            return address;
+        }
+    }
+
+    private static int slabIndex(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int slabOffset(long address) {
+        return (int) address;
+    }
+}
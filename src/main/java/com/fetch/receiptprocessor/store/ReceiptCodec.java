@@ -0,0 +1,217 @@
+package com.fetch.receiptprocessor.store;
+
+import com.fetch.receiptprocessor.model.Item;
+import com.fetch.receiptprocessor.model.Receipt;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Compact binary layout for a Receipt, written and read at absolute offsets so many threads can share one buffer.
+ *
+ *   flags            1 byte   bit 0: purchaseDate present, bit 1: purchaseTime present, bit 2: items present
+ *   retailer         string
+ *   purchaseDate     zig-zag varlong epoch day
+ *   purchaseTime     varlong nano of day
+ *   total            string
+ *   items            varint count, then shortDescription and price strings per item
+ *
+ * Strings are a varint of (UTF-8 length + 1), 0 meaning null, followed by the UTF-8 bytes.
+ */
+public final class ReceiptCodec {
+
+    private static final int HAS_DATE = 1;
+    private static final int HAS_TIME = 1 << 1;
+    private static final int HAS_ITEMS = 1 << 2;
+
+    private ReceiptCodec() {
+    }
+
+    public static int encodedSize(Receipt receipt) {
+        int size = 1 + stringSize(receipt.getRetailer()) + stringSize(receipt.getTotal());
+        if (receipt.getPurchaseDate() != null) {
+            size += varLongSize(zigZag(receipt.getPurchaseDate().toEpochDay()));
+        }
+        if (receipt.getPurchaseTime() != null) {
+            size += varLongSize(receipt.getPurchaseTime().toNanoOfDay());
+        }
+        List<Item> items = receipt.getItems();
+        if (items != null) {
+            size += varLongSize(items.size());
+            for (Item item : items) {
+                size += stringSize(item.getShortDescription()) + stringSize(item.getPrice());
+            }
+        }
+        return size;
+    }
+
+    // Writes the receipt at offset and returns the offset just past it; the buffer must have encodedSize bytes free
+    public static int encode(Receipt receipt, ByteBuffer buffer, int offset) {
+        List<Item> items = receipt.getItems();
+        int flags = (receipt.getPurchaseDate() != null ? HAS_DATE : 0)
+                | (receipt.getPurchaseTime() != null ? HAS_TIME : 0)
+                | (items != null ? HAS_ITEMS : 0);
+        buffer.put(offset++, (byte) flags);
+        offset = putString(buffer, offset, receipt.getRetailer());
+        if (receipt.getPurchaseDate() != null) {
+            offset = putVarLong(buffer, offset, zigZag(receipt.getPurchaseDate().toEpochDay()));
+        }
+        if (receipt.getPurchaseTime() != null) {
+            offset = putVarLong(buffer, offset, receipt.getPurchaseTime().toNanoOfDay());
+        }
+        offset = putString(buffer, offset, receipt.getTotal());
+        if (items != null) {
+            offset = putVarLong(buffer, offset, items.size());
+            for (Item item : items) {
+                offset = putString(buffer, offset, item.getShortDescription());
+                offset = putString(buffer, offset, item.getPrice());
+            }
+        }
+        return offset;
+    }
+
+    public static Receipt decode(ByteBuffer buffer, int offset) {
+        Reader reader = new Reader(buffer, offset);
+        int flags = buffer.get(reader.offset++);
+        Receipt receipt = new Receipt();
+        receipt.setRetailer(reader.string());
+        if ((flags & HAS_DATE) != 0) {
+            receipt.setPurchaseDate(LocalDate.ofEpochDay(unZigZag(reader.varLong())));
+        }
+        if ((flags & HAS_TIME) != 0) {
+            receipt.setPurchaseTime(LocalTime.ofNanoOfDay(reader.varLong()));
+        }
+        receipt.setTotal(reader.string());
+        if ((flags & HAS_ITEMS) != 0) {
+            int count = (int) reader.varLong();
+            List<Item> items = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                items.add(new Item(reader.string(), reader.string()));
+            }
+            receipt.setItems(items);
+        }
+        return receipt;
+    }
+
+    private static int stringSize(String value) {
+        if (value == null) {
+            return 1;
+        }
+        int length = utf8Length(value);
+        return varLongSize(length + 1L) + length;
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    // Encodes chars one at a time so no intermediate byte[] is allocated; lone surrogates become U+FFFD
+    private static int putString(ByteBuffer buffer, int offset, String value) {
+        if (value == null) {
+            return putVarLong(buffer, offset, 0);
+        }
+        offset = putVarLong(buffer, offset, utf8Length(value) + 1L);
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put(offset++, (byte) c);
+            } else if (c < 0x800) {
+                buffer.put(offset++, (byte) (0xC0 | (c >> 6)));
+                buffer.put(offset++, (byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put(offset++, (byte) (0xF0 | (codePoint >> 18)));
+                buffer.put(offset++, (byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put(offset++, (byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put(offset++, (byte) (0x80 | (codePoint & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates take 3 bytes in utf8Length, so pad the replacement to keep sizes in step
+                buffer.put(offset++, (byte) 0xEF);
+                buffer.put(offset++, (byte) 0xBF);
+                buffer.put(offset++, (byte) 0xBD);
+            } else {
+                buffer.put(offset++, (byte) (0xE0 | (c >> 12)));
+                buffer.put(offset++, (byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put(offset++, (byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        return offset;
+    }
+
+    private static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int putVarLong(ByteBuffer buffer, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put(offset++, (byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put(offset++, (byte) value);
+        return offset;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class Reader {
+        private final ByteBuffer buffer;
+        private int offset;
+
+        Reader(ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+
+        long varLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(offset++);
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        String string() {
+            int length = (int) varLong() - 1;
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(offset, bytes);
+            offset += length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
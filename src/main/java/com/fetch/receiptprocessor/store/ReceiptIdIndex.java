@@ -0,0 +1,383 @@
+package com.fetch.receiptprocessor.store;
+
+import com.fetch.receiptprocessor.model.ReceiptId;
+
+import java.util.concurrent.locks.StampedLock;
+
+/*
+ * Concurrent open-addressing hash table from a ReceiptId to a long value and an optional object attachment.
+ * Keys live unboxed in parallel long arrays, so an entry costs a few array slots instead of a String, a boxed
+ * value and a map node.
+ *
+ * The table is split into independently locked segments. Reads are optimistic: they probe without taking the
+ * segment lock and only fall back to a read lock when a concurrent write invalidates them.
+ */
+public class ReceiptIdIndex {
+
+    public static final long MISSING = Long.MIN_VALUE;
+
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+
+    public ReceiptIdIndex(int expectedSize, boolean withAttachments) {
+        int segmentCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1) << 1;
+        this.segments = new Segment[segmentCount];
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(segmentCount);
+        int perSegment = (int) Math.ceil(Math.max(expectedSize, 1) / (double) segmentCount / LOAD_FACTOR);
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(tableSizeFor(perSegment), withAttachments);
+        }
+    }
+
+    // Inserts or replaces the entry for the id
+    public void put(ReceiptId id, long value, Object attachment) {
+        long hash = hash(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        segmentFor(hash).put(id.getMostSignificantBits(), id.getLeastSignificantBits(), hash, value, attachment);
+    }
+
+    // Inserts the entry only if the id is absent; returns the attachment already there, or null if it was inserted
+    public Object putIfAbsent(ReceiptId id, long value, Object attachment) {
+        long hash = hash(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        return segmentFor(hash).putIfAbsent(id.getMostSignificantBits(), id.getLeastSignificantBits(), hash, value,
+                attachment);
+    }
+
+    // Removes the entry only while its attachment equals the given one; returns whether it was removed
+    public boolean remove(ReceiptId id, Object attachment) {
+        long hash = hash(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        return segmentFor(hash).remove(id.getMostSignificantBits(), id.getLeastSignificantBits(), hash, attachment);
+    }
+
+    // Returns MISSING when the id is not present
+    public long get(ReceiptId id) {
+        long hash = hash(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        return segmentFor(hash).get(id.getMostSignificantBits(), id.getLeastSignificantBits(), hash);
+    }
+
+    public Object getAttachment(ReceiptId id) {
+        long hash = hash(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        return segmentFor(hash).getAttachment(id.getMostSignificantBits(), id.getLeastSignificantBits(), hash);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    // Visits every entry; each segment is copied under its read lock so writers are held up only for the copy
+    public void forEach(EntryVisitor visitor) {
+        for (Segment segment : segments) {
+            segment.forEach(visitor);
+        }
+    }
+
+    public interface EntryVisitor {
+        void visit(ReceiptId id, long value, Object attachment);
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> segmentShift)];
+    }
+
+    /*
+     * MurmurHash3 finalizer, so ids that are not random UUIDs still spread across segments and slots.
+     * Snapshot files are laid out with this hash, so changing it needs a new snapshot format version.
+     */
+    public static long hash(long msb, long lsb) {
+        long h = msb * 31 + lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        return Math.max(MIN_SEGMENT_CAPACITY, Integer.highestOneBit(Math.max(1, capacity - 1)) << 1);
+    }
+
+    /*
+     * One linear-probing table. An all-zero key marks an empty slot, so the nil UUID is kept on the side.
+     * Removal shifts later entries of the probe run back instead of leaving tombstones, so lookups stay as short as
+     * if the removed entry had never been inserted.
+     */
+    private static final class Segment {
+        private final StampedLock lock = new StampedLock();
+        private final boolean withAttachments;
+
+        private long[] msbs;
+        private long[] lsbs;
+        private long[] values;
+        private Object[] attachments;
+        private int size;
+        private int resizeThreshold;
+
+        private boolean hasNilKey;
+        private long nilKeyValue;
+        private Object nilKeyAttachment;
+
+        Segment(int capacity, boolean withAttachments) {
+            this.withAttachments = withAttachments;
+            allocate(capacity);
+        }
+
+        void put(long msb, long lsb, long hash, long value, Object attachment) {
+            long stamp = lock.writeLock();
+            try {
+                if (msb == 0 && lsb == 0) {
+                    if (!hasNilKey) {
+                        size++;
+                    }
+                    hasNilKey = true;
+                    nilKeyValue = value;
+                    nilKeyAttachment = withAttachments ? attachment : null;
+                    return;
+                }
+                int slot = findSlot(msbs, lsbs, msb, lsb, hash);
+                if (msbs[slot] == 0 && lsbs[slot] == 0) {
+                    if (size + 1 > resizeThreshold) {
+                        resize();
+                        slot = findSlot(msbs, lsbs, msb, lsb, hash);
+                    }
+                    msbs[slot] = msb;
+                    lsbs[slot] = lsb;
+                    size++;
+                }
+                values[slot] = value;
+                if (withAttachments) {
+                    attachments[slot] = attachment;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        Object putIfAbsent(long msb, long lsb, long hash, long value, Object attachment) {
+            long stamp = lock.writeLock();
+            try {
+                if (msb == 0 && lsb == 0) {
+                    if (hasNilKey) {
+                        return nilKeyAttachment;
+                    }
+                    hasNilKey = true;
+                    nilKeyValue = value;
+                    nilKeyAttachment = withAttachments ? attachment : null;
+                    size++;
+                    return null;
+                }
+                int slot = findSlot(msbs, lsbs, msb, lsb, hash);
+                if (msbs[slot] != 0 || lsbs[slot] != 0) {
+                    return withAttachments ? attachments[slot] : null;
+                }
+                if (size + 1 > resizeThreshold) {
+                    resize();
+                    slot = findSlot(msbs, lsbs, msb, lsb, hash);
+                }
+                msbs[slot] = msb;
+                lsbs[slot] = lsb;
+                values[slot] = value;
+                if (withAttachments) {
+                    attachments[slot] = attachment;
+                }
+                size++;
+                return null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        boolean remove(long msb, long lsb, long hash, Object attachment) {
+            long stamp = lock.writeLock();
+            try {
+                if (msb == 0 && lsb == 0) {
+                    if (!hasNilKey || !attachment.equals(nilKeyAttachment)) {
+                        return false;
+                    }
+                    hasNilKey = false;
+                    nilKeyAttachment = null;
+                    size--;
+                    return true;
+                }
+                int slot = findSlot(msbs, lsbs, msb, lsb, hash);
+                if ((msbs[slot] == 0 && lsbs[slot] == 0) || !withAttachments
+                        || !attachment.equals(attachments[slot])) {
+                    return false;
+                }
+                int mask = msbs.length - 1;
+                int empty = slot;
+                int next = slot;
+                while (true) {
+                    next = (next + 1) & mask;
+                    if (msbs[next] == 0 && lsbs[next] == 0) {
+                        break;
+                    }
+                    // An entry whose home slot lies cyclically in (empty, next] is still reachable where it is
+                    int home = (int) hash(msbs[next], lsbs[next]) & mask;
+                    boolean reachable = empty <= next ? empty < home && home <= next : empty < home || home <= next;
+                    if (!reachable) {
+                        msbs[empty] = msbs[next];
+                        lsbs[empty] = lsbs[next];
+                        values[empty] = values[next];
+                        attachments[empty] = attachments[next];
+                        empty = next;
+                    }
+                }
+                msbs[empty] = 0;
+                lsbs[empty] = 0;
+                attachments[empty] = null;
+                size--;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        long get(long msb, long lsb, long hash) {
+            long stamp = lock.tryOptimisticRead();
+            long value = stamp != 0 ? probeValue(msb, lsb, hash) : MISSING;
+            if (stamp == 0 || !lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    value = probeValue(msb, lsb, hash);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return value;
+        }
+
+        Object getAttachment(long msb, long lsb, long hash) {
+            if (!withAttachments) {
+                return null;
+            }
+            long stamp = lock.readLock();
+            try {
+                if (msb == 0 && lsb == 0) {
+                    return hasNilKey ? nilKeyAttachment : null;
+                }
+                int slot = findSlot(msbs, lsbs, msb, lsb, hash);
+                return msbs[slot] == 0 && lsbs[slot] == 0 ? null : attachments[slot];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void forEach(EntryVisitor visitor) {
+            long[] copiedMsbs;
+            long[] copiedLsbs;
+            long[] copiedValues;
+            Object[] copiedAttachments;
+            boolean copiedNilKey;
+            long copiedNilValue;
+            Object copiedNilAttachment;
+            long stamp = lock.readLock();
+            try {
+                copiedMsbs = msbs.clone();
+                copiedLsbs = lsbs.clone();
+                copiedValues = values.clone();
+                copiedAttachments = withAttachments ? attachments.clone() : null;
+                copiedNilKey = hasNilKey;
+                copiedNilValue = nilKeyValue;
+                copiedNilAttachment = nilKeyAttachment;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            if (copiedNilKey) {
+                visitor.visit(new ReceiptId(0, 0), copiedNilValue, copiedNilAttachment);
+            }
+            for (int i = 0; i < copiedMsbs.length; i++) {
+                if (copiedMsbs[i] != 0 || copiedLsbs[i] != 0) {
+                    visitor.visit(new ReceiptId(copiedMsbs[i], copiedLsbs[i]), copiedValues[i],
+                            copiedAttachments == null ? null : copiedAttachments[i]);
+                }
+            }
+        }
+
+        int size() {
+            long stamp = lock.readLock();
+            try {
+                return size;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        // May run against a table that is being written; the caller validates the stamp before trusting the result
+        private long probeValue(long msb, long lsb, long hash) {
+            if (msb == 0 && lsb == 0) {
+                return hasNilKey ? nilKeyValue : MISSING;
+            }
+            long[] currentMsbs = msbs;
+            long[] currentLsbs = lsbs;
+            long[] currentValues = values;
+            if (currentMsbs.length != currentLsbs.length || currentMsbs.length != currentValues.length) {
+                return MISSING;
+            }
+            int mask = currentMsbs.length - 1;
+            int slot = (int) hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                long slotMsb = currentMsbs[slot];
+                long slotLsb = currentLsbs[slot];
+                if (slotMsb == msb && slotLsb == lsb) {
+                    return currentValues[slot];
+                }
+                if (slotMsb == 0 && slotLsb == 0) {
+                    return MISSING;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return MISSING;
+        }
+
+        // Returns the slot holding the key, or the empty slot where it would be inserted
+        private static int findSlot(long[] msbs, long[] lsbs, long msb, long lsb, long hash) {
+            int mask = msbs.length - 1;
+            int slot = (int) hash & mask;
+            while (true) {
+                long slotMsb = msbs[slot];
+                long slotLsb = lsbs[slot];
+                if ((slotMsb == msb && slotLsb == lsb) || (slotMsb == 0 && slotLsb == 0)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private void resize() {
+            long[] oldMsbs = msbs;
+            long[] oldLsbs = lsbs;
+            long[] oldValues = values;
+            Object[] oldAttachments = attachments;
+            allocate(oldMsbs.length << 1);
+            for (int i = 0; i < oldMsbs.length; i++) {
+                long msb = oldMsbs[i];
+                long lsb = oldLsbs[i];
+                if (msb == 0 && lsb == 0) {
+                    continue;
+                }
+                int slot = findSlot(msbs, lsbs, msb, lsb, hash(msb, lsb));
+                msbs[slot] = msb;
+                lsbs[slot] = lsb;
+                values[slot] = oldValues[i];
+                if (withAttachments) {
+                    attachments[slot] = oldAttachments[i];
+                }
+            }
+        }
+
+        private void allocate(int capacity) {
+            msbs = new long[capacity];
+            lsbs = new long[capacity];
+            values = new long[capacity];
+            attachments = withAttachments ? new Object[capacity] : null;
+            resizeThreshold = (int) (capacity * LOAD_FACTOR);
+        }
+    }
+}
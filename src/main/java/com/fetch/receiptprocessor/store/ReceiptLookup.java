@@ -0,0 +1,36 @@
+package com.fetch.receiptprocessor.store;
+
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+
+/*
+ * Read side of the receipt storage SPI. Read-only views, like a mapped snapshot, implement only this; ReceiptStore
+ * adds the write path.
+ */
+public interface ReceiptLookup {
+
+    // Points are never negative, so -1 doubles as the "no such receipt" marker without boxing
+    int NOT_FOUND = -1;
+
+    // Rule-set versions start at 1, so 0 marks a receipt stored without one
+    int UNVERSIONED = 0;
+
+    // Returns NOT_FOUND when the id is unknown
+    int getPoints(ReceiptId receiptId);
+
+    // Returns null when the id is unknown or the store does not retain receipt bodies
+    Receipt getReceipt(ReceiptId receiptId);
+
+    // Returns UNVERSIONED when the id is unknown or was stored without a rule-set version
+    int getRuleSetVersion(ReceiptId receiptId);
+
+    int size();
+
+    // Visits every stored receipt; weakly consistent, so puts made during the walk may or may not be seen
+    void forEach(EntryConsumer consumer);
+
+    interface EntryConsumer {
+        // receipt is null when the body was not kept
+        void accept(ReceiptId receiptId, Receipt receipt, int points, int ruleSetVersion);
+    }
+}
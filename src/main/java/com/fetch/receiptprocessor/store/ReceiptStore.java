@@ -0,0 +1,27 @@
+package com.fetch.receiptprocessor.store;
+
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+
+/*
+ * Storage SPI for processed receipts.
+ * Receipts are immutable once processed, so points are computed at ingest and stored next to the id, together with
+ * the version of the rule set that computed them.
+ * Implementations are shared by every request thread, so they must be safe for concurrent use.
+ */
+public interface ReceiptStore extends ReceiptLookup {
+
+    void put(ReceiptId receiptId, Receipt receipt, int points, int ruleSetVersion);
+
+    // For receipts scored outside a rule set; they are stored as UNVERSIONED
+    default void put(ReceiptId receiptId, Receipt receipt, int points) {
+        put(receiptId, receipt, points, UNVERSIONED);
+    }
+
+    // Stores the first count entries of the arrays; stores that pay per write, like a durable one, do it once per call
+    default void putAll(ReceiptId[] receiptIds, Receipt[] receipts, int[] points, int[] ruleSetVersions, int count) {
+        for (int i = 0; i < count; i++) {
+            put(receiptIds[i], receipts[i], points[i], ruleSetVersions[i]);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.fetch.receiptprocessor.store.replication;
+
+import com.fetch.receiptprocessor.exception.ReadOnlyReplicaException;
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/*
+ * Follower side of replication: serves lookups from the delegate and rejects new receipts until promoted.
+ * A ReplicationFollower writes to the delegate directly.
+ */
+public class ReplicaReceiptStore implements ReceiptStore, Closeable {
+
+    private final ReceiptStore delegate;
+    private volatile boolean promoted;
+
+    public ReplicaReceiptStore(ReceiptStore delegate) {
+        this.delegate = delegate;
+    }
+
+    // Accepts receipts from now on; stop the ReplicationFollower first so the old leader can no longer write
+    public void promote() {
+        promoted = true;
+    }
+
+    public boolean isPromoted() {
+        return promoted;
+    }
+
+    @Override
+    public void put(ReceiptId receiptId, Receipt receipt, int points, int ruleSetVersion) {
+        if (!promoted) {
+            throw new ReadOnlyReplicaException();
+        }
+        delegate.put(receiptId, receipt, points, ruleSetVersion);
+    }
+
+    @Override
+    public void putAll(ReceiptId[] receiptIds, Receipt[] receipts, int[] points, int[] ruleSetVersions, int count) {
+        if (!promoted) {
+            throw new ReadOnlyReplicaException();
+        }
+        delegate.putAll(receiptIds, receipts, points, ruleSetVersions, count);
+    }
+
+    @Override
+    public int getPoints(ReceiptId receiptId) {
+        return delegate.getPoints(receiptId);
+    }
+
+    @Override
+    public Receipt getReceipt(ReceiptId receiptId) {
+        return delegate.getReceipt(receiptId);
+    }
+
+    @Override
+    public int getRuleSetVersion(ReceiptId receiptId) {
+        return delegate.getRuleSetVersion(receiptId);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public void forEach(EntryConsumer consumer) {
+        delegate.forEach(consumer);
+    }
+
+    public ReceiptStore getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable) {
+            ((Closeable) delegate).close();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.fetch.receiptprocessor.store.replication;
+
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+
+/*
+ * Leader side of replication: stores every receipt in the delegate, then hands it to a ReplicationLeader.
+ *
+ * With synchronous acknowledgment a put returns once every caught-up follower has applied the receipt, so an id
+ * handed to a client survives losing the leader. Waiting is bounded by ackTimeout, after which the put returns
+ * anyway and the timeout is counted: a stalled follower slows ingest down but never stops it. Asynchronous
+ * acknowledgment returns as soon as the delegate has the receipt.
+ */
+public class ReplicatingReceiptStore implements ReceiptStore, Closeable {
+
+    private final ReceiptStore delegate;
+    private final ReplicationLeader leader;
+    private final boolean synchronous;
+    private final Duration ackTimeout;
+
+    public ReplicatingReceiptStore(ReceiptStore delegate, ReplicationLeader leader, boolean synchronous,
+                                   Duration ackTimeout) {
+        this.delegate = delegate;
+        this.leader = leader;
+        this.synchronous = synchronous;
+        this.ackTimeout = ackTimeout;
+    }
+
+    @Override
+    public void put(ReceiptId receiptId, Receipt receipt, int points, int ruleSetVersion) {
+        delegate.put(receiptId, receipt, points, ruleSetVersion);
+        long sequence = leader.publish(receiptId, receipt, points, ruleSetVersion);
+        if (synchronous) {
+            leader.awaitAcknowledged(sequence, ackTimeout);
+        }
+    }
+
+    // Waits once for the last receipt, which followers acknowledge together with the rest of the batch
+    @Override
+    public void putAll(ReceiptId[] receiptIds, Receipt[] receipts, int[] points, int[] ruleSetVersions, int count) {
+        delegate.putAll(receiptIds, receipts, points, ruleSetVersions, count);
+        long sequence = 0;
+        for (int i = 0; i < count; i++) {
+            sequence = leader.publish(receiptIds[i], receipts[i], points[i], ruleSetVersions[i]);
+        }
+        if (synchronous && count > 0) {
+            leader.awaitAcknowledged(sequence, ackTimeout);
+        }
+    }
+
+    @Override
+    public int getPoints(ReceiptId receiptId) {
+        return delegate.getPoints(receiptId);
+    }
+
+    @Override
+    public Receipt getReceipt(ReceiptId receiptId) {
+        return delegate.getReceipt(receiptId);
+    }
+
+    @Override
+    public int getRuleSetVersion(ReceiptId receiptId) {
+        return delegate.getRuleSetVersion(receiptId);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public void forEach(EntryConsumer consumer) {
+        delegate.forEach(consumer);
+    }
+
+    public boolean isSynchronous() {
+        return synchronous;
+    }
+
+    public ReplicationLeader getLeader() {
+        return leader;
+    }
+
+    public ReceiptStore getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void close() throws IOException {
+        leader.close();
+        if (delegate instanceof Closeable) {
+            ((Closeable) delegate).close();
+        }
+    }
+}
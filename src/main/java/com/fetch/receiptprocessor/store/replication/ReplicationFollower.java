@@ -0,0 +1,118 @@
+package com.fetch.receiptprocessor.store.replication;
+
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Keeps a store in step with a ReplicationLeader: applies each batch the leader sends, then acknowledges it.
+ * The leader sends an empty batch whenever it has been idle for its heartbeat interval, so a leader that sends
+ * nothing for readTimeout is taken as lost, even when the connection itself never reports an error.
+ * A lost connection is retried every reconnectInterval, and the leader sends its whole store again on reconnect.
+ */
+public class ReplicationFollower implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicationFollower.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ReceiptStore store;
+    private final InetSocketAddress leader;
+    private final int connectTimeoutMillis;
+    private final Duration reconnectInterval;
+    private final int readTimeoutMillis;
+    private final Thread receiver;
+    private volatile boolean running = true;
+    private volatile Socket socket;
+    private volatile boolean connected;
+    private final AtomicLong appliedBatches = new AtomicLong();
+
+    public ReplicationFollower(ReceiptStore store, InetSocketAddress leader, Duration connectTimeout,
+                               Duration reconnectInterval, Duration readTimeout) {
+        this.store = store;
+        this.leader = leader;
+        this.connectTimeoutMillis = Math.toIntExact(connectTimeout.toMillis());
+        this.reconnectInterval = reconnectInterval;
+        this.readTimeoutMillis = Math.toIntExact(readTimeout.toMillis());
+        this.receiver = new Thread(this::receiveLoop, "receipt-replication-follower");
+        this.receiver.setDaemon(true);
+    }
+
+    public void start() {
+        receiver.start();
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public long getAppliedBatches() {
+        return appliedBatches.get();
+    }
+
+    // Stops following; the store keeps everything applied so far
+    @Override
+    public void close() {
+        running = false;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                log.debug("Closing replication socket failed", e);
+            }
+        }
+        receiver.interrupt();
+        try {
+            receiver.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void receiveLoop() {
+        while (running) {
+            try (Socket current = new Socket()) {
+                socket = current;
+                current.connect(leader, connectTimeoutMillis);
+                current.setTcpNoDelay(true);
+                current.setKeepAlive(true);
+                current.setSoTimeout(readTimeoutMillis);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(current.getInputStream(), BUFFER_SIZE));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(current.getOutputStream()));
+                connected = true;
+                log.info("Following replication leader {}", leader);
+                while (running) {
+                    long sequence = ReplicationProtocol.readBatch(in, store);
+                    appliedBatches.incrementAndGet();
+                    out.writeLong(sequence);
+                    out.flush();
+                }
+            } catch (IOException | RuntimeException e) {
+                if (running) {
+                    log.warn("Replication from {} stopped: {}; reconnecting in {} ms", leader, e.toString(),
+                            reconnectInterval.toMillis());
+                }
+            } finally {
+                connected = false;
+            }
+            try {
+                Thread.sleep(reconnectInterval.toMillis());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package com.fetch.receiptprocessor.store.replication;
+
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Streams every receipt stored on this instance to the followers connected to its replication socket.
+ *
+ * Published receipts go into one ring of the last queueCapacity receipts, each at the slot its sequence names, so
+ * ingest threads only claim a sequence and swap a slot and never wait on one another or on a follower. Each
+ * follower has a sender thread that reads the ring in sequence order, writes what it finds as one batch and waits
+ * for the follower to acknowledge it before sending the next, so batches grow with the write rate the same way
+ * WriteAheadLog group commits do. An idle sender sends an empty batch every heartbeatInterval, which tells the
+ * follower the leader is still there and the leader that the follower is.
+ *
+ * A follower that connects is first sent the whole store, with the receipts published meanwhile sent from the ring
+ * between store batches, so a catch-up that takes longer than the ring lasts does not start over. Receipts are
+ * immutable, so one that arrives twice is harmless. A follower whose next receipt has already been overwritten in
+ * the ring is disconnected and catches up again when it reconnects, so a slow follower never holds up ingest.
+ * Followers are only accepted once storeReady completes: receipts replayed from the write-ahead log go into the
+ * store without being published, so a catch-up that started during replay could pass them by.
+ *
+ * A slot is cleared once every follower has acknowledged its receipt, and the whole ring once the last follower
+ * has gone, so published receipts are not kept reachable for longer than replication needs them. A store that
+ * does not retain receipt bodies has none published either.
+ *
+ * Lag is the age of the oldest receipt a follower has not acknowledged yet, zero when every follower is current.
+ */
+public class ReplicationLeader implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicationLeader.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ReceiptStore store;
+    private final CompletableFuture<?> storeReady;
+    private final boolean retainReceipts;
+    private final int maxBatch;
+    private final int socketTimeoutMillis;
+    private final long heartbeatNanos;
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+    private volatile boolean running = true;
+
+    // The last ring.length() receipts published, each at index sequence & mask
+    private final AtomicReferenceArray<ReplicationRecord> ring;
+    private final int mask;
+    private final AtomicLong sequence = new AtomicLong();
+    // Every slot up to this sequence has been cleared
+    private final AtomicLong released = new AtomicLong();
+    private final List<Follower> followers = new CopyOnWriteArrayList<>();
+    // Notified whenever a follower acknowledges a batch or goes away
+    private final Object ackMonitor = new Object();
+    private final AtomicLong ackTimeouts = new AtomicLong();
+
+    public ReplicationLeader(ReceiptStore store, InetSocketAddress address, int maxBatch, int queueCapacity,
+                             Duration socketTimeout, Duration heartbeatInterval) throws IOException {
+        this(store, CompletableFuture.completedFuture(null), true, address, maxBatch, queueCapacity, socketTimeout,
+                heartbeatInterval);
+    }
+
+    public ReplicationLeader(ReceiptStore store, CompletableFuture<?> storeReady, boolean retainReceipts,
+                             InetSocketAddress address, int maxBatch, int queueCapacity, Duration socketTimeout,
+                             Duration heartbeatInterval) throws IOException {
+        this.store = store;
+        this.storeReady = storeReady;
+        this.retainReceipts = retainReceipts;
+        this.maxBatch = maxBatch;
+        this.socketTimeoutMillis = Math.toIntExact(socketTimeout.toMillis());
+        this.heartbeatNanos = heartbeatInterval.toNanos();
+        int capacity = queueCapacity <= 1 ? 1 : Integer.highestOneBit(queueCapacity - 1) << 1;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.setReuseAddress(true);
+        this.serverSocket.bind(address);
+        log.info("Replicating receipts to followers connecting to {}", serverSocket.getLocalSocketAddress());
+
+        this.acceptor = new Thread(this::acceptLoop, "receipt-replication-leader");
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    // Call after the receipt is in the store; returns the sequence to pass to awaitAcknowledged
+    public long publish(ReceiptId receiptId, Receipt receipt, int points, int ruleSetVersion) {
+        long published = sequence.incrementAndGet();
+        // A follower registers before reading the sequence it catches up to, so one that registers after this
+        // check finds the receipt in the store instead
+        if (followers.isEmpty()) {
+            return published;
+        }
+        ReplicationRecord record = new ReplicationRecord(published, receiptId, retainReceipts ? receipt : null,
+                points, ruleSetVersion, System.nanoTime());
+        int index = (int) published & mask;
+        ReplicationRecord previous;
+        do {
+            previous = ring.get(index);
+            // Stalled for a whole lap of the ring: a newer receipt already has the slot
+            if (previous != null && previous.sequence > published) {
+                break;
+            }
+        } while (!ring.compareAndSet(index, previous, record));
+        // The last follower left meanwhile, and one that connects later starts after this receipt
+        if (followers.isEmpty()) {
+            ring.compareAndSet(index, record, null);
+        }
+        for (Follower follower : followers) {
+            follower.wake();
+        }
+        return published;
+    }
+
+    /*
+     * Waits until every follower that has caught up has acknowledged the given sequence. Followers still catching
+     * up are not waited for, and neither is anyone when no follower is connected. Returns false on timeout.
+     */
+    public boolean awaitAcknowledged(long sequence, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (ackMonitor) {
+            while (!acknowledgedByAll(sequence)) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    ackTimeouts.incrementAndGet();
+                    return false;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(ackMonitor, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getFollowerCount() {
+        return followers.size();
+    }
+
+    // Followers that have received the whole store and are only sent new receipts
+    public int getInSyncFollowerCount() {
+        int inSync = 0;
+        for (Follower follower : followers) {
+            if (follower.caughtUp) {
+                inSync++;
+            }
+        }
+        return inSync;
+    }
+
+    public long getSequence() {
+        return sequence.get();
+    }
+
+    // Age of the oldest receipt any follower has yet to acknowledge
+    public Duration getLag() {
+        long now = System.nanoTime();
+        long lag = 0;
+        for (Follower follower : followers) {
+            lag = Math.max(lag, follower.lagNanos(now));
+        }
+        return Duration.ofNanos(lag);
+    }
+
+    // Receipts the furthest-behind follower has yet to acknowledge
+    public long getLagRecords() {
+        long published = getSequence();
+        long lag = 0;
+        for (Follower follower : followers) {
+            lag = Math.max(lag, published - follower.acknowledged);
+        }
+        return lag;
+    }
+
+    public long getAckTimeouts() {
+        return ackTimeouts.get();
+    }
+
+    // Receipts the ring still holds
+    int getRetainedCount() {
+        int retained = 0;
+        for (int i = 0; i < ring.length(); i++) {
+            if (ring.get(i) != null) {
+                retained++;
+            }
+        }
+        return retained;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        acceptor.interrupt();
+        for (Follower follower : followers) {
+            follower.disconnect();
+            follower.wake();
+        }
+        try {
+            acceptor.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean acknowledgedByAll(long sequence) {
+        for (Follower follower : followers) {
+            if (follower.caughtUp && follower.acknowledged < sequence) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Clears the slots of receipts every connected follower has acknowledged, or of every receipt published so far
+     * when none is connected. The sequence is read before the followers, so one that registers afterwards starts
+     * past it and needs none of the cleared receipts.
+     */
+    private void release() {
+        long upTo = sequence.get();
+        for (Follower follower : followers) {
+            upTo = Math.min(upTo, follower.acknowledged);
+        }
+        long from;
+        do {
+            from = released.get();
+            if (upTo <= from) {
+                return;
+            }
+        } while (!released.compareAndSet(from, upTo));
+        for (long cleared = Math.max(from + 1, upTo - mask); cleared <= upTo; cleared++) {
+            int index = (int) cleared & mask;
+            ReplicationRecord record = ring.get(index);
+            if (record != null && record.sequence == cleared) {
+                ring.compareAndSet(index, record, null);
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        if (!awaitStoreReady()) {
+            return;
+        }
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                socket.setKeepAlive(true);
+                socket.setSoTimeout(socketTimeoutMillis);
+                Thread sender = new Thread(new Follower(socket), "receipt-replication-sender-" + socket.getPort());
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Could not accept a replication follower", e);
+                }
+            }
+        }
+    }
+
+    private boolean awaitStoreReady() {
+        if (!storeReady.isDone()) {
+            log.info("Accepting replication followers once the store has recovered");
+        }
+        try {
+            storeReady.get();
+            return true;
+        } catch (InterruptedException e) {
+            // Closed before the store recovered
+            return false;
+        } catch (ExecutionException | CancellationException e) {
+            log.error("Not accepting replication followers: the store did not recover", e);
+            return false;
+        }
+    }
+
+    private final class Follower implements Runnable {
+
+        private final Socket socket;
+        private volatile Thread sender;
+        // Sequence of the last receipt taken from the ring for this follower
+        private volatile long sent;
+        private volatile long acknowledged;
+        private volatile boolean caughtUp;
+        // System.nanoTime() of the oldest receipt in the batch awaiting acknowledgment, 0 when none is
+        private volatile long inFlightNanos;
+
+        Follower(Socket socket) {
+            this.socket = socket;
+        }
+
+        void wake() {
+            Thread thread = sender;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        long lagNanos(long now) {
+            long oldest = inFlightNanos;
+            if (oldest == 0) {
+                long next = sent + 1;
+                ReplicationRecord head = ring.get((int) next & mask);
+                oldest = head != null && head.sequence == next ? head.publishedNanos : 0;
+            }
+            return oldest == 0 ? 0 : now - oldest;
+        }
+
+        void disconnect() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.debug("Closing replication follower socket failed", e);
+            }
+        }
+
+        @Override
+        public void run() {
+            sender = Thread.currentThread();
+            try (socket) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                followers.add(this);
+                sent = sequence.get();
+                log.info("Replication follower {} connected; sending {} stored receipts",
+                        socket.getRemoteSocketAddress(), store.size());
+                catchUp(out, in);
+                caughtUp = true;
+
+                List<ReplicationRecord> batch = new ArrayList<>(maxBatch);
+                long lastSent = System.nanoTime();
+                while (running) {
+                    if (collect(batch)) {
+                        inFlightNanos = batch.get(0).publishedNanos;
+                        send(out, in, batch, sent);
+                        inFlightNanos = 0;
+                        batch.clear();
+                        lastSent = System.nanoTime();
+                        continue;
+                    }
+                    long idle = System.nanoTime() - lastSent;
+                    if (idle >= heartbeatNanos) {
+                        send(out, in, batch, sent);
+                        lastSent = System.nanoTime();
+                    } else {
+                        LockSupport.parkNanos(this, heartbeatNanos - idle);
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Replication follower {} disconnected: {}", socket.getRemoteSocketAddress(), e.toString());
+                }
+            } finally {
+                followers.remove(this);
+                release();
+                synchronized (ackMonitor) {
+                    ackMonitor.notifyAll();
+                }
+            }
+        }
+
+        /*
+         * The store holds every receipt up to the sequence read when this follower registered. The ones published
+         * since are taken from the ring after each store batch, before the ring can overwrite them, but only up to
+         * the sequence published at that point, so a steady stream of new receipts cannot stall the store.
+         */
+        private void catchUp(DataOutputStream out, DataInputStream in) throws IOException {
+            List<ReplicationRecord> batch = new ArrayList<>(maxBatch);
+            List<ReplicationRecord> published = new ArrayList<>(maxBatch);
+            try {
+                store.forEach((receiptId, receipt, points, ruleSetVersion) -> {
+                    batch.add(new ReplicationRecord(0, receiptId, receipt, points, ruleSetVersion, 0));
+                    if (batch.size() == maxBatch) {
+                        try {
+                            send(out, in, batch, 0);
+                            batch.clear();
+                            long target = sequence.get();
+                            while (sent < target && collect(published)) {
+                                send(out, in, published, 0);
+                                published.clear();
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            collect(batch);
+            send(out, in, batch, sent);
+        }
+
+        // Adds the receipts published after the last one sent, in sequence order, until batch holds maxBatch
+        private boolean collect(List<ReplicationRecord> batch) throws IOException {
+            while (batch.size() < maxBatch) {
+                long next = sent + 1;
+                ReplicationRecord record = ring.get((int) next & mask);
+                if (record == null || record.sequence < next) {
+                    // Not published yet, or its publisher has not filled the slot so far
+                    break;
+                }
+                if (record.sequence > next) {
+                    throw new IOException("more than " + ring.length() + " receipts behind");
+                }
+                batch.add(record);
+                sent = next;
+            }
+            return !batch.isEmpty();
+        }
+
+        private void send(DataOutputStream out, DataInputStream in, List<ReplicationRecord> batch, long lastSequence)
+                throws IOException {
+            ReplicationProtocol.writeBatch(out, batch, lastSequence);
+            long applied = in.readLong();
+            if (applied > acknowledged) {
+                acknowledged = applied;
+                release();
+            }
+            synchronized (ackMonitor) {
+                ackMonitor.notifyAll();
+            }
+        }
+    }
+}
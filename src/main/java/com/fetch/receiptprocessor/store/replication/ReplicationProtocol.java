@@ -0,0 +1,75 @@
+package com.fetch.receiptprocessor.store.replication;
+
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.store.ReceiptCodec;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/*
+ * Wire format between a ReplicationLeader and its followers.
+ *
+ * The leader sends batches, each
+ *   [record count int][last sequence long] then per record [receipt msb long][receipt lsb long][points int]
+ *   [rule-set version int][body length int, -1 without a body][body]
+ * where the body is ReceiptCodec encoded. The follower answers every batch with the [last sequence long] it has
+ * applied. Catch-up batches, sent from the leader's store when a follower connects, carry sequence 0 except the
+ * last one, which carries the sequence the follower is then up to date with. An idle leader sends empty batches
+ * as heartbeats.
+ */
+final class ReplicationProtocol {
+
+    private ReplicationProtocol() {
+    }
+
+    static void writeBatch(DataOutputStream out, List<ReplicationRecord> records, long lastSequence)
+            throws IOException {
+        out.writeInt(records.size());
+        out.writeLong(lastSequence);
+        for (ReplicationRecord record : records) {
+            out.writeLong(record.receiptId.getMostSignificantBits());
+            out.writeLong(record.receiptId.getLeastSignificantBits());
+            out.writeInt(record.points);
+            out.writeInt(record.ruleSetVersion);
+            if (record.receipt == null) {
+                out.writeInt(-1);
+            } else {
+                ByteBuffer body = ByteBuffer.allocate(ReceiptCodec.encodedSize(record.receipt));
+                ReceiptCodec.encode(record.receipt, body, 0);
+                out.writeInt(body.capacity());
+                out.write(body.array());
+            }
+        }
+        out.flush();
+    }
+
+    // Applies the batch to the store in one putAll and returns its last sequence
+    static long readBatch(DataInputStream in, ReceiptStore store) throws IOException {
+        int count = in.readInt();
+        long lastSequence = in.readLong();
+        ReceiptId[] receiptIds = new ReceiptId[count];
+        Receipt[] receipts = new Receipt[count];
+        int[] points = new int[count];
+        int[] ruleSetVersions = new int[count];
+        for (int i = 0; i < count; i++) {
+            receiptIds[i] = new ReceiptId(in.readLong(), in.readLong());
+            points[i] = in.readInt();
+            ruleSetVersions[i] = in.readInt();
+            int bodyLength = in.readInt();
+            if (bodyLength >= 0) {
+                byte[] body = new byte[bodyLength];
+                in.readFully(body);
+                receipts[i] = ReceiptCodec.decode(ByteBuffer.wrap(body), 0);
+            }
+        }
+        if (count > 0) {
+            store.putAll(receiptIds, receipts, points, ruleSetVersions, count);
+        }
+        return lastSequence;
+    }
+}
@@ -0,0 +1,26 @@
+package com.fetch.receiptprocessor.store.replication;
+
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+
+// One stored receipt on its way to the followers; receipt is null when the store keeps no bodies
+final class ReplicationRecord {
+
+    final long sequence;
+    final ReceiptId receiptId;
+    final Receipt receipt;
+    final int points;
+    final int ruleSetVersion;
+    // System.nanoTime() when the leader stored it, for the lag of followers that have not acknowledged it
+    final long publishedNanos;
+
+    ReplicationRecord(long sequence, ReceiptId receiptId, Receipt receipt, int points, int ruleSetVersion,
+                      long publishedNanos) {
+        this.sequence = sequence;
+        this.receiptId = receiptId;
+        this.receipt = receipt;
+        this.points = points;
+        this.ruleSetVersion = ruleSetVersion;
+        this.publishedNanos = publishedNanos;
+    }
+}
@@ -0,0 +1,74 @@
+package com.fetch.receiptprocessor.store.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * A file region mapped as a run of MappedByteBuffers, addressed with long offsets so it can exceed the 2 GB limit
+ * of a single mapping. Callers keep fixed-size values from straddling chunks by aligning them to a power of two.
+ */
+final class MappedRegion {
+
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_BYTES = 1L << CHUNK_BITS;
+    private static final long CHUNK_MASK = CHUNK_BYTES - 1;
+
+    private final MappedByteBuffer[] chunks;
+
+    private MappedRegion(MappedByteBuffer[] chunks) {
+        this.chunks = chunks;
+    }
+
+    // Mapping read-write grows the file to cover the region
+    static MappedRegion map(FileChannel channel, FileChannel.MapMode mode, long position, long size)
+            throws IOException {
+        MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + CHUNK_BYTES - 1) >>> CHUNK_BITS)];
+        for (int i = 0; i < chunks.length; i++) {
+            long offset = (long) i << CHUNK_BITS;
+            chunks[i] = channel.map(mode, position + offset, Math.min(CHUNK_BYTES, size - offset));
+        }
+        return new MappedRegion(chunks);
+    }
+
+    long getLong(long offset) {
+        return chunks[(int) (offset >>> CHUNK_BITS)].getLong((int) (offset & CHUNK_MASK));
+    }
+
+    int getInt(long offset) {
+        return chunks[(int) (offset >>> CHUNK_BITS)].getInt((int) (offset & CHUNK_MASK));
+    }
+
+    void putLong(long offset, long value) {
+        chunks[(int) (offset >>> CHUNK_BITS)].putLong((int) (offset & CHUNK_MASK), value);
+    }
+
+    void putInt(long offset, int value) {
+        chunks[(int) (offset >>> CHUNK_BITS)].putInt((int) (offset & CHUNK_MASK), value);
+    }
+
+    // A view of the bytes when they sit in one chunk, otherwise a heap copy
+    ByteBuffer slice(long offset, int length) {
+        int chunk = (int) (offset >>> CHUNK_BITS);
+        int chunkOffset = (int) (offset & CHUNK_MASK);
+        if (chunkOffset + (long) length <= chunks[chunk].capacity()) {
+            return chunks[chunk].slice(chunkOffset, length);
+        }
+        ByteBuffer copy = ByteBuffer.allocate(length);
+        while (copy.hasRemaining()) {
+            int count = Math.min(copy.remaining(), chunks[chunk].capacity() - chunkOffset);
+            copy.put(copy.position(), chunks[chunk], chunkOffset, count);
+            copy.position(copy.position() + count);
+            chunk++;
+            chunkOffset = 0;
+        }
+        return copy.flip();
+    }
+
+    void force() {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.fetch.receiptprocessor.store.snapshot;
+
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.store.ReceiptCodec;
+import com.fetch.receiptprocessor.store.ReceiptIdIndex;
+import com.fetch.receiptprocessor.store.ReceiptLookup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/*
+ * Point-in-time copy of a receipt store laid out as an open-addressing hash table, so a restart maps the file and
+ * answers lookups straight from the page cache instead of rebuilding the store record by record.
+ *
+ * File layout, all big-endian:
+ *   header (64 bytes): magic long, format version int, flags int, entry count long, slot count long,
+ *                      write-ahead log sequence long, body bytes long, creation time millis long
+ *   slots (40 bytes each): receipt msb long, receipt lsb long, points + 1 int, body length int, body offset long,
+ *                          rule-set version int, 4 bytes unused
+ *   bodies: ReceiptCodec encoded receipts, addressed by the slot body offset
+ * A slot whose points field is 0 is empty, so a freshly extended (zero-filled) file is an empty table. Slots are
+ * probed linearly from ReceiptIdIndex.hash masked to the slot count.
+ *
+ * The write-ahead log sequence is the first segment the snapshot does not cover; recovery replays from there.
+ * Version 1 files have 32-byte slots without the rule-set version and are still read, as UNVERSIONED.
+ */
+public final class ReceiptSnapshot implements ReceiptLookup {
+
+    private static final Logger log = LoggerFactory.getLogger(ReceiptSnapshot.class);
+
+    private static final long MAGIC = 0x52435054534e4150L; // "RCPTSNAP"
+    private static final int VERSION = 2;
+    private static final int FORMAT_WITHOUT_RULE_SET_VERSION = 1;
+    private static final int FLAG_BODIES = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 40;
+    private static final int SLOT_BYTES_WITHOUT_RULE_SET_VERSION = 32;
+    private static final int NO_BODY = -1;
+    private static final double LOAD_FACTOR = 0.5;
+    // A store that grows while being copied can outrun the sizing; past this fill the table is rebuilt larger
+    private static final double MAX_FILL = 0.85;
+
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+
+    private final Path file;
+    private final long entryCount;
+    private final long slotMask;
+    private final int slotBytes;
+    private final long walSequence;
+    private final MappedRegion slots;
+    private final MappedRegion bodies;
+
+    private ReceiptSnapshot(Path file, long entryCount, long slotCount, int slotBytes, long walSequence,
+                            MappedRegion slots, MappedRegion bodies) {
+        this.file = file;
+        this.entryCount = entryCount;
+        this.slotMask = slotCount - 1;
+        this.slotBytes = slotBytes;
+        this.walSequence = walSequence;
+        this.slots = slots;
+        this.bodies = bodies;
+    }
+
+    public static ReceiptSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            int read = 0;
+            while (header.hasRemaining() && read >= 0) {
+                read = channel.read(header, header.position());
+            }
+            if (header.hasRemaining() || header.getLong(0) != MAGIC) {
+                throw new IOException(file + " is not a receipt snapshot");
+            }
+            int version = header.getInt(8);
+            if (version != VERSION && version != FORMAT_WITHOUT_RULE_SET_VERSION) {
+                throw new IOException(file + " has unsupported snapshot version " + version);
+            }
+            int slotBytes = version == VERSION ? SLOT_BYTES : SLOT_BYTES_WITHOUT_RULE_SET_VERSION;
+            long entryCount = header.getLong(16);
+            long slotCount = header.getLong(24);
+            long walSequence = header.getLong(32);
+            long bodyBytes = header.getLong(40);
+            long bodiesStart = HEADER_BYTES + slotCount * slotBytes;
+            if (Long.bitCount(slotCount) != 1 || fileSize < bodiesStart + bodyBytes) {
+                throw new IOException(file + " is incomplete");
+            }
+            // The mappings stay valid after the channel is closed
+            MappedRegion slots = MappedRegion.map(channel, FileChannel.MapMode.READ_ONLY, HEADER_BYTES,
+                    slotCount * slotBytes);
+            MappedRegion bodies = MappedRegion.map(channel, FileChannel.MapMode.READ_ONLY, bodiesStart, bodyBytes);
+            return new ReceiptSnapshot(file, entryCount, slotCount, slotBytes, walSequence, slots, bodies);
+        }
+    }
+
+    // Opens the newest readable snapshot in the directory, skipping any that are damaged
+    public static Optional<ReceiptSnapshot> openLatest(Path directory) throws IOException {
+        for (Path candidate : list(directory)) {
+            try {
+                return Optional.of(open(candidate));
+            } catch (IOException e) {
+                log.warn("Skipping unreadable snapshot {}: {}", candidate, e.getMessage());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /*
+     * Copies the source into a new snapshot file in the directory and returns its path. The file is written
+     * under a temporary name and renamed into place, so a crash mid-write never leaves a half-written snapshot
+     * where openLatest would find it.
+     */
+    public static Path write(Path directory, long walSequence, ReceiptLookup source, boolean withBodies)
+            throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(fileName(walSequence));
+        Path temporary = directory.resolve(fileName(walSequence) + ".tmp");
+        long slotCount = slotCountFor(source.size());
+        try {
+            while (!writeTable(temporary, walSequence, source, withBodies, slotCount)) {
+                slotCount <<= 2;
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return target;
+    }
+
+    // Newest first
+    public static List<Path> list(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted(Comparator.reverseOrder())
+                    .toList();
+        }
+    }
+
+    @Override
+    public int getPoints(ReceiptId receiptId) {
+        long slot = find(receiptId.getMostSignificantBits(), receiptId.getLeastSignificantBits());
+        return slot < 0 ? NOT_FOUND : slots.getInt(slot + 16) - 1;
+    }
+
+    @Override
+    public Receipt getReceipt(ReceiptId receiptId) {
+        long slot = find(receiptId.getMostSignificantBits(), receiptId.getLeastSignificantBits());
+        return slot < 0 ? null : readBody(slot);
+    }
+
+    @Override
+    public int getRuleSetVersion(ReceiptId receiptId) {
+        long slot = find(receiptId.getMostSignificantBits(), receiptId.getLeastSignificantBits());
+        return slot < 0 ? UNVERSIONED : readRuleSetVersion(slot);
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, entryCount);
+    }
+
+    @Override
+    public void forEach(EntryConsumer consumer) {
+        for (long slot = 0; slot <= slotMask * slotBytes; slot += slotBytes) {
+            int pointsPlusOne = slots.getInt(slot + 16);
+            if (pointsPlusOne != 0) {
+                consumer.accept(new ReceiptId(slots.getLong(slot), slots.getLong(slot + 8)), readBody(slot),
+                        pointsPlusOne - 1, readRuleSetVersion(slot));
+            }
+        }
+    }
+
+    public long getWalSequence() {
+        return walSequence;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    // Byte offset of the slot holding the id, or -1
+    private long find(long msb, long lsb) {
+        long index = ReceiptIdIndex.hash(msb, lsb) & slotMask;
+        for (long probes = 0; probes <= slotMask; probes++) {
+            long slot = index * slotBytes;
+            if (slots.getInt(slot + 16) == 0) {
+                return -1;
+            }
+            if (slots.getLong(slot) == msb && slots.getLong(slot + 8) == lsb) {
+                return slot;
+            }
+            index = (index + 1) & slotMask;
+        }
+        return -1;
+    }
+
+    private Receipt readBody(long slot) {
+        int length = slots.getInt(slot + 20);
+        return length == NO_BODY ? null : ReceiptCodec.decode(bodies.slice(slots.getLong(slot + 24), length), 0);
+    }
+
+    private int readRuleSetVersion(long slot) {
+        return slotBytes == SLOT_BYTES ? slots.getInt(slot + 32) : UNVERSIONED;
+    }
+
+    // Returns false when the table filled up and has to be rebuilt with more slots
+    private static boolean writeTable(Path path, long walSequence, ReceiptLookup source, boolean withBodies,
+                                      long slotCount) throws IOException {
+        long bodiesStart = HEADER_BYTES + slotCount * SLOT_BYTES;
+        long maxEntries = (long) (slotCount * MAX_FILL);
+        long slotMask = slotCount - 1;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedRegion slots = MappedRegion.map(channel, FileChannel.MapMode.READ_WRITE, HEADER_BYTES,
+                    slotCount * SLOT_BYTES);
+            long[] counts = new long[2]; // entries, body bytes
+            ByteBuffer[] scratch = {ByteBuffer.allocate(1024)};
+            try {
+                source.forEach((receiptId, receipt, points, ruleSetVersion) -> {
+                    long msb = receiptId.getMostSignificantBits();
+                    long lsb = receiptId.getLeastSignificantBits();
+                    long index = ReceiptIdIndex.hash(msb, lsb) & slotMask;
+                    long slot = index * SLOT_BYTES;
+                    while (slots.getInt(slot + 16) != 0
+                            && (slots.getLong(slot) != msb || slots.getLong(slot + 8) != lsb)) {
+                        index = (index + 1) & slotMask;
+                        slot = index * SLOT_BYTES;
+                    }
+                    if (slots.getInt(slot + 16) == 0) {
+                        if (counts[0] == maxEntries) {
+                            throw new TableFullException();
+                        }
+                        counts[0]++;
+                    }
+                    slots.putLong(slot, msb);
+                    slots.putLong(slot + 8, lsb);
+                    slots.putInt(slot + 16, points + 1);
+                    slots.putInt(slot + 32, ruleSetVersion);
+                    if (withBodies && receipt != null) {
+                        int size = ReceiptCodec.encodedSize(receipt);
+                        if (scratch[0].capacity() < size) {
+                            scratch[0] = ByteBuffer.allocate(Math.max(size, scratch[0].capacity() * 2));
+                        }
+                        ByteBuffer body = scratch[0].clear().limit(size);
+                        ReceiptCodec.encode(receipt, body, 0);
+                        writeFully(channel, body, bodiesStart + counts[1]);
+                        slots.putInt(slot + 20, size);
+                        slots.putLong(slot + 24, counts[1]);
+                        counts[1] += size;
+                    } else {
+                        slots.putInt(slot + 20, NO_BODY);
+                    }
+                });
+            } catch (TableFullException e) {
+                return false;
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            slots.force();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putLong(0, MAGIC);
+            header.putInt(8, VERSION);
+            header.putInt(12, withBodies ? FLAG_BODIES : 0);
+            header.putLong(16, counts[0]);
+            header.putLong(24, slotCount);
+            header.putLong(32, walSequence);
+            header.putLong(40, counts[1]);
+            header.putLong(48, System.currentTimeMillis());
+            writeFully(channel, header, 0);
+            channel.force(true);
+            return true;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) {
+        try {
+            long offset = position;
+            while (buffer.hasRemaining()) {
+                offset += channel.write(buffer, offset);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long slotCountFor(long entries) {
+        long wanted = Math.max(16, (long) Math.ceil(entries / LOAD_FACTOR));
+        return Long.highestOneBit(wanted - 1) << 1;
+    }
+
+    private static String fileName(long walSequence) {
+        return String.format("%s%016d%s", PREFIX, walSequence, SUFFIX);
+    }
+
+    private static final class TableFullException extends RuntimeException {
+        TableFullException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.fetch.receiptprocessor.store.snapshot;
+
+import com.fetch.receiptprocessor.store.wal.DurableReceiptStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Periodically snapshots a durable store and trims the write-ahead log behind it.
+ *
+ * A snapshot seals the current log segment (briefly waiting for in-flight puts), then copies the store into a new
+ * snapshot file while requests keep being served. Once the file is in place, log segments and snapshots older than
+ * it are deleted, so restart cost stays bounded by the snapshot interval rather than the life of the data.
+ */
+public class SnapshotManager implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotManager.class);
+
+    private final DurableReceiptStore store;
+    private final Path directory;
+    private final boolean withBodies;
+    private final boolean snapshotOnClose;
+    private ScheduledExecutorService scheduler;
+
+    private volatile Duration lastDuration = Duration.ZERO;
+    private volatile long lastEntries;
+
+    public SnapshotManager(DurableReceiptStore store, Path directory, boolean withBodies, boolean snapshotOnClose) {
+        this.store = store;
+        this.directory = directory;
+        this.withBodies = withBodies;
+        this.snapshotOnClose = snapshotOnClose;
+    }
+
+    public synchronized void start(Duration interval) {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "receipt-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (IOException | RuntimeException e) {
+                log.error("Receipt snapshot failed", e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Takes a snapshot now. Skipped while startup replay is still running, since the store does not yet hold
+     * everything the sealed log segments do.
+     */
+    public synchronized Optional<Path> snapshot() throws IOException {
+        if (!store.getRecovered().isDone() || store.getRecovered().isCompletedExceptionally()) {
+            log.debug("Skipping snapshot until write-ahead log replay completes");
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        long walSequence = store.checkpoint();
+        Path file = ReceiptSnapshot.write(directory, walSequence, store, withBodies);
+        store.getWriteAheadLog().deleteSegmentsBefore(walSequence);
+        List<Path> snapshots = ReceiptSnapshot.list(directory);
+        for (Path older : snapshots.subList(Math.min(1, snapshots.size()), snapshots.size())) {
+            Files.deleteIfExists(older);
+        }
+        lastDuration = Duration.ofNanos(System.nanoTime() - start);
+        lastEntries = store.size();
+        log.info("Wrote receipt snapshot {} in {} ms", file.getFileName(), lastDuration.toMillis());
+        return Optional.of(file);
+    }
+
+    public Duration getLastDuration() {
+        return lastDuration;
+    }
+
+    public long getLastEntries() {
+        return lastEntries;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (snapshotOnClose) {
+            snapshot();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.fetch.receiptprocessor.store.snapshot;
+
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+
+/*
+ * Serves a read-only mapped snapshot underneath a live store. New receipts go to the live store, which owns the
+ * write path; lookups try it first and fall back to the snapshot, so a restarted instance answers for everything
+ * the snapshot holds as soon as the file is mapped, without copying it onto the heap.
+ *
+ * Snapshot entries are never evicted, whatever bounds the live store applies.
+ */
+public class SnapshotReceiptStore implements ReceiptStore {
+
+    private final ReceiptStore live;
+    private final ReceiptSnapshot snapshot;
+
+    public SnapshotReceiptStore(ReceiptStore live, ReceiptSnapshot snapshot) {
+        this.live = live;
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public void put(ReceiptId receiptId, Receipt receipt, int points, int ruleSetVersion) {
+        live.put(receiptId, receipt, points, ruleSetVersion);
+    }
+
+    @Override
+    public void putAll(ReceiptId[] receiptIds, Receipt[] receipts, int[] points, int[] ruleSetVersions, int count) {
+        live.putAll(receiptIds, receipts, points, ruleSetVersions, count);
+    }
+
+    @Override
+    public int getPoints(ReceiptId receiptId) {
+        int points = live.getPoints(receiptId);
+        return points != NOT_FOUND ? points : snapshot.getPoints(receiptId);
+    }
+
+    @Override
+    public Receipt getReceipt(ReceiptId receiptId) {
+        Receipt receipt = live.getReceipt(receiptId);
+        return receipt != null ? receipt : snapshot.getReceipt(receiptId);
+    }
+
+    @Override
+    public int getRuleSetVersion(ReceiptId receiptId) {
+        return live.getPoints(receiptId) != NOT_FOUND
+                ? live.getRuleSetVersion(receiptId)
+                : snapshot.getRuleSetVersion(receiptId);
+    }
+
+    // Approximate: an id replayed from the log after the snapshot was taken can be counted twice
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, (long) live.size() + snapshot.size());
+    }
+
+    // Snapshot entries first, so a live entry for the same id is visited after it and wins in a copy
+    @Override
+    public void forEach(EntryConsumer consumer) {
+        snapshot.forEach(consumer);
+        live.forEach(consumer);
+    }
+
+    public ReceiptStore getLive() {
+        return live;
+    }
+
+    public ReceiptSnapshot getSnapshot() {
+        return snapshot;
+    }
+}
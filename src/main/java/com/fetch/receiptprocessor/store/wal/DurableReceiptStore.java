@@ -0,0 +1,184 @@
+package com.fetch.receiptprocessor.store.wal;
+
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Makes another store durable by logging every put to a WriteAheadLog before applying it.
+ * A put returns only after its record is on disk, so an id handed to a client survives a restart.
+ * Opening the store replays the log into the delegate, either before serving or in the background when a snapshot
+ * already answers most lookups.
+ */
+public class DurableReceiptStore implements ReceiptStore, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(DurableReceiptStore.class);
+
+    private final ReceiptStore delegate;
+    private final WriteAheadLog writeAheadLog;
+    private final boolean logBodies;
+
+    // Puts hold the read side across log append and apply, so a checkpoint sees every logged record applied
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+
+    private volatile Duration replayDuration = Duration.ZERO;
+    private volatile long replayedRecords;
+    private final CompletableFuture<Void> recovered = new CompletableFuture<>();
+
+    public DurableReceiptStore(ReceiptStore delegate, WriteAheadLog writeAheadLog, boolean logBodies) {
+        this.delegate = delegate;
+        this.writeAheadLog = writeAheadLog;
+        this.logBodies = logBodies;
+    }
+
+    // Rebuilds the delegate from the whole log; call once before the store is used
+    public void recover(int replayThreads) throws IOException {
+        recover(0, replayThreads);
+    }
+
+    // Rebuilds the delegate from the segments from fromSequence on, the ones a loaded snapshot does not cover
+    public void recover(long fromSequence, int replayThreads) throws IOException {
+        try {
+            long start = System.nanoTime();
+            replayedRecords = writeAheadLog.replay(fromSequence, replayThreads, delegate::put);
+            replayDuration = Duration.ofNanos(System.nanoTime() - start);
+            log.info("Replayed {} receipts from the write-ahead log in {} ms", replayedRecords,
+                    replayDuration.toMillis());
+            recovered.complete(null);
+        } catch (IOException | RuntimeException e) {
+            recovered.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // Replays on a background thread; the store accepts puts and lookups meanwhile
+    public CompletableFuture<Void> recoverInBackground(long fromSequence, int replayThreads) {
+        Thread replay = new Thread(() -> {
+            try {
+                recover(fromSequence, replayThreads);
+            } catch (IOException | RuntimeException e) {
+                log.error("Write-ahead log replay failed", e);
+            }
+        }, "receipt-wal-replay");
+        replay.setDaemon(true);
+        replay.start();
+        return recovered;
+    }
+
+    // Completes once replay has finished
+    public CompletableFuture<Void> getRecovered() {
+        return recovered;
+    }
+
+    /*
+     * Waits for in-flight puts, then seals the current log segment. Every record in the segments before the
+     * returned sequence is applied to the delegate, so a copy of the delegate taken afterwards covers them.
+     */
+    public long checkpoint() {
+        checkpointLock.writeLock().lock();
+        try {
+            return writeAheadLog.rotate().join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Write-ahead log could not be rotated", e.getCause());
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(ReceiptId receiptId, Receipt receipt, int points, int ruleSetVersion) {
+        checkpointLock.readLock().lock();
+        try {
+            try {
+                writeAheadLog.append(receiptId, logBodies ? receipt : null, points, ruleSetVersion).join();
+            } catch (CompletionException e) {
+                throw new IllegalStateException("Receipt could not be logged", e.getCause());
+            }
+            delegate.put(receiptId, receipt, points, ruleSetVersion);
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+    }
+
+    // Queues every record before waiting, so the whole batch normally lands in a single group commit
+    @Override
+    public void putAll(ReceiptId[] receiptIds, Receipt[] receipts, int[] points, int[] ruleSetVersions, int count) {
+        checkpointLock.readLock().lock();
+        try {
+            CompletableFuture<?>[] appends = new CompletableFuture<?>[count];
+            for (int i = 0; i < count; i++) {
+                appends[i] = writeAheadLog.append(receiptIds[i], logBodies ? receipts[i] : null, points[i],
+                        ruleSetVersions[i]);
+            }
+            Throwable failure = null;
+            for (int i = 0; i < count; i++) {
+                try {
+                    appends[i].join();
+                    delegate.put(receiptIds[i], receipts[i], points[i], ruleSetVersions[i]);
+                } catch (CompletionException e) {
+                    failure = e.getCause();
+                }
+            }
+            if (failure != null) {
+                throw new IllegalStateException("Receipts could not be logged", failure);
+            }
+        } finally {
+            checkpointLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int getPoints(ReceiptId receiptId) {
+        return delegate.getPoints(receiptId);
+    }
+
+    @Override
+    public Receipt getReceipt(ReceiptId receiptId) {
+        return delegate.getReceipt(receiptId);
+    }
+
+    @Override
+    public int getRuleSetVersion(ReceiptId receiptId) {
+        return delegate.getRuleSetVersion(receiptId);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public void forEach(EntryConsumer consumer) {
+        delegate.forEach(consumer);
+    }
+
+    public Duration getReplayDuration() {
+        return replayDuration;
+    }
+
+    public long getReplayedRecords() {
+        return replayedRecords;
+    }
+
+    public ReceiptStore getDelegate() {
+        return delegate;
+    }
+
+    public WriteAheadLog getWriteAheadLog() {
+        return writeAheadLog;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writeAheadLog.close();
+    }
+}
@@ -0,0 +1,499 @@
+package com.fetch.receiptprocessor.store.wal;
+
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.store.ReceiptCodec;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/*
+ * Append-only, segment-rotated log of ingested receipts.
+ *
+ * Callers hand records to a single writer thread, which drains everything queued since its last pass, writes it
+ * with one gathering write and issues one fsync for the whole group. Concurrent writers therefore share fsyncs
+ * instead of paying one each, and every caller is released only once its record is durable.
+ *
+ * Segment files are named receipts-<sequence>.wal. Each record is
+ *   [payload length int][CRC32C of payload int][receipt msb long][receipt lsb long][points int][flags byte]
+ *   [rule-set version int][body]
+ * where flag bit 0 marks a body, which is ReceiptCodec encoded, and bit 1 a rule-set version. Each is only present
+ * when its flag is set, so records logged before versions were kept replay as UNVERSIONED.
+ *
+ * Every open starts a fresh segment, so the segments left by earlier runs are sealed: replay only ever reads files
+ * the writer no longer touches and can run while new receipts are appended.
+ *
+ * A failed write may leave a partial record behind. The writer cuts the segment back to where the batch began,
+ * starts a new one and writes the batch once more, so a torn record can only ever end the newest segment, after a
+ * crash. Appends are rejected for good only when the segment cannot be cut back.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    private static final String SEGMENT_PREFIX = "receipts-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int PAYLOAD_FIXED_BYTES = 8 + 8 + 4 + 1;
+    private static final int FLAG_BODY = 1;
+    private static final int FLAG_RULE_SET_VERSION = 1 << 1;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final boolean fsync;
+    private final int maxBatch;
+
+    private final BlockingQueue<PendingAppend> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+    // Set when a failed write could not be cut back; the segment may end in a partial record, so nothing follows it
+    private volatile Exception failure;
+    private final AtomicLong failedWrites = new AtomicLong();
+
+    private FileChannel segment;
+    // Written only by the writer thread once it is running
+    private volatile long segmentSequence;
+    // Size of the current segment before the batch being written
+    private long batchStart;
+    // First segment of this run; everything before it is sealed
+    private final long openedSequence;
+    private final AtomicLong syncCount = new AtomicLong();
+
+    public WriteAheadLog(Path directory, long segmentSize, boolean fsync, int maxBatch) throws IOException {
+        this(directory, segmentSize, fsync, maxBatch, 1);
+    }
+
+    /*
+     * minimumSequence keeps numbering ahead of what a snapshot already covers, so a log directory that was cleared
+     * underneath a snapshot does not reuse sequence numbers the snapshot claims.
+     */
+    public WriteAheadLog(Path directory, long segmentSize, boolean fsync, int maxBatch, long minimumSequence)
+            throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+        this.maxBatch = maxBatch;
+        this.queue = new LinkedBlockingQueue<>(maxBatch * 64);
+
+        List<Path> segments = segments();
+        long lastSequence = 0;
+        if (!segments.isEmpty()) {
+            Path last = segments.get(segments.size() - 1);
+            lastSequence = sequenceOf(last);
+            // A restart without writes would otherwise leave an empty segment behind every time
+            if (Files.size(last) == 0) {
+                Files.delete(last);
+            }
+        }
+        openSegment(Math.max(lastSequence + 1, minimumSequence));
+        this.openedSequence = segmentSequence;
+
+        this.writer = new Thread(this::writeLoop, "receipt-wal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /*
+     * Replays the records of every sealed segment from fromSequence on, with up to the given number of threads and
+     * one segment per task, so the consumer is called concurrently. Returns the number of records replayed.
+     *
+     * Only the newest sealed segment may end in a torn record, left by a crash mid-append and never acknowledged;
+     * it is cut off so the segment is whole for later runs. Every earlier segment was fsynced and acknowledged in
+     * full, so a corrupt record there fails replay rather than losing receipts silently.
+     */
+    public long replay(long fromSequence, int threads, ReceiptStore.EntryConsumer consumer) throws IOException {
+        List<Path> sealed = segments().stream()
+                .filter(path -> sequenceOf(path) < openedSequence)
+                .toList();
+        List<Path> segments = sealed.stream()
+                .filter(path -> sequenceOf(path) >= fromSequence)
+                .toList();
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        Path newest = sealed.get(sealed.size() - 1);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, segments.size())));
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (Path path : segments) {
+                results.add(executor.submit(() -> replaySegment(path, consumer)));
+            }
+            long records = 0;
+            for (int i = 0; i < segments.size(); i++) {
+                Path path = segments.get(i);
+                long[] result = results.get(i).get();
+                records += result[0];
+                long validBytes = result[1];
+                if (validBytes < Files.size(path)) {
+                    if (!path.equals(newest)) {
+                        throw new IOException("Corrupt record in sealed segment " + path + " at byte " + validBytes);
+                    }
+                    log.warn("Dropping a torn record at the end of {} after byte {}", path, validBytes);
+                    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                        channel.truncate(validBytes);
+                    }
+                }
+            }
+            return records;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while replaying the write-ahead log", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to replay the write-ahead log", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Completes once the record has been written, and fsynced when fsync is enabled
+    public CompletableFuture<Void> append(ReceiptId receiptId, Receipt body, int points, int ruleSetVersion) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Write-ahead log is closed"));
+        }
+        PendingAppend pending = new PendingAppend(encode(receiptId, body, points, ruleSetVersion));
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        abandonIfClosed(pending);
+        return pending.done;
+    }
+
+    /*
+     * Seals the current segment and starts the next one, ordered after every append queued before the call.
+     * Completes with the sequence of the new segment.
+     */
+    public CompletableFuture<Long> rotate() {
+        if (!running) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Write-ahead log is closed"));
+        }
+        PendingAppend pending = new PendingAppend(null);
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        abandonIfClosed(pending);
+        return pending.rotated;
+    }
+
+    // Removes sealed segments older than the given sequence once their records are captured elsewhere
+    public void deleteSegmentsBefore(long sequence) throws IOException {
+        for (Path path : segments()) {
+            if (sequenceOf(path) < Math.min(sequence, segmentSequence)) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    public long getSyncCount() {
+        return syncCount.get();
+    }
+
+    // Writes that failed, whether or not the retry in a new segment succeeded
+    public long getFailedWrites() {
+        return failedWrites.get();
+    }
+
+    // Null while appends are accepted
+    public Exception getFailure() {
+        return failure;
+    }
+
+    public long getSegmentSequence() {
+        return segmentSequence;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Appends that passed the running check as it was cleared were queued after the writer's last pass
+        List<PendingAppend> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        for (PendingAppend pending : leftover) {
+            fail(pending, new IllegalStateException("Write-ahead log is closed"));
+        }
+        segment.close();
+    }
+
+    /*
+     * An append queued while close() runs may land after the writer and close() have both drained the queue.
+     * Whoever removes it from the queue completes it, so it is never left waiting.
+     */
+    private void abandonIfClosed(PendingAppend pending) {
+        if (!running && queue.remove(pending)) {
+            fail(pending, new IllegalStateException("Write-ahead log is closed"));
+        }
+    }
+
+    private static void fail(PendingAppend pending, Exception e) {
+        pending.done.completeExceptionally(e);
+        pending.rotated.completeExceptionally(e);
+    }
+
+    private void writeLoop() {
+        List<PendingAppend> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingAppend first = queue.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                if (failure != null) {
+                    throw new IOException("Write-ahead log failed earlier", failure);
+                }
+                writeWithRetry(batch);
+                for (PendingAppend pending : batch) {
+                    if (pending.record == null) {
+                        pending.rotated.complete(pending.sequence);
+                    } else {
+                        pending.done.complete(null);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException e) {
+                if (failure == null) {
+                    log.error("Write-ahead log append failed", e);
+                }
+                for (PendingAppend pending : batch) {
+                    fail(pending, e);
+                }
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    log.error("Write-ahead log append failed; rejecting further appends", e);
+                    failure = e;
+                }
+                for (PendingAppend pending : batch) {
+                    fail(pending, e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // On failure, cuts the partial batch off, moves to a new segment and writes the whole batch again, once
+    private void writeWithRetry(List<PendingAppend> batch) throws IOException {
+        try {
+            writeBatch(batch);
+            return;
+        } catch (IOException e) {
+            failedWrites.incrementAndGet();
+            log.warn("Write-ahead log append failed; retrying in a new segment", e);
+            sealAfterFailure(e);
+        }
+        for (PendingAppend pending : batch) {
+            if (pending.record != null) {
+                pending.record.rewind();
+            }
+        }
+        try {
+            writeBatch(batch);
+        } catch (IOException e) {
+            failedWrites.incrementAndGet();
+            sealAfterFailure(e);
+            throw e;
+        }
+    }
+
+    // Records written before the batch were synced by an earlier pass; whatever follows them is dropped
+    private void sealAfterFailure(IOException cause) throws IOException {
+        try {
+            segment.truncate(batchStart);
+            segment.close();
+            openSegment(segmentSequence + 1);
+        } catch (IOException | RuntimeException e) {
+            e.addSuppressed(cause);
+            log.error("Write-ahead log segment could not be cut back after a failed write; rejecting further appends",
+                    e);
+            failure = e;
+            throw cause;
+        }
+    }
+
+    private void writeBatch(List<PendingAppend> batch) throws IOException {
+        batchStart = segment.size();
+        int start = 0;
+        while (start < batch.size()) {
+            if (batch.get(start).record == null) {
+                rotate(batch.get(start));
+                start++;
+                continue;
+            }
+            // Fill the current segment, rotating once it is full; an empty segment always takes at least one record
+            long position = segment.position();
+            int end = start;
+            while (end < batch.size() && batch.get(end).record != null && (end == start && position == 0
+                    || position + batch.get(end).record.remaining() <= segmentSize)) {
+                position += batch.get(end).record.remaining();
+                end++;
+            }
+            if (end == start) {
+                rotate(null);
+                continue;
+            }
+            ByteBuffer[] buffers = new ByteBuffer[end - start];
+            for (int i = start; i < end; i++) {
+                buffers[i - start] = batch.get(i).record;
+            }
+            while (buffers[buffers.length - 1].hasRemaining()) {
+                segment.write(buffers);
+            }
+            start = end;
+        }
+        if (fsync) {
+            segment.force(false);
+            syncCount.incrementAndGet();
+        }
+    }
+
+    // request is the caller's rotation marker, or null when the segment is simply full
+    private void rotate(PendingAppend request) throws IOException {
+        if (fsync) {
+            segment.force(false);
+            syncCount.incrementAndGet();
+        }
+        segment.close();
+        openSegment(segmentSequence + 1);
+        if (request != null) {
+            request.sequence = segmentSequence;
+        }
+    }
+
+    private void openSegment(long sequence) throws IOException {
+        segmentSequence = sequence;
+        segment = FileChannel.open(directory.resolve(segmentName(sequence)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        batchStart = 0;
+    }
+
+    private static ByteBuffer encode(ReceiptId receiptId, Receipt body, int points, int ruleSetVersion) {
+        boolean versioned = ruleSetVersion != ReceiptStore.UNVERSIONED;
+        int bodyStart = PAYLOAD_FIXED_BYTES + (versioned ? 4 : 0);
+        int bodySize = body == null ? 0 : ReceiptCodec.encodedSize(body);
+        int payloadSize = bodyStart + bodySize;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payloadSize);
+        record.putInt(0, payloadSize);
+        int offset = RECORD_HEADER_BYTES;
+        record.putLong(offset, receiptId.getMostSignificantBits());
+        record.putLong(offset + 8, receiptId.getLeastSignificantBits());
+        record.putInt(offset + 16, points);
+        record.put(offset + 20, (byte) ((body == null ? 0 : FLAG_BODY) | (versioned ? FLAG_RULE_SET_VERSION : 0)));
+        if (versioned) {
+            record.putInt(offset + PAYLOAD_FIXED_BYTES, ruleSetVersion);
+        }
+        if (body != null) {
+            ReceiptCodec.encode(body, record, offset + bodyStart);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), RECORD_HEADER_BYTES, payloadSize);
+        record.putInt(4, (int) crc.getValue());
+        return record;
+    }
+
+    // Returns {records replayed, bytes of complete records}
+    private static long[] replaySegment(Path path, ReceiptStore.EntryConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return new long[]{0, 0};
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32C crc = new CRC32C();
+            long records = 0;
+            int position = 0;
+            while (position + RECORD_HEADER_BYTES <= size) {
+                int payloadSize = buffer.getInt(position);
+                int payloadStart = position + RECORD_HEADER_BYTES;
+                if (payloadSize < PAYLOAD_FIXED_BYTES || payloadStart + (long) payloadSize > size) {
+                    break;
+                }
+                crc.reset();
+                crc.update(buffer.slice(payloadStart, payloadSize));
+                if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                    break;
+                }
+                ReceiptId receiptId = new ReceiptId(buffer.getLong(payloadStart), buffer.getLong(payloadStart + 8));
+                int points = buffer.getInt(payloadStart + 16);
+                int flags = buffer.get(payloadStart + 20);
+                int bodyStart = payloadStart + PAYLOAD_FIXED_BYTES;
+                int ruleSetVersion = ReceiptStore.UNVERSIONED;
+                if ((flags & FLAG_RULE_SET_VERSION) != 0) {
+                    ruleSetVersion = buffer.getInt(bodyStart);
+                    bodyStart += 4;
+                }
+                Receipt body = (flags & FLAG_BODY) != 0 ? ReceiptCodec.decode(buffer, bodyStart) : null;
+                consumer.accept(receiptId, body, points, ruleSetVersion);
+                records++;
+                position = payloadStart + payloadSize;
+            }
+            return new long[]{records, position};
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static String segmentName(long sequence) {
+        return String.format("%s%016d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX);
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    // A null record marks a rotation request
+    private static final class PendingAppend {
+        final ByteBuffer record;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        final CompletableFuture<Long> rotated = new CompletableFuture<>();
+        long sequence;
+
+        PendingAppend(ByteBuffer record) {
+            this.record = record;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.fetch.receiptprocessor.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
+import com.fetch.receiptprocessor.metrics.ReceiptMetrics;
+import com.fetch.receiptprocessor.model.Item;
+import com.fetch.receiptprocessor.model.Receipt;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Streaming deserializer for Receipt and its items, registered on the application ObjectMapper by JacksonConfig.
+ *
+ * Walks the tokens directly instead of going through reflective bean binding, and reads purchaseDate and
+ * purchaseTime digit by digit from the parser's character buffer without materializing a String. Anything
+ * outside the canonical yyyy-MM-dd / HH:mm shapes is handed to the same DateTimeFormatter parse that
+ * LocalDateDeserializer and LocalTimeDeserializer use, so accepted input, resolved values and error messages stay
+ * the same as with bean binding. Unexpected token types are delegated to Jackson's own deserializers for the same
+ * reason.
+ *
+ * Each receipt's binding time is recorded as the deserialize phase of ReceiptMetrics. The parser pulls from the
+ * request stream, so this includes waiting for the body to arrive.
+ */
+public class ReceiptDeserializer extends JsonDeserializer<Receipt> {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final ReceiptMetrics receiptMetrics;
+
+    public ReceiptDeserializer() {
+        this(ReceiptMetrics.noop());
+    }
+
+    public ReceiptDeserializer(ReceiptMetrics receiptMetrics) {
+        this.receiptMetrics = receiptMetrics;
+    }
+
+    @Override
+    public Receipt deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        long start = System.nanoTime();
+        Receipt receipt = readReceipt(p, ctxt);
+        receiptMetrics.recordDeserialize(start);
+        return receipt;
+    }
+
+    private Receipt readReceipt(JsonParser p, DeserializationContext ctxt) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            token = p.nextToken();
+        } else if (token != JsonToken.FIELD_NAME && token != JsonToken.END_OBJECT) {
+            return (Receipt) ctxt.handleUnexpectedToken(Receipt.class, p);
+        }
+
+        Receipt receipt = new Receipt();
+        for (; token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+            String field = p.currentName();
+            p.nextToken();
+            try {
+                switch (field) {
+                    case "retailer":
+                        receipt.setRetailer(readString(p, ctxt));
+                        break;
+                    case "purchaseDate":
+                        receipt.setPurchaseDate(readDate(p));
+                        break;
+                    case "purchaseTime":
+                        receipt.setPurchaseTime(readTime(p));
+                        break;
+                    case "total":
+                        receipt.setTotal(readString(p, ctxt));
+                        break;
+                    case "items":
+                        receipt.setItems(readItems(p, ctxt));
+                        break;
+                    default:
+                        ctxt.handleUnknownProperty(p, this, receipt, field);
+                }
+            } catch (JsonMappingException e) {
+                throw JsonMappingException.wrapWithPath(e, receipt, field);
+            }
+        }
+        return receipt;
+    }
+
+    private List<Item> readItems(JsonParser p, DeserializationContext ctxt) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token != JsonToken.START_ARRAY) {
+            JavaType listType = ctxt.getTypeFactory().constructCollectionType(List.class, Item.class);
+            return ctxt.readValue(p, listType);
+        }
+        List<Item> items = new ArrayList<>();
+        while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+            try {
+                if (token == JsonToken.START_OBJECT) {
+                    items.add(readItem(p, ctxt));
+                } else if (token == JsonToken.VALUE_NULL) {
+                    items.add(null);
+                } else {
+                    items.add(ctxt.readValue(p, Item.class));
+                }
+            } catch (JsonMappingException e) {
+                throw JsonMappingException.wrapWithPath(e, items, items.size());
+            }
+        }
+        return items;
+    }
+
+    private Item readItem(JsonParser p, DeserializationContext ctxt) throws IOException {
+        Item item = new Item();
+        for (JsonToken token = p.nextToken(); token == JsonToken.FIELD_NAME; token = p.nextToken()) {
+            String field = p.currentName();
+            p.nextToken();
+            try {
+                switch (field) {
+                    case "shortDescription":
+                        item.setShortDescription(readString(p, ctxt));
+                        break;
+                    case "price":
+                        item.setPrice(readString(p, ctxt));
+                        break;
+                    default:
+                        ctxt.handleUnknownProperty(p, this, item, field);
+                }
+            } catch (JsonMappingException e) {
+                throw JsonMappingException.wrapWithPath(e, item, field);
+            }
+        }
+        return item;
+    }
+
+    // Numbers and booleans are coerced to text exactly as bean binding would
+    private static String readString(JsonParser p, DeserializationContext ctxt) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.VALUE_STRING) {
+            return p.getText();
+        }
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        return StringDeserializer.instance.deserialize(p, ctxt);
+    }
+
+    private static LocalDate readDate(JsonParser p) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token == JsonToken.VALUE_STRING && p.getTextLength() == 10) {
+            char[] chars = p.getTextCharacters();
+            int offset = p.getTextOffset();
+            int year = digits(chars, offset, 4);
+            int month = digits(chars, offset + 5, 2);
+            int day = digits(chars, offset + 8, 2);
+            if (year > 0 && month >= 1 && month <= 12 && day >= 1 && chars[offset + 4] == '-'
+                    && chars[offset + 7] == '-' && day <= LocalDate.of(year, month, 1).lengthOfMonth()) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        // Same parse as LocalDateDeserializer, which also settles the lenient cases such as Feb 30
+        try {
+            return LocalDate.parse(p.getText(), DATE_FORMATTER);
+        } catch (DateTimeParseException e) {
+            throw new IOException("Invalid date format. Expected format is yyyy-MM-dd.");
+        }
+    }
+
+    private static LocalTime readTime(JsonParser p) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token == JsonToken.VALUE_STRING && p.getTextLength() == 5) {
+            char[] chars = p.getTextCharacters();
+            int offset = p.getTextOffset();
+            int hour = digits(chars, offset, 2);
+            int minute = digits(chars, offset + 3, 2);
+            if (hour >= 0 && hour <= 23 && minute >= 0 && minute <= 59 && chars[offset + 2] == ':') {
+                return LocalTime.of(hour, minute);
+            }
+        }
+        try {
+            return LocalTime.parse(p.getText(), TIME_FORMATTER);
+        } catch (DateTimeParseException e) {
+            throw new IOException("Invalid time format. Expected format is HH:mm.");
+        }
+    }
+
+    // Value of count ASCII digits, or -1 if any of them is not a digit
+    private static int digits(char[] chars, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
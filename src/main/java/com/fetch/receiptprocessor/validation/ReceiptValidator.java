@@ -0,0 +1,159 @@
+package com.fetch.receiptprocessor.validation;
+
+import com.fetch.receiptprocessor.metrics.ReceiptMetrics;
+import com.fetch.receiptprocessor.model.Item;
+import com.fetch.receiptprocessor.model.Receipt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.Errors;
+import org.springframework.validation.Validator;
+
+import java.util.List;
+
+/*
+ * Checks a Receipt against the same constraints its Bean Validation annotations declare, in one pass over the
+ * characters and without reflection or regular expressions. Validation stops at the first failure.
+ *
+ * The annotations on Receipt and Item remain the specification and ReceiptValidatorTest holds this class to them:
+ *  - @NotBlank rejects null and values that trim() to nothing
+ *  - @Pattern accepts null and matches the whole value, where \w is [a-zA-Z0-9_], \s is [ \t\n\x0B\f\r], \d is [0-9]
+ *  - @NotNull and @Size(min = 1) on items reject a missing or empty list, and @NotNull on the element rejects null items
+ */
+@Component
+public class ReceiptValidator implements Validator {
+
+    private static final int NONE = -1;
+    private static final int EMPTY_ITEMS = -2;
+
+    private final ReceiptMetrics receiptMetrics;
+
+    public ReceiptValidator() {
+        this(ReceiptMetrics.noop());
+    }
+
+    @Autowired
+    public ReceiptValidator(ReceiptMetrics receiptMetrics) {
+        this.receiptMetrics = receiptMetrics;
+    }
+
+    @Override
+    public boolean supports(Class<?> clazz) {
+        return Receipt.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public void validate(Object target, Errors errors) {
+        long start = System.nanoTime();
+        check((Receipt) target, errors);
+        receiptMetrics.recordValidate(start);
+    }
+
+    public boolean isValid(Receipt receipt) {
+        long start = System.nanoTime();
+        boolean valid = isValidReceipt(receipt);
+        receiptMetrics.recordValidate(start);
+        return valid;
+    }
+
+    private static void check(Receipt receipt, Errors errors) {
+        String retailer = receipt.getRetailer();
+        if (!isValidName(retailer, true)) {
+            if (isBlank(retailer)) {
+                errors.rejectValue("retailer", "NotBlank", "Retailer name cannot be blank");
+            } else {
+                errors.rejectValue("retailer", "Pattern", "Retailer name contains invalid characters");
+            }
+        } else if (receipt.getPurchaseDate() == null) {
+            errors.rejectValue("purchaseDate", "NotNull", "Purchase date cannot be blank");
+        } else if (receipt.getPurchaseTime() == null) {
+            errors.rejectValue("purchaseTime", "NotNull", "Purchase time cannot be blank");
+        } else if (!isValidAmount(receipt.getTotal())) {
+            if (isBlank(receipt.getTotal())) {
+                errors.rejectValue("total", "NotBlank", "Total amount cannot be blank");
+            } else {
+                errors.rejectValue("total", "Pattern", "Receipt total amount must be in the format X.XX");
+            }
+        } else {
+            int invalidItem = firstInvalidItem(receipt.getItems());
+            if (invalidItem == EMPTY_ITEMS) {
+                errors.rejectValue("items", receipt.getItems() == null ? "NotNull" : "Size", "At least one item is required");
+            } else if (invalidItem != NONE) {
+                errors.rejectValue("items[" + invalidItem + "]", "Valid", "Item is invalid");
+            }
+        }
+    }
+
+    private static boolean isValidReceipt(Receipt receipt) {
+        return receipt != null
+                && isValidName(receipt.getRetailer(), true)
+                && receipt.getPurchaseDate() != null
+                && receipt.getPurchaseTime() != null
+                && isValidAmount(receipt.getTotal())
+                && firstInvalidItem(receipt.getItems()) == NONE;
+    }
+
+    // Index of the first invalid item, NONE when all are valid, or EMPTY_ITEMS for a missing or empty list
+    private static int firstInvalidItem(List<Item> items) {
+        if (items == null || items.isEmpty()) {
+            return EMPTY_ITEMS;
+        }
+        int index = 0;
+        for (Item item : items) {
+            if (item == null || !(isValidName(item.getShortDescription(), false) && isValidAmount(item.getPrice()))) {
+                return index;
+            }
+            index++;
+        }
+        return NONE;
+    }
+
+    // @NotBlank plus @Pattern("^[\w\s\-&]+$") for retailers, or "^[\w\s\-]+$" for item descriptions
+    private static boolean isValidName(String value, boolean allowAmpersand) {
+        if (value == null) {
+            return false;
+        }
+        boolean blank = true;
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if (isWordChar(c) || c == '-' || (allowAmpersand && c == '&')) {
+                blank = false;
+            } else if (!isWhitespace(c)) {
+                return false;
+            }
+        }
+        return !blank;
+    }
+
+    // @NotBlank plus @Pattern("^\d+\.\d{2}$")
+    private static boolean isValidAmount(String value) {
+        if (value == null) {
+            return false;
+        }
+        int dot = value.length() - 3;
+        if (dot < 1 || value.charAt(dot) != '.') {
+            return false;
+        }
+        for (int i = 0, length = value.length(); i < length; i++) {
+            if (i != dot && !isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '_';
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,32 @@
+package com.fetch.receiptprocessor;
+
+import com.fetch.receiptprocessor.model.Item;
+import com.fetch.receiptprocessor.model.Receipt;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+/*
+ * A small valid receipt shared by the store, ingest, replication and cluster tests. "Target" on an odd day with
+ * one item whose description is not a multiple of three scores 12 points under the default rules.
+ */
+public final class ReceiptFixtures {
+
+    private ReceiptFixtures() {
+    }
+
+    public static Receipt receipt() {
+        return receipt("Target");
+    }
+
+    public static Receipt receipt(String retailer) {
+        return Receipt.builder()
+                .retailer(retailer)
+                .purchaseDate(LocalDate.parse("2022-01-01"))
+                .purchaseTime(LocalTime.parse("13:01"))
+                .total("6.49")
+                .items(List.of(new Item("Mountain Dew 12PK", "6.49")))
+                .build();
+    }
+}
@@ -0,0 +1,208 @@
+package com.fetch.receiptprocessor.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fetch.receiptprocessor.config.JacksonConfig;
+import com.fetch.receiptprocessor.controller.ReceiptController;
+import com.fetch.receiptprocessor.exception.GlobalExceptionHandler;
+import com.fetch.receiptprocessor.metrics.ReceiptMetrics;
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.scoring.RuleEngine;
+import com.fetch.receiptprocessor.service.ReceiptPointServiceImpl;
+import com.fetch.receiptprocessor.store.ConcurrentReceiptStore;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import com.fetch.receiptprocessor.validation.ReceiptValidator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+import static com.fetch.receiptprocessor.ReceiptFixtures.receipt;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.request;
+
+/*
+ * Two shards, each a ReceiptController over its own store and ShardRouter, served over real HTTP so that
+ * forwarding goes through the JDK HttpClient, Jackson and the controller exactly as between two instances.
+ */
+public class ClusterForwardingTest {
+
+    private static final String SECRET = "cluster-secret";
+
+    private final ObjectMapper mapper = new JacksonConfig().objectMapper(ReceiptMetrics.noop());
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final HttpServer[] servers = new HttpServer[2];
+    private final ConcurrentReceiptStore[] stores = new ConcurrentReceiptStore[2];
+    private final ShardRouter[] routers = new ShardRouter[2];
+    private final SimpleMeterRegistry[] registries = new SimpleMeterRegistry[2];
+
+    @BeforeEach
+    void startShards() throws IOException {
+        for (int shard = 0; shard < 2; shard++) {
+            servers[shard] = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        }
+        Map<Integer, URI> shards = Map.of(0, uri(0, ""), 1, uri(1, ""));
+        for (int shard = 0; shard < 2; shard++) {
+            stores[shard] = new ConcurrentReceiptStore(16, true);
+            registries[shard] = new SimpleMeterRegistry();
+            routers[shard] = new ShardRouter(shard, shards, 128, mapper, Duration.ofSeconds(1),
+                    Duration.ofSeconds(5), SECRET, registries[shard]);
+            ReceiptPointServiceImpl service = new ReceiptPointServiceImpl(stores[shard], new RuleEngine(),
+                    ReceiptMetrics.noop(), null, null, routers[shard]);
+            MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new ReceiptController(service, null, new ReceiptValidator()))
+                    .setControllerAdvice(new GlobalExceptionHandler())
+                    .setMessageConverters(new MappingJackson2HttpMessageConverter(mapper))
+                    .build();
+            servers[shard].createContext("/", exchange -> serve(mockMvc, exchange));
+            servers[shard].start();
+        }
+    }
+
+    @AfterEach
+    void stopShards() {
+        for (HttpServer server : servers) {
+            server.stop(0);
+        }
+    }
+
+    private URI uri(int shard, String path) {
+        return URI.create("http://localhost:" + servers[shard].getAddress().getPort() + path);
+    }
+
+    private static void serve(MockMvc mockMvc, HttpExchange exchange) throws IOException {
+        try {
+            MockHttpServletRequestBuilder request = request(HttpMethod.valueOf(exchange.getRequestMethod()),
+                    exchange.getRequestURI()).content(exchange.getRequestBody().readAllBytes());
+            exchange.getRequestHeaders().forEach((name, values) -> {
+                if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                    values.forEach(value -> request.header(name, value));
+                }
+            });
+            MockHttpServletResponse response = mockMvc.perform(request).andReturn().getResponse();
+            for (String name : response.getHeaderNames()) {
+                if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                    exchange.getResponseHeaders().put(name, response.getHeaders(name));
+                }
+            }
+            byte[] body = response.getContentAsByteArray();
+            exchange.sendResponseHeaders(response.getStatus(), body.length == 0 ? -1 : body.length);
+            if (body.length > 0) {
+                exchange.getResponseBody().write(body);
+            }
+        } catch (Exception e) {
+            throw new IOException(e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private HttpResponse<String> post(int shard, Receipt receipt) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(shard, "/receipts/process"))
+                .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(receipt)))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> getPoints(int shard, String receiptId, boolean forwarded) throws Exception {
+        return getPoints(shard, receiptId, forwarded, forwarded ? SECRET : null);
+    }
+
+    private HttpResponse<String> getPoints(int shard, String receiptId, boolean forwarded, String secret)
+            throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri(shard, "/receipts/" + receiptId + "/points")).GET();
+        if (forwarded) {
+            request.header(ShardRouter.FORWARDED_HEADER, String.valueOf(1 - shard));
+        }
+        if (secret != null) {
+            request.header(ShardRouter.FORWARDING_SECRET_HEADER, secret);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private double forwarded(int shard, String operation) {
+        return registries[shard].get("receipt.cluster.forwarded").tag("operation", operation).counter().count();
+    }
+
+    @Test
+    void receiptsPostedToEitherShardAreStoredByTheirOwnerAndFoundFromBoth() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            Receipt receipt = receipt("Retailer " + i);
+            int entry = i % 2;
+            HttpResponse<String> posted = post(entry, receipt);
+            assertEquals(200, posted.statusCode());
+
+            ReceiptId id = ReceiptId.parse(mapper.readTree(posted.body()).get("id").asText());
+            int owner = routers[entry].ownerOf(receipt, null);
+            assertEquals(owner, id.getShard());
+            // The owner parsed exactly the receipt the entry shard re-serialized
+            assertEquals(receipt, stores[owner].getReceipt(id));
+            assertEquals(ReceiptStore.NOT_FOUND, stores[1 - owner].getPoints(id));
+
+            int points = stores[owner].getPoints(id);
+            for (int shard = 0; shard < 2; shard++) {
+                HttpResponse<String> found = getPoints(shard, id.toString(), false);
+                assertEquals(200, found.statusCode());
+                assertEquals(points, mapper.readTree(found.body()).get("points").asInt());
+            }
+        }
+        // Both shards forwarded ingests and lookups to the other
+        for (int shard = 0; shard < 2; shard++) {
+            assertTrue(stores[shard].size() > 0);
+            assertTrue(forwarded(shard, "ingest") > 0);
+            assertTrue(forwarded(shard, "lookup") > 0);
+        }
+    }
+
+    @Test
+    void forwardedLookupIsAnsweredLocally() throws Exception {
+        ReceiptId id = ReceiptId.parse(mapper.readTree(post(1, receipt("Target")).body()).get("id").asText());
+        int owner = id.getShard();
+        int other = 1 - owner;
+
+        assertEquals(200, getPoints(owner, id.toString(), true).statusCode());
+        // The id names the other shard, but a forwarded lookup is never sent on
+        assertEquals(404, getPoints(other, id.toString(), true).statusCode());
+        assertEquals(0, forwarded(other, "lookup"));
+    }
+
+    @Test
+    void clientClaimingToForwardIsRoutedAsUsual() throws Exception {
+        Receipt receipt = receipt("Target");
+        int owner = routers[0].ownerOf(receipt, null);
+        int other = 1 - owner;
+        HttpRequest spoofed = HttpRequest.newBuilder(uri(other, "/receipts/process"))
+                .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                .header(ShardRouter.FORWARDED_HEADER, String.valueOf(owner))
+                .header(ShardRouter.FORWARDING_SECRET_HEADER, "guess")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(receipt)))
+                .build();
+        ReceiptId id = ReceiptId.parse(mapper.readTree(client.send(spoofed, HttpResponse.BodyHandlers.ofString()).body())
+                .get("id").asText());
+
+        // The shard that does not own the receipt passed it on rather than storing it
+        assertEquals(owner, id.getShard());
+        assertEquals(0, stores[other].size());
+        assertEquals(200, getPoints(other, id.toString(), true, "guess").statusCode());
+        assertEquals(1, forwarded(other, "ingest"));
+        assertEquals(1, forwarded(other, "lookup"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.fetch.receiptprocessor.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardRingTest {
+
+    private static final int KEYS = 100_000;
+
+    @Test
+    void spreadsKeysEvenly() {
+        ShardRing ring = new ShardRing(List.of(0, 1, 2, 3), 128);
+        int[] counts = new int[4];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < KEYS; i++) {
+            counts[ring.ownerOf(random.nextLong())]++;
+        }
+        for (int count : counts) {
+            assertTrue(Math.abs(count - KEYS / 4) < KEYS / 4 * 0.2, "shard share " + count);
+        }
+    }
+
+    @Test
+    void addingAShardOnlyMovesKeysToIt() {
+        ShardRing before = new ShardRing(List.of(0, 1, 2), 128);
+        ShardRing after = new ShardRing(List.of(0, 1, 2, 3), 128);
+        int moved = 0;
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < KEYS; i++) {
+            long hash = random.nextLong();
+            int owner = after.ownerOf(hash);
+            if (owner != before.ownerOf(hash)) {
+                assertEquals(3, owner);
+                moved++;
+            }
+        }
+        assertTrue(Math.abs(moved - KEYS / 4) < KEYS / 4 * 0.2, "moved " + moved);
+    }
+
+    @Test
+    void sameShardsBuildTheSameRing() {
+        ShardRing ring = new ShardRing(List.of(5, 9), 16);
+        ShardRing reordered = new ShardRing(List.of(9, 5), 16);
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 1000; i++) {
+            long hash = random.nextLong();
+            assertEquals(ring.ownerOf(hash), reordered.ownerOf(hash));
+        }
+        assertEquals(ring.ownerOf(-1L), reordered.ownerOf(-1L));
+    }
+
+    @Test
+    void rejectsEmptyRings() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardRing(List.of(), 128));
+        assertThrows(IllegalArgumentException.class, () -> new ShardRing(List.of(0), 0));
+    }
+}
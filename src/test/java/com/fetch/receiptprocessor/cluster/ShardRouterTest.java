@@ -0,0 +1,149 @@
+package com.fetch.receiptprocessor.cluster;
+
+import com.fetch.receiptprocessor.config.JacksonConfig;
+import com.fetch.receiptprocessor.exception.IngestQueueFullException;
+import com.fetch.receiptprocessor.exception.ShardUnavailableException;
+import com.fetch.receiptprocessor.metrics.ReceiptMetrics;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.fetch.receiptprocessor.ReceiptFixtures.receipt;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardRouterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger ingestStatus = new AtomicInteger(200);
+    private final AtomicReference<String> forwardedBy = new AtomicReference<>();
+    private final AtomicReference<String> forwardingSecret = new AtomicReference<>();
+    private final AtomicReference<String> idempotencyKey = new AtomicReference<>();
+    private final AtomicReference<String> retryAfter = new AtomicReference<>("3");
+    private final ReceiptId storedId = ReceiptId.random(1);
+
+    private HttpServer remoteShard;
+    private ShardRouter router;
+
+    @BeforeEach
+    void startRemoteShard() throws IOException {
+        remoteShard = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        remoteShard.createContext("/receipts/process", exchange -> {
+            forwardedBy.set(exchange.getRequestHeaders().getFirst(ShardRouter.FORWARDED_HEADER));
+            forwardingSecret.set(exchange.getRequestHeaders().getFirst(ShardRouter.FORWARDING_SECRET_HEADER));
+            idempotencyKey.set(exchange.getRequestHeaders().getFirst("Idempotency-Key"));
+            exchange.getRequestBody().readAllBytes();
+            if (ingestStatus.get() == 429) {
+                exchange.getResponseHeaders().set("Retry-After", retryAfter.get());
+            }
+            respond(exchange, ingestStatus.get(), "{\"id\":\"" + storedId + "\"}");
+        });
+        remoteShard.createContext("/receipts/", exchange -> {
+            boolean known = exchange.getRequestURI().getPath().equals("/receipts/" + storedId + "/points");
+            respond(exchange, known ? 200 : 404, known ? "{\"points\":28}" : "");
+        });
+        remoteShard.start();
+        URI remote = URI.create("http://localhost:" + remoteShard.getAddress().getPort());
+        router = new ShardRouter(0, Map.of(0, URI.create("http://localhost:1"), 1, remote), 128,
+                new JacksonConfig().objectMapper(ReceiptMetrics.noop()), Duration.ofSeconds(1), Duration.ofSeconds(5),
+                "secret", registry);
+    }
+
+    @AfterEach
+    void stopRemoteShard() {
+        remoteShard.stop(0);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            exchange.getResponseBody().write(bytes);
+        }
+        exchange.close();
+    }
+
+    @Test
+    void idsNameTheShardThatIssuedThem() {
+        ReceiptId id = router.newLocalId();
+
+        assertEquals(0, id.getShard());
+        assertEquals(id, ReceiptId.parse(id.toString()));
+        assertEquals(ReceiptId.MAX_SHARD, ReceiptId.random(ReceiptId.MAX_SHARD).getShard());
+        assertEquals(ReceiptId.UNSHARDED, ReceiptId.random().getShard());
+        assertTrue(router.isLocal(ReceiptId.random()));
+        assertFalse(router.isLocal(storedId));
+    }
+
+    @Test
+    void placesByIdempotencyKeyOverContents() {
+        int owner = router.ownerOf(receipt("Target"), "order-1");
+
+        assertEquals(owner, router.ownerOf(receipt("Walmart"), "order-1"));
+        assertEquals(router.ownerOf(receipt("Target"), null), router.ownerOf(receipt("Target"), null));
+    }
+
+    @Test
+    void forwardsReceiptsToTheirOwner() {
+        assertEquals(storedId.toString(), router.forwardReceipt(1, receipt("Target"), "order-1"));
+        assertEquals("0", forwardedBy.get());
+        assertEquals("secret", forwardingSecret.get());
+        assertEquals("order-1", idempotencyKey.get());
+
+        ingestStatus.set(429);
+        IngestQueueFullException full = assertThrows(IngestQueueFullException.class,
+                () -> router.forwardReceipt(1, receipt("Target"), null));
+        assertEquals(Duration.ofSeconds(3), full.getRetryAfter());
+        // An HTTP-date Retry-After is not understood, so the default applies
+        retryAfter.set("Wed, 21 Oct 2015 07:28:00 GMT");
+        full = assertThrows(IngestQueueFullException.class, () -> router.forwardReceipt(1, receipt("Target"), null));
+        assertEquals(Duration.ofSeconds(1), full.getRetryAfter());
+
+        ingestStatus.set(400);
+        assertThrows(IllegalArgumentException.class, () -> router.forwardReceipt(1, receipt("Target"), null));
+        assertEquals(4, registry.get("receipt.cluster.forwarded").tag("operation", "ingest").counter().count());
+    }
+
+    @Test
+    void onlyRequestsWithTheSecretCountAsForwarded() {
+        assertTrue(router.isForwarded("1", "secret"));
+        assertFalse(router.isForwarded("1", null));
+        assertFalse(router.isForwarded("1", "guess"));
+        assertFalse(router.isForwarded(null, "secret"));
+        assertThrows(IllegalArgumentException.class, () -> new ShardRouter(0, Map.of(0, URI.create("http://localhost:1")),
+                128, new JacksonConfig().objectMapper(ReceiptMetrics.noop()), Duration.ofSeconds(1),
+                Duration.ofSeconds(5), " ", registry));
+    }
+
+    @Test
+    void forwardsLookupsToTheShardInTheId() {
+        assertEquals(28, router.forwardPoints(storedId));
+        assertEquals(ReceiptStore.NOT_FOUND, router.forwardPoints(ReceiptId.random(1)));
+        // Shard 7 is not configured, so nothing can have stored the receipt
+        assertEquals(ReceiptStore.NOT_FOUND, router.forwardPoints(ReceiptId.random(7)));
+        assertEquals(2, registry.get("receipt.cluster.forwarded").tag("operation", "lookup").counter().count());
+    }
+
+    @Test
+    void unreachableShardsAreUnavailable() {
+        remoteShard.stop(0);
+
+        assertThrows(ShardUnavailableException.class, () -> router.forwardPoints(storedId));
+    }
+}
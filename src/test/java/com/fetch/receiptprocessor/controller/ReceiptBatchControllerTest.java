@@ -0,0 +1,155 @@
+package com.fetch.receiptprocessor.controller;
+
+import com.fetch.receiptprocessor.config.JacksonConfig;
+import com.fetch.receiptprocessor.exception.GlobalExceptionHandler;
+import com.fetch.receiptprocessor.metrics.ReceiptMetrics;
+import com.fetch.receiptprocessor.model.Item;
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.service.ReceiptBatchService;
+import com.fetch.receiptprocessor.scoring.RuleEngine;
+import com.fetch.receiptprocessor.service.ReceiptPointServiceImpl;
+import com.fetch.receiptprocessor.store.ConcurrentReceiptStore;
+import com.fetch.receiptprocessor.store.replication.ReplicaReceiptStore;
+import com.fetch.receiptprocessor.validation.ReceiptValidator;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class ReceiptBatchControllerTest {
+
+    private static final String VALID_RECEIPT = "{\"retailer\":\"Target\",\"purchaseDate\":\"2022-01-02\",\"purchaseTime\":\"13:13\",\"total\":\"1.25\",\"items\":[{\"shortDescription\":\"Pepsi - 12-oz\",\"price\":\"1.25\"}]}";
+    private static final String INVALID_RETAILER = "{\"retailer\":\"Ta%t\",\"purchaseDate\":\"2022-01-02\",\"purchaseTime\":\"13:13\",\"total\":\"1.25\",\"items\":[{\"shortDescription\":\"Pepsi - 12-oz\",\"price\":\"1.25\"}]}";
+    private static final String UNKNOWN_FIELD = "{\"retailer\":\"Target\",\"items\":[{\"shortDescription\":\"Pepsi\",\"price\":\"1.25\",\"colour\":{\"r\":1}}],\"total\":\"1.25\"}";
+
+    private MockMvc mockMvc;
+    private ReceiptPointServiceImpl receiptPointService;
+
+    @BeforeEach
+    void setUp() {
+        receiptPointService = new ReceiptPointServiceImpl();
+        ReceiptBatchService batchService = new ReceiptBatchService(
+                receiptPointService, new JacksonConfig().objectMapper(ReceiptMetrics.noop()), new ReceiptValidator());
+        mockMvc = MockMvcBuilders.standaloneSetup(new ReceiptBatchController(batchService))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void testJsonArrayBatchReportsEachReceipt() throws Exception {
+        MvcResult result = mockMvc.perform(post("/receipts/process/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + VALID_RECEIPT + "," + INVALID_RETAILER + "," + UNKNOWN_FIELD + "," + VALID_RECEIPT + "]"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$", hasSize(4)))
+                .andExpect(jsonPath("$[0].index").value(0))
+                .andExpect(jsonPath("$[1].error").value("The receipt is invalid"))
+                .andExpect(jsonPath("$[2].error").value("The receipt is invalid"))
+                .andExpect(jsonPath("$[3].index").value(3))
+                .andReturn();
+
+        String id = JsonPath.read(result.getResponse().getContentAsString(), "$[3].id");
+        assertEquals(31, receiptPointService.calculatePoints(id));
+    }
+
+    @Test
+    void testNdjsonBatchStreamsOneResultPerLine() throws Exception {
+        MvcResult result = mockMvc.perform(post("/receipts/process/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(VALID_RECEIPT + "\n" + INVALID_RETAILER + "\n" + VALID_RECEIPT + "\n"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn();
+
+        String[] lines = result.getResponse().getContentAsString().split("\n");
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).startsWith("{\"index\":0,\"id\":");
+        assertThat(lines[1]).isEqualTo("{\"index\":1,\"error\":\"The receipt is invalid\"}");
+        assertThat(lines[2]).startsWith("{\"index\":2,\"id\":");
+    }
+
+    @Test
+    void testStoreFailuresAreReportedPerReceipt() throws Exception {
+        ReceiptPointServiceImpl replica = new ReceiptPointServiceImpl(
+                new ReplicaReceiptStore(new ConcurrentReceiptStore()), new RuleEngine(), ReceiptMetrics.noop());
+        MockMvc replicaMvc = MockMvcBuilders.standaloneSetup(new ReceiptBatchController(new ReceiptBatchService(
+                        replica, new JacksonConfig().objectMapper(ReceiptMetrics.noop()), new ReceiptValidator())))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+
+        replicaMvc.perform(post("/receipts/process/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + VALID_RECEIPT + "," + INVALID_RETAILER + "," + VALID_RECEIPT + "]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].error").value("This instance is a read-only replica"))
+                .andExpect(jsonPath("$[1].error").value("The receipt is invalid"))
+                .andExpect(jsonPath("$[2].index").value(2))
+                .andExpect(jsonPath("$[2].error").value("This instance is a read-only replica"));
+    }
+
+    @Test
+    void testMalformedBatchStopsAtSyntaxError() throws Exception {
+        mockMvc.perform(post("/receipts/process/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + VALID_RECEIPT + ",{\"retailer\": tar"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").exists())
+                .andExpect(jsonPath("$[1].error").value("The batch is not valid JSON"));
+    }
+
+    @Test
+    void testEmptyBatch() throws Exception {
+        mockMvc.perform(post("/receipts/process/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[]"));
+    }
+
+    @Test
+    void testMultiGetPointsMarksUnknownIds() throws Exception {
+        String first = receiptPointService.processReceipt(receipt("Target"));
+        String second = receiptPointService.processReceipt(receipt("Walgreens"));
+
+        mockMvc.perform(post("/receipts/points")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"" + first + "\",\"missing-id\",\"" + second + "\"]"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().json("{\"" + first + "\":31,\"missing-id\":null,\"" + second + "\":34}", true));
+    }
+
+    @Test
+    void testMultiGetPointsRejectsNonArrayBody() throws Exception {
+        mockMvc.perform(post("/receipts/points")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static Receipt receipt(String retailer) {
+        return Receipt.builder()
+                .retailer(retailer)
+                .purchaseDate(LocalDate.parse("2022-01-02"))
+                .purchaseTime(LocalTime.parse("13:13"))
+                .total("1.25")
+                .items(Collections.singletonList(new Item("Pepsi - 12-oz", "1.25")))
+                .build();
+    }
+}
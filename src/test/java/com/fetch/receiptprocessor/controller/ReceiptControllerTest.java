@@ -1,21 +1,34 @@
 package com.fetch.receiptprocessor.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fetch.receiptprocessor.config.JacksonConfig;
 import com.fetch.receiptprocessor.exception.GlobalExceptionHandler;
+import com.fetch.receiptprocessor.exception.IngestQueueFullException;
 import com.fetch.receiptprocessor.model.Item;
+import com.fetch.receiptprocessor.metrics.ReceiptMetrics;
 import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.service.ReceiptIngestPipeline;
 import com.fetch.receiptprocessor.service.ReceiptPointServiceImpl;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import com.fetch.receiptprocessor.validation.ReceiptValidator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.validation.Errors;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.Collections;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -28,6 +41,9 @@ public class ReceiptControllerTest {
     @Mock
     private ReceiptPointServiceImpl receiptPointService;
 
+    @Spy
+    private ReceiptValidator receiptValidator = new ReceiptValidator();
+
     @InjectMocks
     private ReceiptController receiptController;
 
@@ -49,7 +65,7 @@ public class ReceiptControllerTest {
         receipt.setTotal("1.25");
         receipt.setItems(Collections.singletonList(new Item("Pepsi - 12-oz", "1.25")));
 
-        when(receiptPointService.processReceipt(any(Receipt.class))).thenReturn(receiptId);
+        when(receiptPointService.processReceipt(any(Receipt.class), isNull())).thenReturn(receiptId);
 
         mockMvc.perform(post("/receipts/process")
                         .contentType("application/json")
@@ -58,7 +74,7 @@ public class ReceiptControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(receiptId));
 
-        verify(receiptPointService, times(1)).processReceipt(any(Receipt.class));
+        verify(receiptPointService, times(1)).processReceipt(any(Receipt.class), isNull());
     }
 
 
@@ -70,35 +86,68 @@ public class ReceiptControllerTest {
                 )
                 .andExpect(status().isBadRequest())
                 .andExpect(content().string("The receipt is invalid"));
+
+        verify(receiptValidator, times(1)).validate(any(), any(Errors.class));
+        verify(receiptPointService, never()).processReceipt(any(Receipt.class), any());
+    }
+
+    @Test
+    void testProcessReceiptWithoutItems() throws Exception {
+        mockMvc.perform(post("/receipts/process")
+                        .contentType("application/json")
+                        .content("{\"retailer\":\"Target\",\"purchaseDate\":\"2022-01-02\",\"purchaseTime\":\"13:13\",\"total\":\"1.25\"}")
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("The receipt is invalid"));
+
+        verify(receiptPointService, never()).processReceipt(any(Receipt.class), any());
     }
 
     @Test
     void testGetPointsSuccess() throws Exception {
         int points = 100;
-        when(receiptPointService.calculatePoints(anyString())).thenReturn(points);
+        when(receiptPointService.findPoints(anyString())).thenReturn(points);
 
         mockMvc.perform(get("/receipts/test-id/points"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.points").value(points));
 
-        verify(receiptPointService, times(1)).calculatePoints(anyString());
+        verify(receiptPointService, times(1)).findPoints(anyString());
+    }
+
+    @Test
+    void testGetPointsIsCacheableAndRevalidates() throws Exception {
+        when(receiptPointService.findPoints(anyString())).thenReturn(28);
+
+        mockMvc.perform(get("/receipts/test-id/points"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"28\""))
+                .andExpect(header().string("Cache-Control", "max-age=31536000, public, immutable"));
+
+        mockMvc.perform(get("/receipts/test-id/points").header("If-None-Match", "\"7\", W/\"28\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"28\""))
+                .andExpect(content().string(""));
+
+        mockMvc.perform(get("/receipts/test-id/points").header("If-None-Match", "\"27\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.points").value(28));
     }
 
     @Test
     void testGetPointsNotFound() throws Exception {
-        when(receiptPointService.calculatePoints(anyString()))
-                .thenThrow(new IllegalArgumentException("No receipt found for that id"));
+        when(receiptPointService.findPoints(anyString())).thenReturn(ReceiptStore.NOT_FOUND);
 
         mockMvc.perform(get("/receipts/test-id/points"))
                 .andExpect(status().isNotFound())
                 .andExpect(content().string("No receipt found for that id"));
 
-        verify(receiptPointService, times(1)).calculatePoints(anyString());
+        verify(receiptPointService, times(1)).findPoints(anyString());
     }
 
     @Test
     void testProcessReceiptIllegalArgumentException() throws Exception {
-        when(receiptPointService.processReceipt(any(Receipt.class)))
+        when(receiptPointService.processReceipt(any(Receipt.class), isNull()))
                 .thenThrow(new IllegalArgumentException("The receipt is invalid"));
 
         mockMvc.perform(post("/receipts/process")
@@ -108,6 +157,83 @@ public class ReceiptControllerTest {
                 .andExpect(status().isBadRequest())
                 .andExpect(content().string("The receipt is invalid"));
 
-        verify(receiptPointService, times(1)).processReceipt(any(Receipt.class));
+        verify(receiptPointService, times(1)).processReceipt(any(Receipt.class), isNull());
+    }
+
+    @Test
+    void testProcessReceiptQueueFull() throws Exception {
+        ReceiptIngestPipeline pipeline = mock(ReceiptIngestPipeline.class);
+        when(pipeline.submit(any(Receipt.class), isNull())).thenThrow(new IngestQueueFullException(Duration.ofSeconds(2)));
+        MockMvc asyncMockMvc = MockMvcBuilders.standaloneSetup(new ReceiptController(receiptPointService, pipeline, receiptValidator))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+
+        asyncMockMvc.perform(post("/receipts/process")
+                        .contentType("application/json")
+                        .content("{\"retailer\":\"Target\",\"purchaseDate\":\"2022-01-02\",\"purchaseTime\":\"13:13\",\"total\":\"1.25\",\"items\":[{\"shortDescription\":\"Pepsi - 12-oz\",\"price\":\"1.25\"}]}")
+                )
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "2"));
+
+        verify(receiptPointService, never()).processReceipt(any(Receipt.class), any());
+    }
+
+    @Test
+    void testProcessReceiptInSmile() throws Exception {
+        JacksonConfig jacksonConfig = new JacksonConfig();
+        ObjectMapper smile = jacksonConfig.smileObjectMapper(ReceiptMetrics.noop());
+        MockMvc binaryMockMvc = binaryMockMvc(jacksonConfig);
+        Receipt receipt = new Receipt();
+        receipt.setRetailer("Target");
+        receipt.setPurchaseDate(LocalDate.parse("2022-01-02"));
+        receipt.setPurchaseTime(LocalTime.parse("13:13"));
+        receipt.setTotal("1.25");
+        receipt.setItems(Collections.singletonList(new Item("Pepsi - 12-oz", "1.25")));
+        when(receiptPointService.processReceipt(any(Receipt.class), isNull())).thenReturn("test-id");
+
+        MvcResult result = binaryMockMvc.perform(post("/receipts/process")
+                        .contentType("application/x-jackson-smile")
+                        .accept("application/x-jackson-smile")
+                        .content(smile.writeValueAsBytes(receipt)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-jackson-smile"))
+                .andReturn();
+
+        assertEquals("test-id", smile.readTree(result.getResponse().getContentAsByteArray()).get("id").asText());
+        verify(receiptPointService, times(1)).processReceipt(argThat(bound -> receipt.equals(bound)), isNull());
+
+        // Validation applies whatever the encoding
+        receipt.setRetailer("Ta%t");
+        binaryMockMvc.perform(post("/receipts/process")
+                        .contentType("application/x-jackson-smile")
+                        .content(smile.writeValueAsBytes(receipt)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetPointsInCbor() throws Exception {
+        JacksonConfig jacksonConfig = new JacksonConfig();
+        when(receiptPointService.findPoints(anyString())).thenReturn(28);
+
+        MvcResult result = binaryMockMvc(jacksonConfig).perform(get("/receipts/test-id/points")
+                        .accept("application/json;q=0.5, application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andExpect(header().string("ETag", "\"28-cbor\""))
+                .andExpect(header().string("Vary", "Accept"))
+                .andReturn();
+
+        ObjectMapper cbor = jacksonConfig.cborObjectMapper(ReceiptMetrics.noop());
+        assertEquals(28, cbor.readTree(result.getResponse().getContentAsByteArray()).get("points").asInt());
+    }
+
+    private MockMvc binaryMockMvc(JacksonConfig jacksonConfig) {
+        return MockMvcBuilders.standaloneSetup(receiptController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .setMessageConverters(
+                        new MappingJackson2HttpMessageConverter(jacksonConfig.objectMapper(ReceiptMetrics.noop())),
+                        jacksonConfig.smileHttpMessageConverter(ReceiptMetrics.noop()),
+                        jacksonConfig.cborHttpMessageConverter(ReceiptMetrics.noop()))
+                .build();
     }
 }
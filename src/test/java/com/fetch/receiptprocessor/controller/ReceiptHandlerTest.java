@@ -0,0 +1,152 @@
+package com.fetch.receiptprocessor.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fetch.receiptprocessor.cluster.ShardRouter;
+import com.fetch.receiptprocessor.config.JacksonConfig;
+import com.fetch.receiptprocessor.metrics.ReceiptMetrics;
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.service.ReceiptPointServiceImpl;
+import com.fetch.receiptprocessor.store.ConcurrentReceiptStore;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import com.fetch.receiptprocessor.validation.ReceiptValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReceiptHandlerTest {
+
+    private static final String VALID_RECEIPT = "{\"retailer\":\"Target\",\"purchaseDate\":\"2022-01-02\",\"purchaseTime\":\"13:13\",\"total\":\"1.25\",\"items\":[{\"shortDescription\":\"Pepsi - 12-oz\",\"price\":\"1.25\"}]}";
+
+    private WebTestClient webTestClient;
+
+    @Mock
+    private ReceiptPointServiceImpl receiptPointService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReceiptHandler handler = new ReceiptHandler(receiptPointService, new ReceiptValidator(),
+                new ConcurrentReceiptStore(), null);
+        ObjectMapper mapper = new JacksonConfig().objectMapper(ReceiptMetrics.noop());
+        webTestClient = WebTestClient.bindToRouterFunction(new ReceiptRouter().receiptRoutes(handler))
+                .handlerStrategies(HandlerStrategies.builder()
+                        .codecs(codecs -> {
+                            codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(mapper));
+                            codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(mapper));
+                        })
+                        .build())
+                .build();
+    }
+
+    @Test
+    void processReceiptReturnsId() {
+        when(receiptPointService.processReceipt(any(Receipt.class), isNull())).thenReturn("test-id");
+
+        webTestClient.post().uri("/receipts/process")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(VALID_RECEIPT)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.id").isEqualTo("test-id");
+    }
+
+    @Test
+    void invalidReceiptIsRejected() {
+        webTestClient.post().uri("/receipts/process")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(VALID_RECEIPT.replace("Target", "Ta%t"))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("The receipt is invalid");
+
+        verify(receiptPointService, never()).processReceipt(any(Receipt.class), any());
+    }
+
+    @Test
+    void malformedJsonIsRejected() {
+        webTestClient.post().uri("/receipts/process")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"retailer\":")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("The receipt is invalid");
+
+        webTestClient.post().uri("/receipts/process")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(VALID_RECEIPT.replace("2022-01-02", "01/02/2022"))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class).isEqualTo("The receipt is invalid");
+    }
+
+    @Test
+    void getPointsReturnsStoredPoints() {
+        when(receiptPointService.findPoints("test-id")).thenReturn(100);
+
+        webTestClient.get().uri("/receipts/test-id/points")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.points").isEqualTo(100);
+    }
+
+    @Test
+    void getPointsAnswersMatchingETagWithNotModified() {
+        when(receiptPointService.findPoints("test-id")).thenReturn(100);
+
+        webTestClient.get().uri("/receipts/test-id/points")
+                .header("If-None-Match", "\"100\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals("ETag", "\"100\"")
+                .expectHeader().valueEquals("Cache-Control", "max-age=31536000, public, immutable")
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    void getPointsForUnknownIdIsNotFound() {
+        when(receiptPointService.findPoints("missing")).thenReturn(ReceiptStore.NOT_FOUND);
+
+        webTestClient.get().uri("/receipts/missing/points")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody(String.class).isEqualTo("No receipt found for that id");
+    }
+
+    @Test
+    void forwardedLookupIsAnsweredLocally() {
+        when(receiptPointService.isForwarded("1", "secret")).thenReturn(true);
+        when(receiptPointService.findLocalPoints("test-id")).thenReturn(ReceiptStore.NOT_FOUND);
+
+        webTestClient.get().uri("/receipts/test-id/points")
+                .header(ShardRouter.FORWARDED_HEADER, "1")
+                .header(ShardRouter.FORWARDING_SECRET_HEADER, "secret")
+                .exchange()
+                .expectStatus().isNotFound();
+
+        verify(receiptPointService, never()).findPoints(any());
+    }
+
+    @Test
+    void forwardedHeaderWithoutTheSecretIsRoutedAsUsual() {
+        when(receiptPointService.findPoints("test-id")).thenReturn(ReceiptStore.NOT_FOUND);
+
+        webTestClient.get().uri("/receipts/test-id/points")
+                .header(ShardRouter.FORWARDED_HEADER, "1")
+                .exchange()
+                .expectStatus().isNotFound();
+
+        verify(receiptPointService, never()).findLocalPoints(any());
+    }
+}
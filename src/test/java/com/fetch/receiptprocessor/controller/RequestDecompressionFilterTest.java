@@ -0,0 +1,72 @@
+package com.fetch.receiptprocessor.controller;
+
+import com.fetch.receiptprocessor.exception.DecompressedBodyTooLargeException;
+import com.github.luben.zstd.Zstd;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RequestDecompressionFilterTest {
+
+    private static final String BODY = "{\"retailer\":\"Target\",\"items\":[" + "{\"price\":\"1.25\"},".repeat(1000) + "{}]}";
+
+    private static byte[] gzip(String body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static HttpServletRequest filter(RequestDecompressionFilter filter, String encoding, byte[] content,
+                                             MockHttpServletResponse response) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/receipts/process");
+        request.addHeader("Content-Encoding", encoding);
+        request.setContent(content);
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(request, response, chain);
+        return (HttpServletRequest) chain.getRequest();
+    }
+
+    @Test
+    void inflatesGzipAndZstdBodies() throws Exception {
+        RequestDecompressionFilter filter = new RequestDecompressionFilter(1 << 20);
+        byte[] zstd = Zstd.compress(BODY.getBytes(StandardCharsets.UTF_8));
+
+        for (HttpServletRequest request : new HttpServletRequest[]{
+                filter(filter, "gzip", gzip(BODY), new MockHttpServletResponse()),
+                filter(filter, "zstd", zstd, new MockHttpServletResponse())}) {
+            assertNull(request.getHeader("Content-Encoding"));
+            assertEquals(-1, request.getContentLength());
+            assertEquals(BODY, new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void rejectsUnsupportedEncodings() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertNull(filter(new RequestDecompressionFilter(1 << 20), "br", new byte[]{1, 2, 3}, response));
+        assertEquals(415, response.getStatus());
+        assertEquals(RequestDecompressionFilter.SUPPORTED_ENCODINGS, response.getHeader("Accept-Encoding"));
+    }
+
+    @Test
+    void stopsReadingPastTheLimit() throws Exception {
+        HttpServletRequest request = filter(new RequestDecompressionFilter(1024), "gzip", gzip(BODY),
+                new MockHttpServletResponse());
+
+        assertThrows(DecompressedBodyTooLargeException.class, () -> request.getInputStream().readAllBytes());
+    }
+}
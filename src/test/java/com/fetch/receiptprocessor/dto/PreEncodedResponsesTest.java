@@ -0,0 +1,28 @@
+package com.fetch.receiptprocessor.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fetch.receiptprocessor.config.JacksonConfig;
+import com.fetch.receiptprocessor.metrics.ReceiptMetrics;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+public class PreEncodedResponsesTest {
+
+    private final ObjectMapper mapper = new JacksonConfig().objectMapper(ReceiptMetrics.noop());
+
+    @Test
+    void pointsMatchJackson() throws Exception {
+        for (int points : new int[]{0, 7, 28, 100, 1_000_000, -1, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+            assertArrayEquals(mapper.writeValueAsBytes(new PointResponse(points)), PreEncodedResponses.points(points));
+        }
+    }
+
+    @Test
+    void receiptIdsMatchJackson() throws Exception {
+        for (String id : new String[]{ReceiptId.random().toString(), "", "quote\"back\\slash", "tab\tnewline\n", "é☃"}) {
+            assertArrayEquals(mapper.writeValueAsBytes(new ReceiptResponse(id)), PreEncodedResponses.receiptId(id));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.fetch.receiptprocessor.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fetch.receiptprocessor.config.JacksonConfig;
+import com.fetch.receiptprocessor.metrics.ReceiptMetrics;
+import com.fetch.receiptprocessor.model.Item;
+import com.fetch.receiptprocessor.model.Receipt;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ * The streaming ReceiptDeserializer on the application ObjectMapper must bind exactly what reflective bean binding
+ * (a plain ObjectMapper honouring the model annotations) binds, and fail where it fails.
+ */
+public class ReceiptDeserializerTest {
+
+    private final ObjectMapper streaming = new JacksonConfig().objectMapper(ReceiptMetrics.noop());
+    private final ObjectMapper reflective = new ObjectMapper();
+
+    private static String receipt(String date, String time) {
+        return "{\"retailer\":\"Target\",\"purchaseDate\":" + date + ",\"purchaseTime\":" + time
+                + ",\"total\":\"35.35\",\"items\":[{\"shortDescription\":\"Mountain Dew 12PK\",\"price\":\"6.49\"}]}";
+    }
+
+    @Test
+    void bindsCanonicalReceipt() throws IOException {
+        Receipt receipt = streaming.readValue(receipt("\"2022-01-01\"", "\"13:01\""), Receipt.class);
+
+        assertEquals(Receipt.builder()
+                .retailer("Target")
+                .purchaseDate(LocalDate.of(2022, 1, 1))
+                .purchaseTime(LocalTime.of(13, 1))
+                .total("35.35")
+                .items(List.of(Item.builder().shortDescription("Mountain Dew 12PK").price("6.49").build()))
+                .build(), receipt);
+    }
+
+    @Test
+    void matchesReflectiveBinding() {
+        List<String> corpus = Arrays.asList(
+                receipt("\"2022-01-01\"", "\"13:01\""),
+                receipt("\"2024-02-29\"", "\"00:00\""),
+                receipt("\"2022-02-30\"", "\"23:59\""),
+                receipt("\"2022-02-32\"", "\"13:01\""),
+                receipt("\"0000-01-01\"", "\"13:01\""),
+                receipt("\"+12022-01-01\"", "\"13:01\""),
+                receipt("\"2022-1-01\"", "\"13:01\""),
+                receipt("\"20-01-2022\"", "\"13:01\""),
+                receipt("\"2022-01-01\"", "\"24:00\""),
+                receipt("\"2022-01-01\"", "\"13:60\""),
+                receipt("\"2022-01-01\"", "\"08:13:00\""),
+                receipt("\"2022-01-01\"", "\"8:13\""),
+                receipt("null", "null"),
+                receipt("20220101", "\"13:01\""),
+                receipt("\"2022-01-01\"", "{}"),
+                "{}",
+                "{\"retailer\":null,\"total\":null,\"items\":null}",
+                "{\"retailer\":123,\"total\":35.35,\"items\":[]}",
+                "{\"retailer\":true,\"items\":[null,{\"price\":1.25},{}]}",
+                "{\"retailer\":\"A\",\"retailer\":\"B\"}",
+                "{\"retailer\":\"A\",\"unknown\":1}",
+                "{\"items\":[{\"shortDescription\":\"x\",\"unknown\":[1,2]}]}",
+                "{\"retailer\":{}}",
+                "{\"retailer\":[\"A\"]}",
+                "{\"items\":{}}",
+                "{\"items\":\"x\"}",
+                "{\"items\":[1]}",
+                "[]",
+                "\"receipt\"");
+
+        for (String json : corpus) {
+            Object expected = bind(reflective, json);
+            Object actual = bind(streaming, json);
+            if (expected instanceof Exception) {
+                assertThat(actual).as(json).isInstanceOf(expected.getClass());
+                if (expected.getClass() == IOException.class) {
+                    assertThat(((Exception) actual).getMessage()).as(json).isEqualTo(((Exception) expected).getMessage());
+                }
+            } else {
+                assertThat(actual).as(json).isEqualTo(expected);
+            }
+        }
+    }
+
+    private static Object bind(ObjectMapper mapper, String json) {
+        try {
+            return mapper.readValue(json, Receipt.class);
+        } catch (Exception e) {
+            return e;
+        }
+    }
+}
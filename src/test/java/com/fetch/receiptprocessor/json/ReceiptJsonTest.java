@@ -3,6 +3,7 @@ package com.fetch.receiptprocessor.json;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fetch.receiptprocessor.config.JacksonConfig;
+import com.fetch.receiptprocessor.metrics.ReceiptMetrics;
 import com.fetch.receiptprocessor.model.Item;
 import com.fetch.receiptprocessor.model.Receipt;
 import jakarta.validation.ConstraintViolation;
@@ -20,7 +21,9 @@ import org.springframework.core.io.ClassPathResource;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
 
 import static jakarta.validation.Validation.buildDefaultValidatorFactory;
@@ -270,4 +273,28 @@ public class ReceiptJsonTest {
         assertThat(violations).hasSize(1);
         assertThat(violations.iterator().next().getMessage()).isEqualTo("Item price amount must be in the format X.XX");
     }
+
+    @Test
+    void binaryFormatsEncodeAReceiptSmallerThanJson() throws IOException {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            items.add(Item.builder().shortDescription("Mountain Dew 12PK").price("6.49").build());
+        }
+        Receipt receipt = Receipt.builder()
+                .retailer("M&M Corner Market")
+                .purchaseDate(LocalDate.parse("2022-03-21"))
+                .purchaseTime(LocalTime.parse("14:33"))
+                .total("649.00")
+                .items(items)
+                .build();
+        JacksonConfig jacksonConfig = new JacksonConfig();
+
+        int jsonBytes = jacksonConfig.objectMapper(ReceiptMetrics.noop()).writeValueAsBytes(receipt).length;
+        int cborBytes = jacksonConfig.cborObjectMapper(ReceiptMetrics.noop()).writeValueAsBytes(receipt).length;
+        int smileBytes = jacksonConfig.smileObjectMapper(ReceiptMetrics.noop()).writeValueAsBytes(receipt).length;
+
+        // CBOR drops the quotes and separators; Smile also writes each repeated field name as a one-byte reference
+        assertThat(cborBytes).isLessThan(jsonBytes);
+        assertThat(smileBytes).isLessThan(cborBytes);
+    }
 }
@@ -100,6 +100,20 @@ public class ReceiptValidationTest {
         assertThat(violations.iterator().next().getMessage()).isEqualTo("At least one item is required");
     }
 
+    @Test
+    void missingItemListTest() {
+        Receipt receipt = Receipt.builder()
+                .retailer("Walgreens")
+                .purchaseDate(LocalDate.parse("2022-01-02"))
+                .purchaseTime(LocalTime.parse("08:13"))
+                .total("2.65")
+                .build();
+
+        Set<ConstraintViolation<Receipt>> violations = validator.validate(receipt);
+        assertThat(violations).hasSize(1);
+        assertThat(violations.iterator().next().getMessage()).isEqualTo("At least one item is required");
+    }
+
     @Test
     void invalidTotalFormatTest() throws IOException{
         Receipt receipt = Receipt.builder()
@@ -0,0 +1,166 @@
+package com.fetch.receiptprocessor.scoring;
+
+import com.fetch.receiptprocessor.model.Item;
+import com.fetch.receiptprocessor.model.Receipt;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DefaultRuleSetTest {
+
+    private static final String[] RETAILERS = {
+            "Target", "M&M Corner Market", "Walgreens", "  Trader-Joe's  ", "Café Ñandú", "7-Eleven #42", "&&&", "a"
+    };
+
+    private static final String[] DESCRIPTIONS = {
+            "Mountain Dew 12PK", "Emils Cheese Pizza", "   Klarbrunn 12-PK 12 FL OZ  ", "Gatorade", "abc", "\tab\n",
+            "   ", "Pepsi - 12-oz", "x"
+    };
+
+    private static final String[] ODD_AMOUNTS = {
+            "40", "1e2", " 3.50 ", "0.250", "12.5", "007.75", "-5.00", "35.", "999999999999999.75", "0.1"
+    };
+
+    private final CompiledRuleSet rules = RuleSet.defaults().compile();
+
+    @Test
+    void defaultRuleSetMatchesLegacyImplementationOnRandomReceipts() {
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            Receipt receipt = randomReceipt(random);
+            assertEquals(legacyCalculatePoints(receipt), rules.score(receipt), receipt::toString);
+        }
+    }
+
+    @Test
+    void listenerSeesTheSameHitsWhateverReceiptCameBefore() {
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            Receipt receipt = randomReceipt(random);
+            Map<String, Integer> first = new HashMap<>();
+            Map<String, Integer> second = new HashMap<>();
+
+            int points = rules.score(receipt, (rule, times) -> first.merge(rule, times, Integer::sum));
+            assertEquals(legacyCalculatePoints(receipt), points, receipt::toString);
+            rules.score(receipt, (rule, times) -> second.merge(rule, times, Integer::sum));
+            assertEquals(first, second, receipt::toString);
+        }
+    }
+
+    @Test
+    void roundsItemPriceShareUp() {
+        // 12.25 * 0.2 = 2.45, rounded up to 3; 35.00 * 0.2 = 7 exactly
+        Receipt receipt = receipt("abc", "47.25", new ArrayList<>(List.of(new Item("abc", "12.25"), new Item("xyz", "35.00"))));
+
+        assertEquals(legacyCalculatePoints(receipt), rules.score(receipt));
+        assertEquals(3 + 25 + 5 + 3 + 7 + 6, rules.score(receipt));
+    }
+
+    @Test
+    void scoresNonRandomAccessItemLists() {
+        Receipt receipt = receipt("Target", "9.00", new LinkedList<>(Arrays.asList(
+                new Item("Gatorade", "2.25"), new Item("Emils Cheese Pizza", "12.25"))));
+
+        assertEquals(legacyCalculatePoints(receipt), rules.score(receipt));
+    }
+
+    @Test
+    void reportsRulesThatAwardedPoints() {
+        Map<String, Integer> fired = new HashMap<>();
+        Receipt receipt = receipt("abc", "47.25", new ArrayList<>(List.of(new Item("abc", "12.25"), new Item("xyz", "35.00"))));
+
+        rules.score(receipt, (rule, times) -> fired.merge(rule, times, Integer::sum));
+
+        assertEquals(Map.of("retailer_name", 1, "quarter_multiple", 1, "item_pairs", 1, "item_description", 2,
+                "odd_day", 1), fired);
+    }
+
+    @Test
+    void parsesOnlyCanonicalMoney() {
+        assertEquals(3535, ScoringFields.parseCents("35.35"));
+        assertEquals(0, ScoringFields.parseCents("0.00"));
+        assertEquals(-1, ScoringFields.parseCents(".25"));
+        assertEquals(-1, ScoringFields.parseCents("1.5"));
+        assertEquals(-1, ScoringFields.parseCents("1a.00"));
+        assertEquals(-1, ScoringFields.parseCents("1234567890123.00"));
+    }
+
+    private static Receipt randomReceipt(Random random) {
+        int itemCount = 1 + random.nextInt(12);
+        List<Item> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            items.add(new Item(DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)], randomAmount(random)));
+        }
+        Receipt receipt = receipt(RETAILERS[random.nextInt(RETAILERS.length)], randomAmount(random), items);
+        receipt.setPurchaseDate(LocalDate.of(2022, 1 + random.nextInt(12), 1 + random.nextInt(28)));
+        receipt.setPurchaseTime(LocalTime.of(random.nextInt(24), random.nextInt(60)));
+        return receipt;
+    }
+
+    private static String randomAmount(Random random) {
+        int kind = random.nextInt(10);
+        if (kind == 0) {
+            return ODD_AMOUNTS[random.nextInt(ODD_AMOUNTS.length)];
+        }
+        long cents = kind < 4 ? random.nextInt(20) * 25L : (long) (random.nextDouble() * Math.pow(10, 2 + random.nextInt(12)));
+        return String.format("%d.%02d", cents / 100, cents % 100);
+    }
+
+    private static Receipt receipt(String retailer, String total, List<Item> items) {
+        return Receipt.builder()
+                .retailer(retailer)
+                .purchaseDate(LocalDate.parse("2022-01-01"))
+                .purchaseTime(LocalTime.parse("13:01"))
+                .total(total)
+                .items(items)
+                .build();
+    }
+
+    // The original ReceiptPointServiceImpl scoring, kept verbatim as the reference for the differential test
+    private static int legacyCalculatePoints(Receipt receipt) {
+        int points = 0;
+
+        points += receipt.getRetailer().replaceAll("[^a-zA-Z0-9]", "").length();
+
+        double total = Double.parseDouble(receipt.getTotal());
+
+        if (total % 1 == 0) {
+            points += 50;
+        }
+
+        if (total % 0.25 == 0) {
+            points += 25;
+        }
+
+        points += (receipt.getItems().size() / 2) * 5;
+
+        for (Item item : receipt.getItems()) {
+            int length = item.getShortDescription().trim().length();
+            if (length % 3 == 0) {
+                double price = Double.parseDouble(item.getPrice());
+                points += Math.ceil(price * 0.2);
+            }
+        }
+
+        if (receipt.getPurchaseDate().getDayOfMonth() % 2 != 0) {
+            points += 6;
+        }
+
+        LocalTime purchaseTime = receipt.getPurchaseTime();
+        if (purchaseTime.isAfter(LocalTime.of(14, 0)) && purchaseTime.isBefore(LocalTime.of(16, 0))) {
+            points += 10;
+        }
+
+        return points;
+    }
+}
@@ -0,0 +1,162 @@
+package com.fetch.receiptprocessor.scoring;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fetch.receiptprocessor.config.JacksonConfig;
+import com.fetch.receiptprocessor.metrics.ReceiptMetrics;
+import com.fetch.receiptprocessor.model.Item;
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.service.ReceiptPointServiceImpl;
+import com.fetch.receiptprocessor.store.ConcurrentReceiptStore;
+import com.fetch.receiptprocessor.store.OffHeapReceiptStore;
+import com.fetch.receiptprocessor.store.snapshot.ReceiptSnapshot;
+import com.fetch.receiptprocessor.store.wal.DurableReceiptStore;
+import com.fetch.receiptprocessor.store.wal.WriteAheadLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RuleEngineTest {
+
+    private static final String PROMOTION = "{\"version\": 2, \"rules\": ["
+            + "{\"type\": \"retailer-characters\", \"name\": \"retailer_name\", \"points\": 2},"
+            + "{\"type\": \"total-multiple\", \"name\": \"round_dollar\", \"multipleCents\": 100, \"points\": 50},"
+            + "{\"type\": \"item-groups\", \"name\": \"item_triples\", \"groupSize\": 3, \"points\": 10},"
+            + "{\"type\": \"item-description\", \"name\": \"item_description\", \"lengthMultiple\": 4, \"priceMultiplier\": 0.5},"
+            + "{\"type\": \"purchase-day\", \"name\": \"even_day\", \"odd\": false, \"points\": 3},"
+            + "{\"type\": \"purchase-time\", \"name\": \"lunch\", \"after\": \"11:00\", \"before\": \"13:00\", \"points\": 7}"
+            + "]}";
+
+    private static Receipt receipt() {
+        return Receipt.builder()
+                .retailer("Target")
+                .purchaseDate(LocalDate.parse("2022-01-02"))
+                .purchaseTime(LocalTime.parse("12:30"))
+                .total("9.00")
+                .items(List.of(new Item("Soda", "2.25"), new Item("Chips", "3.00"), new Item("Dips", "3.75")))
+                .build();
+    }
+
+    @Test
+    void scoresCustomRulesInOnePass() throws Exception {
+        ObjectMapper mapper = new JacksonConfig().objectMapper(ReceiptMetrics.noop());
+        CompiledRuleSet rules = mapper.readValue(PROMOTION, RuleSet.class).compile();
+
+        // 12 for "Target", 50 round dollar, 10 for one triple, ceil(1.125) + ceil(1.875) for Soda and Dips,
+        // 3 for the 2nd, 7 for 12:30
+        assertEquals(2, rules.getVersion());
+        assertEquals(12 + 50 + 10 + 2 + 2 + 3 + 7, rules.score(receipt()));
+    }
+
+    @Test
+    void forkJoinScoringMatchesSequential() {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            items.add(new Item("Item " + "x".repeat(i % 7), (i % 50) + "." + (10 + i % 90)));
+        }
+        Receipt large = receipt();
+        large.setItems(items);
+        CompiledRuleSet rules = RuleSet.defaults().compile();
+        Map<String, Integer> sequentialRules = new HashMap<>();
+        Map<String, Integer> parallelRules = new HashMap<>();
+
+        try (ParallelItemScoring parallel = new ParallelItemScoring(4, 1_000, 64)) {
+            int sequential = rules.score(large, (rule, times) -> sequentialRules.merge(rule, times, Integer::sum));
+            assertEquals(sequential, rules.score(large,
+                    (rule, times) -> parallelRules.merge(rule, times, Integer::sum), parallel));
+            assertEquals(sequentialRules, parallelRules);
+        }
+    }
+
+    @Test
+    void installsOnlyNewerRuleSets() {
+        RuleEngine engine = new RuleEngine();
+        RuleSet onlyRetailer = new RuleSet(2, List.of(new ScoringRule.RetailerCharacters("retailer_name", 1)));
+
+        assertTrue(engine.install(onlyRetailer));
+        assertEquals(6, engine.current().score(receipt()));
+        assertFalse(engine.install(RuleSet.defaults()));
+        assertFalse(engine.install(onlyRetailer));
+        assertEquals(2, engine.current().getVersion());
+    }
+
+    @Test
+    void rejectsInvalidRules() {
+        RuleEngine engine = new RuleEngine();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.install(new RuleSet(2, List.of(new ScoringRule.ItemGroups("item_pairs", 0, 5)))));
+        assertThrows(IllegalArgumentException.class,
+                () -> engine.install(new RuleSet(2, List.of(new ScoringRule.RetailerCharacters(null, 1)))));
+        assertEquals(RuleSet.DEFAULT_VERSION, engine.current().getVersion());
+    }
+
+    @Test
+    void reloadsChangedRuleFile(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("rules.json");
+        Files.writeString(file, PROMOTION);
+        RuleEngine engine = new RuleEngine();
+        RuleSetReloader reloader = new RuleSetReloader(engine, file,
+                new JacksonConfig().objectMapper(ReceiptMetrics.noop()));
+
+        assertTrue(reloader.reloadIfModified());
+        assertFalse(reloader.reloadIfModified());
+
+        // A broken edit leaves version 2 in place
+        Files.writeString(file, "{\"version\": 3, \"rules\": [{\"type\": \"item-groups\", \"name\": \"x\"}]}");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+        assertThrows(IllegalArgumentException.class, reloader::reloadIfModified);
+        assertEquals(2, engine.current().getVersion());
+    }
+
+    @Test
+    void storedReceiptsRecordTheirRuleSetVersion(@TempDir Path directory) throws Exception {
+        ConcurrentReceiptStore store = new ConcurrentReceiptStore(16, true);
+        RuleEngine engine = new RuleEngine();
+        ReceiptPointServiceImpl service = new ReceiptPointServiceImpl(store, engine, ReceiptMetrics.noop());
+
+        String before = service.processReceipt(receipt());
+        engine.install(new RuleSet(2, List.of(new ScoringRule.RetailerCharacters("retailer_name", 1))));
+        String after = service.processReceipt(receipt());
+
+        assertEquals(RuleSet.DEFAULT_VERSION, store.getRuleSetVersion(ReceiptId.parse(before)));
+        assertEquals(2, store.getRuleSetVersion(ReceiptId.parse(after)));
+        assertEquals(6, service.calculatePoints(after));
+
+        // The version survives off heap, in the write-ahead log and in snapshots
+        OffHeapReceiptStore offHeap = new OffHeapReceiptStore(1024, 16, true);
+        store.forEach(offHeap::put);
+        assertEquals(2, offHeap.getRuleSetVersion(ReceiptId.parse(after)));
+
+        Path logDirectory = directory.resolve("wal");
+        try (DurableReceiptStore durable = new DurableReceiptStore(new ConcurrentReceiptStore(),
+                new WriteAheadLog(logDirectory, 1 << 20, false, 16), true)) {
+            durable.recover(1);
+            store.forEach(durable::put);
+        }
+        try (DurableReceiptStore durable = new DurableReceiptStore(new ConcurrentReceiptStore(),
+                new WriteAheadLog(logDirectory, 1 << 20, false, 16), true)) {
+            durable.recover(1);
+            assertEquals(RuleSet.DEFAULT_VERSION, durable.getRuleSetVersion(ReceiptId.parse(before)));
+            assertEquals(2, durable.getRuleSetVersion(ReceiptId.parse(after)));
+        }
+
+        ReceiptSnapshot snapshot = ReceiptSnapshot.open(
+                ReceiptSnapshot.write(directory.resolve("snapshots"), 1, store, true));
+        assertEquals(2, snapshot.getRuleSetVersion(ReceiptId.parse(after)));
+    }
+}
@@ -0,0 +1,156 @@
+package com.fetch.receiptprocessor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fetch.receiptprocessor.config.JacksonConfig;
+import com.fetch.receiptprocessor.metrics.ReceiptMetrics;
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.scoring.RuleEngine;
+import com.fetch.receiptprocessor.store.BoundedReceiptStore;
+import com.fetch.receiptprocessor.store.ConcurrentReceiptStore;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.fetch.receiptprocessor.ReceiptFixtures.receipt;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class ReceiptDeduplicatorTest {
+
+    private static ReceiptPointServiceImpl service(ReceiptStore store, ReceiptDeduplicator deduplicator) {
+        return new ReceiptPointServiceImpl(store, new RuleEngine(), ReceiptMetrics.noop(), null, deduplicator, null);
+    }
+
+    @Test
+    void identicalContentsGetTheFirstId() throws Exception {
+        ConcurrentReceiptStore store = new ConcurrentReceiptStore(16, true);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReceiptPointServiceImpl service = service(store, new ReceiptDeduplicator(store, 16, false, registry));
+        ObjectMapper mapper = new JacksonConfig().objectMapper(ReceiptMetrics.noop());
+
+        String first = service.processReceipt(receipt("Target"));
+        // Same receipt with its fields in a different order
+        String reordered = service.processReceipt(mapper.readValue("{\"total\": \"6.49\", \"retailer\": \"Target\","
+                + " \"items\": [{\"price\": \"6.49\", \"shortDescription\": \"Mountain Dew 12PK\"}],"
+                + " \"purchaseTime\": \"13:01\", \"purchaseDate\": \"2022-01-01\"}", Receipt.class));
+        String other = service.processReceipt(receipt("Walmart"));
+
+        assertEquals(first, reordered);
+        assertNotEquals(first, other);
+        assertEquals(2, store.size());
+        assertEquals(1, registry.get("receipt.ingest.duplicates").counter().count());
+        assertEquals(2, registry.get("receipt.ingest.fingerprints").gauge().value());
+    }
+
+    @Test
+    void idempotencyKeyTakesPrecedenceOverContents() {
+        ConcurrentReceiptStore store = new ConcurrentReceiptStore(16, true);
+        ReceiptPointServiceImpl service = service(store, new ReceiptDeduplicator(store, 16, false, new SimpleMeterRegistry()));
+
+        String first = service.processReceipt(receipt("Target"), "order-1");
+        String retried = service.processReceipt(receipt("Walmart"), "order-1");
+        String sameContents = service.processReceipt(receipt("Target"), "order-2");
+
+        assertEquals(first, retried);
+        assertEquals(first, sameContents);
+        assertEquals(1, store.size());
+        // order-2 was claimed for the id it was answered with
+        assertEquals(first, service.processReceipt(receipt("Kroger"), "order-2"));
+    }
+
+    @Test
+    void rebuildsContentIndexFromStoredReceipts() throws Exception {
+        ConcurrentReceiptStore store = new ConcurrentReceiptStore(16, true);
+        String first = service(store, null).processReceipt(receipt("Target"));
+
+        ReceiptDeduplicator deduplicator = new ReceiptDeduplicator(store, 16, false, new SimpleMeterRegistry());
+        CompletableFuture<Void> recovered = new CompletableFuture<>();
+        CompletableFuture<Void> rebuilt = deduplicator.rebuildAfter(recovered);
+        // Nothing is indexed until the store has recovered
+        assertEquals(0, deduplicator.size());
+
+        recovered.complete(null);
+        rebuilt.get(5, TimeUnit.SECONDS);
+
+        assertEquals(first, service(store, deduplicator).processReceipt(receipt("Target")));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void evictionDropsFingerprintsAndKeys() {
+        BoundedReceiptStore store = new BoundedReceiptStore(100, 0, null, true);
+        ReceiptDeduplicator deduplicator = new ReceiptDeduplicator(store, 16, true, new SimpleMeterRegistry());
+        store.addEvictionListener(deduplicator::evicted);
+        ReceiptPointServiceImpl service = service(store, deduplicator);
+
+        String first = service.processReceipt(receipt("Target"), "order-1");
+        service.processReceipt(receipt("Target"), "order-2");
+        assertEquals(1, deduplicator.size());
+
+        store.getCache().policy().eviction().orElseThrow().setMaximum(0);
+        store.getCache().cleanUp();
+        assertEquals(0, store.size());
+        assertEquals(0, deduplicator.size());
+
+        // Nothing of the evicted receipt is left, so both keys and the contents lead to a new copy
+        store.getCache().policy().eviction().orElseThrow().setMaximum(100);
+        String again = service.processReceipt(receipt("Walmart"), "order-2");
+        assertNotEquals(first, again);
+        assertNotEquals(first, service.processReceipt(receipt("Target"), "order-1"));
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void queuedReceiptIsADuplicateBeforeItIsStored() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        BoundedReceiptStore store = new BoundedReceiptStore(100, 0, null, true) {
+            @Override
+            public void putAll(ReceiptId[] receiptIds, Receipt[] receipts, int[] points, int[] ruleSetVersions,
+                               int count) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.putAll(receiptIds, receipts, points, ruleSetVersions, count);
+            }
+        };
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReceiptDeduplicator deduplicator = new ReceiptDeduplicator(store, 16, true, registry);
+        store.addEvictionListener(deduplicator::evicted);
+        ReceiptIngestPipeline pipeline = new ReceiptIngestPipeline(service(store, null), store,
+                16, 1, 8, Duration.ofSeconds(1), registry, deduplicator);
+
+        String first = pipeline.submit(receipt("Target"));
+        // Not in the store yet, but the pending id is still the answer
+        assertEquals(ReceiptStore.NOT_FOUND, store.getPoints(ReceiptId.parse(first)));
+        assertEquals(first, pipeline.submit(receipt("Target")));
+
+        release.countDown();
+        pipeline.close();
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void asyncIngestQueuesEachReceiptOnce() {
+        ConcurrentReceiptStore store = new ConcurrentReceiptStore(16, true);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReceiptDeduplicator deduplicator = new ReceiptDeduplicator(store, 16, false, registry);
+        ReceiptIngestPipeline pipeline = new ReceiptIngestPipeline(service(store, null), store,
+                16, 1, 8, Duration.ofSeconds(1), registry, deduplicator);
+
+        String first = pipeline.submit(receipt("Target"));
+        String second = pipeline.submit(receipt("Target"), "order-1");
+        pipeline.close();
+
+        assertEquals(first, second);
+        assertEquals(1, store.size());
+        assertEquals(12, store.getPoints(ReceiptId.parse(first)));
+    }
+}
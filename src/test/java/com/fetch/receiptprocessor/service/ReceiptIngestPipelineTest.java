@@ -0,0 +1,167 @@
+package com.fetch.receiptprocessor.service;
+
+import com.fetch.receiptprocessor.exception.IngestQueueFullException;
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.store.ConcurrentReceiptStore;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.fetch.receiptprocessor.ReceiptFixtures.receipt;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReceiptIngestPipelineTest {
+
+    private static final int EXPECTED_POINTS = 12;
+
+    @Test
+    void queuedReceiptsAreScoredAndStoredInBatches() {
+        ConcurrentReceiptStore store = new ConcurrentReceiptStore();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReceiptIngestPipeline pipeline = new ReceiptIngestPipeline(new ReceiptPointServiceImpl(store), store,
+                10_000, 2, 64, Duration.ofSeconds(1), registry);
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            ids.add(pipeline.submit(receipt()));
+        }
+        pipeline.close();
+
+        assertEquals(5_000, store.size());
+        for (String id : ids) {
+            assertEquals(EXPECTED_POINTS, store.getPoints(ReceiptId.parse(id)));
+        }
+        assertEquals(5_000, registry.get("receipt.ingest.batch.size").summary().totalAmount());
+        assertTrue(registry.get("receipt.ingest.batch.size").summary().max() <= 64);
+        assertEquals(0, registry.get("receipt.ingest.queue.depth").gauge().value());
+    }
+
+    @Test
+    void closingWhileReceiptsArriveStoresEveryAcceptedReceipt() throws Exception {
+        ConcurrentReceiptStore store = new ConcurrentReceiptStore();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReceiptIngestPipeline pipeline = new ReceiptIngestPipeline(new ReceiptPointServiceImpl(store), store,
+                100_000, 2, 64, Duration.ofSeconds(1), registry);
+
+        List<String> ids = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean closing = new AtomicBoolean();
+        ExecutorService submitters = Executors.newFixedThreadPool(4);
+        try {
+            for (int t = 0; t < 4; t++) {
+                submitters.submit(() -> {
+                    while (true) {
+                        try {
+                            ids.add(pipeline.submit(receipt()));
+                        } catch (IngestQueueFullException e) {
+                            if (closing.get()) {
+                                return;
+                            }
+                        }
+                    }
+                });
+            }
+            Thread.sleep(50);
+            closing.set(true);
+            pipeline.close();
+        } finally {
+            submitters.shutdown();
+            assertTrue(submitters.awaitTermination(30, TimeUnit.SECONDS));
+        }
+
+        // An id is handed out only if its receipt made it into the queue before close() stopped the workers
+        assertTrue(ids.size() > 0);
+        assertEquals(ids.size(), store.size());
+        for (String id : ids) {
+            assertEquals(EXPECTED_POINTS, store.getPoints(ReceiptId.parse(id)));
+        }
+        assertEquals(0, registry.get("receipt.ingest.lost").counter().count());
+    }
+
+    @Test
+    void fullQueueIsRefusedWithRetryAfter() throws InterruptedException {
+        CountDownLatch workerBusy = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ReceiptStore blockingStore = new ConcurrentReceiptStore() {
+            @Override
+            public void putAll(ReceiptId[] receiptIds, Receipt[] receipts, int[] points, int[] ruleSetVersions,
+                               int count) {
+                workerBusy.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.putAll(receiptIds, receipts, points, ruleSetVersions, count);
+            }
+        };
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReceiptIngestPipeline pipeline = new ReceiptIngestPipeline(new ReceiptPointServiceImpl(blockingStore),
+                blockingStore, 1, 1, 8, Duration.ofSeconds(3), registry);
+
+        pipeline.submit(receipt());
+        assertTrue(workerBusy.await(10, TimeUnit.SECONDS));
+        pipeline.submit(receipt());
+
+        IngestQueueFullException e = assertThrows(IngestQueueFullException.class, () -> pipeline.submit(receipt()));
+        assertEquals(Duration.ofSeconds(3), e.getRetryAfter());
+        assertEquals(1, registry.get("receipt.ingest.rejected").counter().count());
+
+        release.countDown();
+        pipeline.close();
+        assertEquals(2, blockingStore.size());
+    }
+
+    @Test
+    void storeFailureLosesOnlyTheFailingReceipt() {
+        List<ReceiptId> refused = new ArrayList<>();
+        ReceiptStore flakyStore = new ConcurrentReceiptStore() {
+            @Override
+            public void put(ReceiptId receiptId, Receipt receipt, int points, int ruleSetVersion) {
+                synchronized (refused) {
+                    if (refused.isEmpty()) {
+                        refused.add(receiptId);
+                        throw new IllegalStateException("disk full");
+                    }
+                }
+                super.put(receiptId, receipt, points, ruleSetVersion);
+            }
+
+            @Override
+            public void putAll(ReceiptId[] receiptIds, Receipt[] receipts, int[] points, int[] ruleSetVersions,
+                               int count) {
+                throw new IllegalStateException("disk full");
+            }
+        };
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ReceiptIngestPipeline pipeline = new ReceiptIngestPipeline(new ReceiptPointServiceImpl(flakyStore),
+                flakyStore, 100, 1, 64, Duration.ofSeconds(1), registry);
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ids.add(pipeline.submit(receipt()));
+        }
+        pipeline.close();
+
+        assertEquals(9, flakyStore.size());
+        for (String id : ids) {
+            ReceiptId receiptId = ReceiptId.parse(id);
+            if (!refused.contains(receiptId)) {
+                assertEquals(EXPECTED_POINTS, flakyStore.getPoints(receiptId));
+            }
+        }
+        assertEquals(1, registry.get("receipt.ingest.lost").counter().count());
+    }
+}
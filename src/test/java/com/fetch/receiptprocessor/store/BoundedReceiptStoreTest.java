@@ -0,0 +1,86 @@
+package com.fetch.receiptprocessor.store;
+
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.fetch.receiptprocessor.ReceiptFixtures.receipt;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BoundedReceiptStoreTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = nanos::get;
+
+    @Test
+    void evictsDownToMaximumSize() {
+        BoundedReceiptStore store = new BoundedReceiptStore(100, 0, null, true, ticker, Runnable::run);
+        for (int i = 0; i < 1_000; i++) {
+            store.put(new ReceiptId(1, i), receipt(), i);
+        }
+        store.getCache().cleanUp();
+
+        assertEquals(100, store.size());
+        assertTrue(store.getCache().stats().evictionCount() >= 900);
+    }
+
+    @Test
+    void evictsDownToMemoryBudget() {
+        int perEntry = 120 + BoundedReceiptStore.estimateBytes(receipt());
+        BoundedReceiptStore store = new BoundedReceiptStore(0, perEntry * 10L, null, true, ticker, Runnable::run);
+        for (int i = 0; i < 100; i++) {
+            store.put(new ReceiptId(1, i), receipt(), i);
+        }
+        store.getCache().cleanUp();
+
+        assertEquals(10, store.size());
+    }
+
+    @Test
+    void keepsFrequentlyReadReceipts() {
+        BoundedReceiptStore store = new BoundedReceiptStore(100, 0, null, true, ticker, Runnable::run);
+        ReceiptId hot = new ReceiptId(0, 1);
+        store.put(hot, receipt(), 42);
+        for (int i = 0; i < 10_000; i++) {
+            store.getPoints(hot);
+            store.put(new ReceiptId(1, i), receipt(), i);
+        }
+        store.getCache().cleanUp();
+
+        assertEquals(42, store.getPoints(hot));
+    }
+
+    @Test
+    void expiresReceiptsAfterTtl() {
+        BoundedReceiptStore store = new BoundedReceiptStore(100, 0, Duration.ofMinutes(5), false, ticker, Runnable::run);
+        ReceiptId id = ReceiptId.random();
+        store.put(id, receipt(), 28);
+
+        assertEquals(28, store.getPoints(id));
+        assertNull(store.getReceipt(id));
+
+        nanos.addAndGet(Duration.ofMinutes(6).toNanos());
+        assertEquals(ReceiptStore.NOT_FOUND, store.getPoints(id));
+    }
+
+    @Test
+    void recordsHitsAndMisses() {
+        BoundedReceiptStore store = new BoundedReceiptStore(100, 0, null, true, ticker, Runnable::run);
+        ReceiptId id = ReceiptId.random();
+        store.put(id, receipt(), 28);
+
+        store.getPoints(id);
+        store.getReceipt(id);
+        store.getPoints(ReceiptId.random());
+
+        CacheStats stats = store.getCache().stats();
+        assertEquals(2, stats.hitCount());
+        assertEquals(1, stats.missCount());
+    }
+}
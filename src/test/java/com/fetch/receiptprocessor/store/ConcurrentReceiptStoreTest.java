@@ -0,0 +1,108 @@
+package com.fetch.receiptprocessor.store;
+
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.service.ReceiptPointServiceImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.fetch.receiptprocessor.ReceiptFixtures.receipt;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class ConcurrentReceiptStoreTest {
+
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private static final int RECEIPTS_PER_THREAD = 20_000;
+
+    // 6 points for "Target" and 6 points for the odd purchase day
+    private static final int EXPECTED_POINTS = 12;
+
+    @Test
+    void concurrentWritersLoseNoReceipts() throws Exception {
+        ReceiptStore store = new ConcurrentReceiptStore(16, true);
+        Receipt receipt = receipt();
+
+        runConcurrently(THREADS, thread -> {
+            for (int i = 0; i < RECEIPTS_PER_THREAD; i++) {
+                store.put(new ReceiptId(thread, i), receipt, EXPECTED_POINTS);
+            }
+        });
+
+        assertEquals(THREADS * RECEIPTS_PER_THREAD, store.size());
+        for (int thread = 0; thread < THREADS; thread++) {
+            for (int i = 0; i < RECEIPTS_PER_THREAD; i++) {
+                assertSame(receipt, store.getReceipt(new ReceiptId(thread, i)));
+                assertEquals(EXPECTED_POINTS, store.getPoints(new ReceiptId(thread, i)));
+            }
+        }
+    }
+
+    @Test
+    void concurrentProcessReceiptReturnsReadableIds() throws Exception {
+        ReceiptPointServiceImpl service = new ReceiptPointServiceImpl(new ConcurrentReceiptStore(16, true));
+        Receipt receipt = receipt();
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+
+        // Readers run alongside writers so lookups race with table resizes
+        runConcurrently(THREADS, thread -> {
+            for (int i = 0; i < RECEIPTS_PER_THREAD; i++) {
+                String id = service.processReceipt(receipt);
+                ids.add(id);
+                assertEquals(EXPECTED_POINTS, service.calculatePoints(id));
+            }
+        });
+
+        assertEquals(THREADS * RECEIPTS_PER_THREAD, ids.size());
+        for (String id : ids) {
+            assertEquals(EXPECTED_POINTS, service.calculatePoints(id));
+        }
+    }
+
+    @Test
+    void storeWithoutRetentionKeepsOnlyPoints() {
+        ReceiptStore store = new ConcurrentReceiptStore(16, false);
+        ReceiptId id = ReceiptId.random();
+        store.put(id, receipt(), EXPECTED_POINTS);
+
+        assertEquals(EXPECTED_POINTS, store.getPoints(id));
+        assertNull(store.getReceipt(id));
+        assertEquals(ReceiptStore.NOT_FOUND, store.getPoints(ReceiptId.random()));
+    }
+
+    private interface Worker {
+        void run(int thread) throws Exception;
+    }
+
+    private static void runConcurrently(int threads, Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    worker.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.fetch.receiptprocessor.store;
+
+import com.fetch.receiptprocessor.model.Item;
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class OffHeapReceiptStoreTest {
+
+    private static Receipt receipt(String retailer, int itemCount) {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < itemCount; i++) {
+            items.add(new Item("Item " + i, i + ".99"));
+        }
+        return Receipt.builder()
+                .retailer(retailer)
+                .purchaseDate(LocalDate.parse("2022-01-01"))
+                .purchaseTime(LocalTime.parse("13:01"))
+                .total("35.35")
+                .items(items)
+                .build();
+    }
+
+    @Test
+    void decodesStoredReceipts() {
+        OffHeapReceiptStore store = new OffHeapReceiptStore(1024, 16, true);
+        Receipt receipt = receipt("M&M Corner Market", 3);
+        Receipt unicode = Receipt.builder()
+                .retailer("Café Ñandú 🛒 \uD800")
+                .purchaseDate(LocalDate.of(-40, 2, 29))
+                .purchaseTime(LocalTime.of(23, 59, 59, 999_999_999))
+                .items(Arrays.asList(new Item(null, "1.00")))
+                .build();
+
+        store.put(new ReceiptId(0, 1), receipt, 28);
+        store.put(new ReceiptId(0, 2), unicode, 7);
+
+        assertEquals(receipt, store.getReceipt(new ReceiptId(0, 1)));
+        assertEquals(28, store.getPoints(new ReceiptId(0, 1)));
+        assertEquals(7, store.getPoints(new ReceiptId(0, 2)));
+        Receipt decoded = store.getReceipt(new ReceiptId(0, 2));
+        assertEquals("Café Ñandú 🛒 �", decoded.getRetailer());
+        assertEquals(unicode.getPurchaseDate(), decoded.getPurchaseDate());
+        assertEquals(unicode.getPurchaseTime(), decoded.getPurchaseTime());
+        assertNull(decoded.getTotal());
+        assertEquals(new Item(null, "1.00"), decoded.getItems().get(0));
+        assertEquals(ReceiptStore.NOT_FOUND, store.getPoints(new ReceiptId(0, 3)));
+        assertNull(store.getReceipt(new ReceiptId(0, 3)));
+    }
+
+    @Test
+    void rollsOverSlabsAndHandlesOversizedRecords() {
+        OffHeapReceiptStore store = new OffHeapReceiptStore(256, 16, true);
+        Receipt small = receipt("Target", 2);
+        Receipt large = receipt("Target", 100);
+
+        for (int i = 0; i < 100; i++) {
+            store.put(new ReceiptId(1, i), small, i);
+        }
+        store.put(new ReceiptId(2, 0), large, 1000);
+        store.put(new ReceiptId(3, 0), small, 1001);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, store.getPoints(new ReceiptId(1, i)));
+            assertEquals(small, store.getReceipt(new ReceiptId(1, i)));
+        }
+        assertEquals(large, store.getReceipt(new ReceiptId(2, 0)));
+        assertEquals(1001, store.getPoints(new ReceiptId(3, 0)));
+        assertEquals(102, store.size());
+    }
+
+    @Test
+    void storesOnlyPointsWhenBodiesAreNotRetained() {
+        OffHeapReceiptStore store = new OffHeapReceiptStore(1024, 16, false);
+        store.put(new ReceiptId(0, 1), receipt("Target", 50), 28);
+
+        assertEquals(28, store.getPoints(new ReceiptId(0, 1)));
+        assertNull(store.getReceipt(new ReceiptId(0, 1)));
+        assertEquals(1024, store.allocatedBytes());
+    }
+
+    @Test
+    void concurrentWritersLoseNoReceipts() throws Exception {
+        OffHeapReceiptStore store = new OffHeapReceiptStore(4096, 16, true);
+        Receipt receipt = receipt("Target", 3);
+        int threads = 8;
+        int perThread = 10_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        store.put(new ReceiptId(thread, i), receipt, i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(threads * perThread, store.size());
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < perThread; i++) {
+                assertEquals(i, store.getPoints(new ReceiptId(t, i)));
+                assertEquals(receipt, store.getReceipt(new ReceiptId(t, i)));
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.fetch.receiptprocessor.store;
+
+import com.fetch.receiptprocessor.model.ReceiptId;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ReceiptIdIndexTest {
+
+    @Test
+    void parsesAndFormatsCanonicalUuids() {
+        for (int i = 0; i < 1000; i++) {
+            UUID uuid = UUID.randomUUID();
+            ReceiptId id = ReceiptId.parse(uuid.toString());
+            assertEquals(uuid.getMostSignificantBits(), id.getMostSignificantBits());
+            assertEquals(uuid.getLeastSignificantBits(), id.getLeastSignificantBits());
+            assertEquals(uuid.toString(), id.toString());
+        }
+        assertEquals(ReceiptId.parse("ADB6B560-0EEF-42BC-9D16-DF48F30E89B2"), ReceiptId.parse("adb6b560-0eef-42bc-9d16-df48f30e89b2"));
+    }
+
+    @Test
+    void rejectsMalformedIds() {
+        assertNull(ReceiptId.parse(null));
+        assertNull(ReceiptId.parse("invalid-receipt-id"));
+        assertNull(ReceiptId.parse("adb6b560-0eef-42bc-9d16-df48f30e89b"));
+        assertNull(ReceiptId.parse("adb6b560-0eef-42bc-9d16-df48f30e89b2a"));
+        assertNull(ReceiptId.parse("adb6b560+0eef-42bc-9d16-df48f30e89b2"));
+        assertNull(ReceiptId.parse("adb6b560-0eef-42bc-9d16-df48f30e89g2"));
+        // Arabic-Indic digit three: a Unicode hex digit, but not a valid id character
+        assertNull(ReceiptId.parse("adb6b560-0eef-42bc-9d16-df48f30e89٣" + "2"));
+    }
+
+    @Test
+    void storesValuesAndAttachmentsAcrossResizes() {
+        ReceiptIdIndex index = new ReceiptIdIndex(1, true);
+        List<ReceiptId> ids = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            ReceiptId id = ReceiptId.random();
+            ids.add(id);
+            index.put(id, i, "receipt-" + i);
+        }
+
+        assertEquals(ids.size(), index.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i, index.get(ids.get(i)));
+            assertEquals("receipt-" + i, index.getAttachment(ids.get(i)));
+        }
+        assertEquals(ReceiptIdIndex.MISSING, index.get(ReceiptId.random()));
+        assertNull(index.getAttachment(ReceiptId.random()));
+    }
+
+    @Test
+    void handlesNilIdAndCollidingKeys() {
+        ReceiptIdIndex index = new ReceiptIdIndex(16, false);
+        ReceiptId nil = new ReceiptId(0, 0);
+        assertEquals(ReceiptIdIndex.MISSING, index.get(nil));
+
+        index.put(nil, 7, "ignored");
+        // Sequential ids that differ in a single half probe into neighbouring slots
+        for (long i = 1; i <= 1000; i++) {
+            index.put(new ReceiptId(0, i), i, null);
+            index.put(new ReceiptId(i, 0), -i, null);
+        }
+        index.put(new ReceiptId(0, 5), 55, null);
+
+        assertEquals(7, index.get(nil));
+        assertNull(index.getAttachment(nil));
+        assertEquals(55, index.get(new ReceiptId(0, 5)));
+        assertEquals(-5, index.get(new ReceiptId(5, 0)));
+        assertEquals(2001, index.size());
+    }
+
+    @Test
+    void readersNeverSeeTornEntriesWhileWritersResize() throws Exception {
+        ReceiptIdIndex index = new ReceiptIdIndex(1, true);
+        int writers = 4;
+        int perWriter = 50_000;
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 2);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                long writer = w + 1;
+                futures.add(executor.submit(() -> {
+                    for (long i = 0; i < perWriter; i++) {
+                        ReceiptId id = new ReceiptId(writer, i);
+                        index.put(id, writer * 1_000_000 + i, id);
+                    }
+                }));
+            }
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < 2; r++) {
+                readers.add(executor.submit(() -> {
+                    while (!done.get()) {
+                        for (long writer = 1; writer <= writers; writer++) {
+                            for (long i = 0; i < perWriter; i += 97) {
+                                ReceiptId id = new ReceiptId(writer, i);
+                                long value = index.get(id);
+                                if (value != ReceiptIdIndex.MISSING) {
+                                    assertEquals(writer * 1_000_000 + i, value);
+                                }
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            done.set(true);
+            for (Future<?> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(writers * perWriter, index.size());
+        ReceiptId sample = new ReceiptId(3, 12_345);
+        assertEquals(sample, index.getAttachment(sample));
+        assertEquals(3_012_345, index.get(sample));
+    }
+}
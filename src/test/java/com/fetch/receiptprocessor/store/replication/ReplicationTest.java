@@ -0,0 +1,263 @@
+package com.fetch.receiptprocessor.store.replication;
+
+import com.fetch.receiptprocessor.exception.ReadOnlyReplicaException;
+import com.fetch.receiptprocessor.model.Receipt;
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.store.ConcurrentReceiptStore;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static com.fetch.receiptprocessor.ReceiptFixtures.receipt;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class ReplicationTest {
+
+    private static final Duration ACK_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration HEARTBEAT = Duration.ofMillis(50);
+
+    private final ConcurrentReceiptStore leaderStore = new ConcurrentReceiptStore(16, true);
+    private final ConcurrentReceiptStore followerStore = new ConcurrentReceiptStore(16, true);
+    private ReplicationLeader leader;
+    private ReplicationFollower follower;
+
+    private ReplicatingReceiptStore startLeader(boolean synchronous, int maxBatch) throws IOException {
+        return startLeader(synchronous, maxBatch, 1024);
+    }
+
+    private ReplicatingReceiptStore startLeader(boolean synchronous, int maxBatch, int queueCapacity)
+            throws IOException {
+        leader = new ReplicationLeader(leaderStore, new InetSocketAddress("localhost", 0), maxBatch, queueCapacity,
+                Duration.ofSeconds(10), HEARTBEAT);
+        return new ReplicatingReceiptStore(leaderStore, leader, synchronous, ACK_TIMEOUT);
+    }
+
+    private void startFollower() {
+        startFollower(followerStore, leader.getPort(), Duration.ofMillis(50));
+    }
+
+    private void startFollower(ReceiptStore store, int port, Duration reconnectInterval) {
+        follower = new ReplicationFollower(store, new InetSocketAddress("localhost", port), Duration.ofSeconds(1),
+                reconnectInterval, HEARTBEAT.multipliedBy(3));
+        follower.start();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Replication did not catch up");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        if (follower != null) {
+            follower.close();
+        }
+        if (leader != null) {
+            leader.close();
+        }
+    }
+
+    @Test
+    void followerCatchesUpThenReceivesNewReceipts() throws Exception {
+        Receipt receipt = receipt();
+        for (int i = 0; i < 10; i++) {
+            leaderStore.put(new ReceiptId(1, i), i % 2 == 0 ? receipt : null, i);
+        }
+        // Catch-up in batches of 4 receipts
+        ReplicatingReceiptStore store = startLeader(false, 4);
+        startFollower();
+        await(() -> leader.getInSyncFollowerCount() == 1);
+
+        store.put(new ReceiptId(2, 0), receipt, 28);
+        store.putAll(new ReceiptId[]{new ReceiptId(2, 1), new ReceiptId(2, 2)}, new Receipt[]{receipt, null},
+                new int[]{5, 6}, new int[]{1, 2}, 2);
+        await(() -> followerStore.size() == 13);
+
+        assertEquals(9, followerStore.getPoints(new ReceiptId(1, 9)));
+        assertEquals(receipt, followerStore.getReceipt(new ReceiptId(1, 0)));
+        assertNull(followerStore.getReceipt(new ReceiptId(1, 1)));
+        assertEquals(28, followerStore.getPoints(new ReceiptId(2, 0)));
+        assertEquals(6, followerStore.getPoints(new ReceiptId(2, 2)));
+        assertEquals(2, followerStore.getRuleSetVersion(new ReceiptId(2, 2)));
+        await(() -> leader.getLagRecords() == 0 && leader.getLag().isZero());
+    }
+
+    @Test
+    void synchronousPutsReturnOnceFollowersHaveThem() throws Exception {
+        ReplicatingReceiptStore store = startLeader(true, 1024);
+        startFollower();
+        await(() -> leader.getInSyncFollowerCount() == 1);
+
+        for (int i = 0; i < 100; i++) {
+            store.put(new ReceiptId(3, i), receipt(), i);
+            assertEquals(i, followerStore.getPoints(new ReceiptId(3, i)));
+        }
+        assertEquals(0, leader.getAckTimeouts());
+    }
+
+    @Test
+    void synchronousPutsDoNotWaitForDisconnectedFollowers() throws Exception {
+        ReplicatingReceiptStore store = startLeader(true, 1024);
+        startFollower();
+        await(() -> leader.getInSyncFollowerCount() == 1);
+        follower.close();
+
+        // The leader notices the closed connection when it sends this receipt, and stops waiting for it
+        store.put(new ReceiptId(4, 0), receipt(), 12);
+
+        assertEquals(12, store.getPoints(new ReceiptId(4, 0)));
+        assertEquals(0, leader.getAckTimeouts());
+        assertEquals(0, leader.getFollowerCount());
+    }
+
+    @Test
+    void followerCatchesUpWhileReceiptsKeepArriving() throws Exception {
+        for (int i = 0; i < 20_000; i++) {
+            leaderStore.put(new ReceiptId(6, i), null, i);
+        }
+        // Far more receipts arrive during catch-up than the leader keeps for a follower
+        ReplicatingReceiptStore store = startLeader(false, 64, 256);
+        ConcurrentReceiptStore slowStore = new ConcurrentReceiptStore(16, true) {
+            @Override
+            public void putAll(ReceiptId[] receiptIds, Receipt[] receipts, int[] points, int[] ruleSetVersions,
+                               int count) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.putAll(receiptIds, receipts, points, ruleSetVersions, count);
+            }
+        };
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicInteger written = new AtomicInteger();
+        Thread writer = new Thread(() -> {
+            while (writing.get()) {
+                for (int i = 0; i < 10; i++) {
+                    store.put(new ReceiptId(7, written.getAndIncrement()), receipt(), 1);
+                }
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        writer.start();
+        // A follower that was disconnected would not come back within the test
+        startFollower(slowStore, leader.getPort(), Duration.ofHours(1));
+        await(() -> leader.getInSyncFollowerCount() == 1);
+        int writtenDuringCatchUp = written.get();
+        Thread.sleep(100);
+        writing.set(false);
+        writer.join();
+
+        await(() -> slowStore.size() == leaderStore.size());
+        assertTrue(writtenDuringCatchUp > 256, "only " + writtenDuringCatchUp + " receipts arrived during catch-up");
+        assertTrue(follower.isConnected());
+        assertEquals(20_000 + written.get(), slowStore.size());
+        await(() -> leader.getLagRecords() == 0);
+    }
+
+    @Test
+    void followersAreAcceptedOnceTheStoreHasRecovered() throws Exception {
+        CompletableFuture<Void> recovered = new CompletableFuture<>();
+        leader = new ReplicationLeader(leaderStore, recovered, true, new InetSocketAddress("localhost", 0), 1024,
+                1024, Duration.ofSeconds(10), HEARTBEAT);
+        startFollower();
+        // Replayed straight into the store, as recovery does, so never published
+        leaderStore.put(new ReceiptId(8, 0), receipt(), 12);
+
+        Thread.sleep(HEARTBEAT.multipliedBy(4).toMillis());
+        assertEquals(0, leader.getFollowerCount());
+        assertEquals(0, followerStore.size());
+
+        recovered.complete(null);
+        await(() -> leader.getInSyncFollowerCount() == 1);
+        await(() -> followerStore.getPoints(new ReceiptId(8, 0)) == 12);
+    }
+
+    @Test
+    void ringKeepsReceiptsOnlyUntilFollowersHaveThem() throws Exception {
+        ConcurrentReceiptStore pointsOnly = new ConcurrentReceiptStore(16, false);
+        leader = new ReplicationLeader(pointsOnly, CompletableFuture.completedFuture(null), false,
+                new InetSocketAddress("localhost", 0), 1024, 1024, Duration.ofSeconds(10), HEARTBEAT);
+        ReplicatingReceiptStore store = new ReplicatingReceiptStore(pointsOnly, leader, true, ACK_TIMEOUT);
+        startFollower();
+        await(() -> leader.getInSyncFollowerCount() == 1);
+
+        for (int i = 0; i < 100; i++) {
+            store.put(new ReceiptId(9, i), receipt(), i);
+        }
+        // Bodies the leader's store does not keep are not sent either
+        assertEquals(99, followerStore.getPoints(new ReceiptId(9, 99)));
+        assertNull(followerStore.getReceipt(new ReceiptId(9, 99)));
+        await(() -> leader.getRetainedCount() == 0);
+
+        follower.close();
+        store.put(new ReceiptId(9, 100), receipt(), 100);
+        await(() -> leader.getFollowerCount() == 0);
+        store.put(new ReceiptId(9, 101), receipt(), 101);
+        assertEquals(0, leader.getRetainedCount());
+    }
+
+    @Test
+    void idleLeaderKeepsFollowersConnectedWithHeartbeats() throws Exception {
+        startLeader(false, 1024);
+        startFollower();
+        await(() -> leader.getInSyncFollowerCount() == 1);
+        long batches = follower.getAppliedBatches();
+
+        Thread.sleep(HEARTBEAT.multipliedBy(10).toMillis());
+
+        assertTrue(follower.isConnected());
+        assertEquals(1, leader.getFollowerCount());
+        assertTrue(follower.getAppliedBatches() > batches);
+    }
+
+    @Test
+    void followerDropsALeaderThatGoesSilent() throws Exception {
+        try (ServerSocket silentLeader = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            startFollower(followerStore, silentLeader.getLocalPort(), Duration.ofHours(1));
+            try (Socket accepted = silentLeader.accept()) {
+                await(() -> follower.isConnected());
+                // Nothing is ever sent, so the follower gives up after three heartbeat intervals
+                await(() -> !follower.isConnected());
+            }
+        }
+    }
+
+    @Test
+    void replicaRejectsReceiptsUntilPromoted() {
+        ReplicaReceiptStore replica = new ReplicaReceiptStore(followerStore);
+        ReceiptId receiptId = new ReceiptId(5, 0);
+
+        assertThrows(ReadOnlyReplicaException.class, () -> replica.put(receiptId, receipt(), 12));
+        assertEquals(ReceiptStore.NOT_FOUND, replica.getPoints(receiptId));
+
+        replica.promote();
+        replica.put(receiptId, receipt(), 12);
+        assertTrue(replica.isPromoted());
+        assertEquals(12, replica.getPoints(receiptId));
+    }
+}
@@ -0,0 +1,117 @@
+package com.fetch.receiptprocessor.store.snapshot;
+
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.store.ConcurrentReceiptStore;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import com.fetch.receiptprocessor.store.wal.DurableReceiptStore;
+import com.fetch.receiptprocessor.store.wal.WriteAheadLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static com.fetch.receiptprocessor.ReceiptFixtures.receipt;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReceiptSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void mappedSnapshotAnswersLikeTheStoreItWasTakenFrom() throws IOException {
+        ConcurrentReceiptStore source = new ConcurrentReceiptStore(16, true);
+        for (int i = 0; i < 5_000; i++) {
+            source.put(new ReceiptId(i, i * 31L), i % 2 == 0 ? receipt("Target " + i) : null, i);
+        }
+        source.put(new ReceiptId(0, 0), receipt("Target -1"), 7);
+
+        ReceiptSnapshot snapshot = ReceiptSnapshot.open(ReceiptSnapshot.write(directory, 42, source, true));
+
+        assertEquals(42, snapshot.getWalSequence());
+        assertEquals(source.size(), snapshot.size());
+        for (int i = 1; i < 5_000; i++) {
+            assertEquals(i, snapshot.getPoints(new ReceiptId(i, i * 31L)));
+        }
+        assertEquals(receipt("Target 1000"), snapshot.getReceipt(new ReceiptId(1_000, 31_000)));
+        assertNull(snapshot.getReceipt(new ReceiptId(1_001, 31_031)));
+        assertEquals(7, snapshot.getPoints(new ReceiptId(0, 0)));
+        assertEquals(ReceiptStore.NOT_FOUND, snapshot.getPoints(new ReceiptId(1, 2)));
+
+        AtomicInteger visited = new AtomicInteger();
+        snapshot.forEach((id, receipt, points, ruleSetVersion) -> visited.incrementAndGet());
+        assertEquals(source.size(), visited.get());
+    }
+
+    @Test
+    void truncatedSnapshotIsSkipped() throws IOException {
+        ConcurrentReceiptStore source = new ConcurrentReceiptStore(16, true);
+        source.put(new ReceiptId(1, 1), receipt("Target 1"), 10);
+        ReceiptSnapshot.write(directory, 1, source, true);
+        Path damaged = ReceiptSnapshot.write(directory, 2, source, true);
+        try (FileChannel channel = FileChannel.open(damaged, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        assertThrows(IOException.class, () -> ReceiptSnapshot.open(damaged));
+        assertEquals(1, ReceiptSnapshot.openLatest(directory).orElseThrow().getWalSequence());
+    }
+
+    @Test
+    void restartServesSnapshotAndReplaysOnlyTheNewerLog() throws Exception {
+        Path walDirectory = directory.resolve("wal");
+        Path snapshotDirectory = directory.resolve("snapshots");
+
+        try (DurableReceiptStore store = new DurableReceiptStore(new ConcurrentReceiptStore(16, true),
+                new WriteAheadLog(walDirectory, 1 << 20, false, 64), true)) {
+            store.recover(1);
+            for (int i = 0; i < 100; i++) {
+                store.put(new ReceiptId(1, i), receipt("Target " + i), i);
+            }
+            SnapshotManager manager = new SnapshotManager(store, snapshotDirectory, true, false);
+            assertTrue(manager.snapshot().isPresent());
+            for (int i = 100; i < 150; i++) {
+                store.put(new ReceiptId(1, i), receipt("Target " + i), i);
+            }
+        }
+
+        ReceiptSnapshot snapshot = ReceiptSnapshot.openLatest(snapshotDirectory).orElseThrow();
+        assertEquals(100, snapshot.size());
+        // Segments the snapshot covers are gone
+        try (Stream<Path> segments = Files.list(walDirectory)) {
+            List<Path> remaining = segments.toList();
+            assertFalse(remaining.isEmpty());
+            for (Path segment : remaining) {
+                String name = segment.getFileName().toString();
+                long sequence = Long.parseLong(name.substring("receipts-".length(), name.length() - ".wal".length()));
+                assertTrue(sequence >= snapshot.getWalSequence(), name);
+            }
+        }
+
+        try (DurableReceiptStore store = new DurableReceiptStore(
+                new SnapshotReceiptStore(new ConcurrentReceiptStore(16, true), snapshot),
+                new WriteAheadLog(walDirectory, 1 << 20, false, 64, snapshot.getWalSequence()), true)) {
+            // Served from the mapped file before replay has finished
+            assertEquals(5, store.getPoints(new ReceiptId(1, 5)));
+            store.recoverInBackground(snapshot.getWalSequence(), 2).get(30, TimeUnit.SECONDS);
+
+            assertEquals(50, store.getReplayedRecords());
+            for (int i = 0; i < 150; i++) {
+                assertEquals(i, store.getPoints(new ReceiptId(1, i)));
+            }
+            assertEquals(receipt("Target 120"), store.getReceipt(new ReceiptId(1, 120)));
+        }
+    }
+}
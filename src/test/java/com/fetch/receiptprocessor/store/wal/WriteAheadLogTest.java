@@ -0,0 +1,190 @@
+package com.fetch.receiptprocessor.store.wal;
+
+import com.fetch.receiptprocessor.model.ReceiptId;
+import com.fetch.receiptprocessor.store.ConcurrentReceiptStore;
+import com.fetch.receiptprocessor.store.ReceiptStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static com.fetch.receiptprocessor.ReceiptFixtures.receipt;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WriteAheadLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void concurrentWritersShareFsyncsAndSurviveRestart() throws Exception {
+        int threads = 8;
+        int perThread = 500;
+        try (DurableReceiptStore store = open(64 * 1024, true)) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int thread = t;
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < perThread; i++) {
+                            store.put(new ReceiptId(thread + 1, i), receipt(), i);
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get(60, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            // Group commit: far fewer fsyncs than acknowledged appends
+            assertTrue(store.getWriteAheadLog().getSyncCount() < threads * perThread);
+            assertTrue(store.getWriteAheadLog().getSegmentSequence() > 1, "expected segment rotation");
+        }
+
+        try (DurableReceiptStore reopened = open(64 * 1024, true)) {
+            assertEquals(threads * perThread, reopened.getReplayedRecords());
+            assertEquals(threads * perThread, reopened.size());
+            for (int t = 0; t < threads; t++) {
+                for (int i = 0; i < perThread; i++) {
+                    assertEquals(i, reopened.getPoints(new ReceiptId(t + 1, i)));
+                }
+            }
+            assertEquals(receipt(), reopened.getReceipt(new ReceiptId(3, 42)));
+        }
+    }
+
+    @Test
+    void recoversFromTornTailAndKeepsAppending() throws Exception {
+        try (DurableReceiptStore store = open(1 << 20, false)) {
+            store.put(new ReceiptId(1, 1), receipt(), 10);
+            store.put(new ReceiptId(1, 2), receipt(), 20);
+        }
+        // Simulate a crash part way through writing a third record
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        try (DurableReceiptStore store = open(1 << 20, false)) {
+            assertEquals(1, store.getReplayedRecords());
+            assertEquals(10, store.getPoints(new ReceiptId(1, 1)));
+            assertEquals(ReceiptStore.NOT_FOUND, store.getPoints(new ReceiptId(1, 2)));
+            store.put(new ReceiptId(1, 3), receipt(), 30);
+        }
+
+        try (DurableReceiptStore store = open(1 << 20, false)) {
+            assertEquals(2, store.getReplayedRecords());
+            assertEquals(30, store.getPoints(new ReceiptId(1, 3)));
+        }
+    }
+
+    @Test
+    void corruptRecordInAnEarlierSegmentFailsRecovery() throws Exception {
+        try (DurableReceiptStore store = open(256, false)) {
+            for (int i = 0; i < 20; i++) {
+                store.put(new ReceiptId(1, i), receipt(), i);
+            }
+            assertTrue(store.getWriteAheadLog().getSegmentSequence() > 2, "expected segment rotation");
+        }
+        Path first;
+        try (Stream<Path> files = Files.list(directory)) {
+            first = files.sorted().findFirst().orElseThrow();
+        }
+        // Flip a byte inside the first record's payload; every record in this segment was acknowledged
+        try (FileChannel channel = FileChannel.open(first, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer flipped = ByteBuffer.allocate(1);
+            channel.read(flipped, 20);
+            flipped.put(0, (byte) ~flipped.get(0)).rewind();
+            channel.write(flipped, 20);
+        }
+
+        DurableReceiptStore store = new DurableReceiptStore(new ConcurrentReceiptStore(16, true),
+                new WriteAheadLog(directory, 256, false, 256), true);
+        try {
+            assertThrows(IOException.class, () -> store.recover(4));
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void logsOnlyPointsWhenBodiesAreNotRetained() throws Exception {
+        try (DurableReceiptStore store = new DurableReceiptStore(new ConcurrentReceiptStore(16, false),
+                new WriteAheadLog(directory, 1 << 20, false, 16), false)) {
+            store.recover(1);
+            store.put(new ReceiptId(1, 1), receipt(), 10);
+        }
+
+        try (DurableReceiptStore store = open(1 << 20, false)) {
+            assertEquals(10, store.getPoints(new ReceiptId(1, 1)));
+            assertNull(store.getReceipt(new ReceiptId(1, 1)));
+        }
+    }
+
+    @Test
+    void appendsRacingCloseAllComplete() throws Exception {
+        WriteAheadLog writeAheadLog = new WriteAheadLog(directory, 1 << 20, false, 16);
+        List<CompletableFuture<Void>> appends = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        appends.add(writeAheadLog.append(new ReceiptId(thread + 1, i), null, i,
+                                ReceiptStore.UNVERSIONED));
+                    }
+                });
+            }
+            Thread.sleep(5);
+            writeAheadLog.close();
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        }
+
+        // Each append is either written or failed, never left pending
+        for (CompletableFuture<Void> append : appends) {
+            try {
+                append.get(5, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+    }
+
+    private DurableReceiptStore open(long segmentSize, boolean fsync) throws IOException {
+        DurableReceiptStore store = new DurableReceiptStore(new ConcurrentReceiptStore(16, true),
+                new WriteAheadLog(directory, segmentSize, fsync, 256), true);
+        store.recover(4);
+        return store;
+    }
+
+    private Path onlySegment() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.toList();
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+}
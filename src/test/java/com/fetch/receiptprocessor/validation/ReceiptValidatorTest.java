@@ -0,0 +1,160 @@
+package com.fetch.receiptprocessor.validation;
+
+import com.fetch.receiptprocessor.model.Item;
+import com.fetch.receiptprocessor.model.Receipt;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * ReceiptValidator must accept exactly the receipts Hibernate Validator accepts for the annotations on Receipt and Item.
+ */
+public class ReceiptValidatorTest {
+
+    private static final List<String> TEXT_SAMPLES = Arrays.asList(
+            null, "", " ", "\t\n", "\u000B", "\u0001", "Target", "M&M Corner Market", "&", "-", "_", "Walgreens ",
+            "Ta%t", "Café", "١٢", "Pepsi - 12-oz", "a b", "a\n", "Klarbrunn 12-PK 12 FL OZ");
+    private static final List<String> AMOUNT_SAMPLES = Arrays.asList(
+            null, "", " ", "1.25", "0.00", "35.35", "1234567890123.99", ".25", "1.2", "1.250", "1,25", "-1.25",
+            "+1.25", "1.25 ", " 1.25", "1.25\n", "١.25", "1e2", "12", "1..25", "a.bc");
+
+    private static ValidatorFactory validatorFactory;
+    private static Validator hibernateValidator;
+    private final ReceiptValidator receiptValidator = new ReceiptValidator();
+
+    @BeforeAll
+    static void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        hibernateValidator = validatorFactory.getValidator();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        validatorFactory.close();
+    }
+
+    private static Receipt receipt() {
+        return Receipt.builder()
+                .retailer("Target")
+                .purchaseDate(LocalDate.parse("2022-01-01"))
+                .purchaseTime(LocalTime.parse("13:01"))
+                .total("35.35")
+                .items(new ArrayList<>(List.of(Item.builder().shortDescription("Mountain Dew 12PK").price("6.49").build())))
+                .build();
+    }
+
+    private void assertAgrees(Receipt receipt) {
+        boolean expected = hibernateValidator.validate(receipt).isEmpty();
+        assertThat(receiptValidator.isValid(receipt)).as(receipt.toString()).isEqualTo(expected);
+
+        Errors errors = new BeanPropertyBindingResult(receipt, "receipt");
+        receiptValidator.validate(receipt, errors);
+        assertThat(errors.hasErrors()).as(receipt.toString()).isEqualTo(!expected);
+    }
+
+    @Test
+    void agreesOnEachField() {
+        for (String text : TEXT_SAMPLES) {
+            Receipt receipt = receipt();
+            receipt.setRetailer(text);
+            assertAgrees(receipt);
+
+            receipt = receipt();
+            receipt.getItems().get(0).setShortDescription(text);
+            assertAgrees(receipt);
+        }
+        for (String amount : AMOUNT_SAMPLES) {
+            Receipt receipt = receipt();
+            receipt.setTotal(amount);
+            assertAgrees(receipt);
+
+            receipt = receipt();
+            receipt.getItems().get(0).setPrice(amount);
+            assertAgrees(receipt);
+        }
+
+        Receipt receipt = receipt();
+        receipt.setPurchaseDate(null);
+        assertAgrees(receipt);
+        receipt = receipt();
+        receipt.setPurchaseTime(null);
+        assertAgrees(receipt);
+        receipt = receipt();
+        receipt.setItems(null);
+        assertAgrees(receipt);
+        receipt = receipt();
+        receipt.setItems(Collections.emptyList());
+        assertAgrees(receipt);
+        receipt = receipt();
+        receipt.getItems().add(null);
+        assertAgrees(receipt);
+        receipt = receipt();
+        receipt.getItems().add(new Item());
+        assertAgrees(receipt);
+    }
+
+    @Test
+    void agreesOnRandomStrings() {
+        char[] alphabet = {'a', 'Z', '0', '9', '_', '-', '&', '.', ' ', '\t', '\n', '\u000B', '\u0001', '%', 'é'};
+        Random random = new Random(42);
+        for (int i = 0; i < 5_000; i++) {
+            char[] chars = new char[random.nextInt(6)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = alphabet[random.nextInt(alphabet.length)];
+            }
+            String text = new String(chars);
+
+            Receipt receipt = receipt();
+            receipt.setRetailer(text);
+            receipt.setTotal(text);
+            receipt.getItems().get(0).setShortDescription(text);
+            assertAgrees(receipt);
+
+            receipt = receipt();
+            receipt.getItems().get(0).setPrice(text);
+            assertAgrees(receipt);
+        }
+    }
+
+    @Test
+    void reportsTheFirstFailingField() {
+        Receipt receipt = receipt();
+        receipt.setRetailer(" ");
+        receipt.setTotal("1");
+
+        Errors errors = new BeanPropertyBindingResult(receipt, "receipt");
+        receiptValidator.validate(receipt, errors);
+
+        assertThat(errors.getErrorCount()).isEqualTo(1);
+        assertThat(errors.getFieldError().getField()).isEqualTo("retailer");
+        assertThat(errors.getFieldError().getDefaultMessage()).isEqualTo("Retailer name cannot be blank");
+    }
+
+    @Test
+    void rejectsMissingItems() {
+        Receipt receipt = receipt();
+        receipt.setItems(null);
+
+        Errors errors = new BeanPropertyBindingResult(receipt, "receipt");
+        receiptValidator.validate(receipt, errors);
+
+        assertThat(receiptValidator.isValid(receipt)).isFalse();
+        assertThat(errors.getFieldError().getField()).isEqualTo("items");
+        assertThat(errors.getFieldError().getDefaultMessage()).isEqualTo("At least one item is required");
+    }
+}